@@ -0,0 +1,112 @@
+package bguspl.set;
+
+/**
+ * The affine plane rules, for a prime number p of values: p cards form a set iff they are a line of the affine space
+ * of the cards, i.e. the cards c0 + t * d (mod p) for t = 0 .. p - 1 and some direction d != 0.
+ * With 3 values these are exactly the classic sets. A card is checked by solving for its t along one feature in
+ * which the line moves (with a precomputed table of inverses mod p), and the ts seen are kept in a bitmask.
+ */
+class AffineRules implements Rules {
+
+    private final int featureCount;
+    private final int p;
+
+    /**
+     * The features of all the cards in the deck (card * featureCount + feature).
+     */
+    private final int[] features;
+
+    /**
+     * The multiplicative inverses mod p (inverse[0] is unused).
+     */
+    private final int[] inverse;
+
+    /**
+     * @param config   - the game configuration (featureSize must be prime).
+     * @param features - the features of all the cards in the deck.
+     */
+    AffineRules(Config config, int[] features) {
+        this.featureCount = config.featureCount;
+        this.p = config.featureSize;
+        this.features = features;
+        inverse = new int[p];
+        for (int a = 1; a < p; ++a)
+            for (int b = 1; b < p; ++b)
+                if (a * b % p == 1) inverse[a] = b;
+    }
+
+    /**
+     * @param n - a number.
+     * @return - true iff the number is prime (and small enough to be a feature size).
+     */
+    static boolean isPrime(int n) {
+        if (n < 2 || n >= Integer.SIZE) return false;
+        for (int d = 2; d * d <= n; ++d)
+            if (n % d == 0) return false;
+        return true;
+    }
+
+    @Override
+    public int claimSize() {
+        return p;
+    }
+
+    @Override
+    public boolean isSet(int[] cards) {
+        return cards.length == p && linePoints(cards, cards.length) == (1 << p) - 1;
+    }
+
+    /**
+     * The missing card is the point of the line through the given cards at the one t not taken yet.
+     */
+    @Override
+    public int complete(int[] cards, int size) {
+        if (size != p - 1 || size < 2) return -1;
+        int taken = linePoints(cards, size);
+        if (Integer.bitCount(taken) != size) return -1;
+        int t = Integer.numberOfTrailingZeros(~taken);
+
+        int c0 = cards[0] * featureCount;
+        int c1 = cards[1] * featureCount;
+        int card = 0;
+        for (int i = 0; i < featureCount; ++i) {
+            int d = mod(features[c1 + i] - features[c0 + i]);
+            card = card * p + (features[c0 + i] + t * d) % p;
+        }
+        return card;
+    }
+
+    /**
+     * Places the given cards on the line through the first two of them.
+     *
+     * @param cards - an array of card ids.
+     * @param size  - the number of cards in the array to consider (at least 2).
+     * @return - a bitmask of the ts of the cards on the line, or 0 if one of them is off it or two share a t.
+     */
+    private int linePoints(int[] cards, int size) {
+        int c0 = cards[0] * featureCount;
+        int c1 = cards[1] * featureCount;
+        int pivot = -1;
+        for (int i = 0; i < featureCount && pivot < 0; ++i)
+            if (features[c0 + i] != features[c1 + i]) pivot = i;
+        if (pivot < 0) return 0;
+        int scale = inverse[mod(features[c1 + pivot] - features[c0 + pivot])];
+
+        int taken = 0;
+        for (int j = 0; j < size; ++j) {
+            int cj = cards[j] * featureCount;
+            int t = mod(features[cj + pivot] - features[c0 + pivot]) * scale % p;
+            if ((taken & 1 << t) != 0) return 0;
+            for (int i = 0; i < featureCount; ++i) {
+                int d = mod(features[c1 + i] - features[c0 + i]);
+                if (features[cj + i] != (features[c0 + i] + t * d) % p) return 0;
+            }
+            taken |= 1 << t;
+        }
+        return taken;
+    }
+
+    private int mod(int value) {
+        return value < 0 ? value + p : value;
+    }
+}
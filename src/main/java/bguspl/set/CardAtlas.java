@@ -0,0 +1,208 @@
+package bguspl.set;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * All the card images packed into a single sprite sheet, with an index of the cell of every card.
+ * Loading the atlas is one resource lookup and one image decode instead of one per card, and drawing a card is a
+ * blit of its cell out of the one sheet (which can be kept in video memory, see accelerated).
+ * The atlas is generated from the card images by running this class (see main), or at build time with the atlas
+ * maven profile.
+ */
+public final class CardAtlas {
+
+    /**
+     * The resources of the atlas: the sprite sheet, and its index (card name to cell number, plus the cell size).
+     */
+    public static final String IMAGE_RESOURCE = "cards/atlas.png";
+    public static final String INDEX_RESOURCE = "cards/atlas.properties";
+
+    private static final String IMAGE_FILE = "atlas.png";
+    private static final String INDEX_FILE = "atlas.properties";
+    private static final String CELL_WIDTH = "CellWidth";
+    private static final String CELL_HEIGHT = "CellHeight";
+    private static final String COLUMNS = "Columns";
+    private static final String NO_CELL = "-1";
+
+    private final BufferedImage sheet;
+    private final Properties index;
+    private final int cellWidth;
+    private final int cellHeight;
+    private final int columns;
+
+    private CardAtlas(BufferedImage sheet, Properties index) {
+        this.sheet = sheet;
+        this.index = index;
+        cellWidth = Integer.parseInt(index.getProperty(CELL_WIDTH));
+        cellHeight = Integer.parseInt(index.getProperty(CELL_HEIGHT));
+        columns = Integer.parseInt(index.getProperty(COLUMNS));
+    }
+
+    /**
+     * Loads the atlas from the class path.
+     *
+     * @return - the atlas.
+     * @throws IOException if the atlas resources are missing or can't be read.
+     */
+    public static CardAtlas load() throws IOException {
+        ClassLoader loader = CardAtlas.class.getClassLoader();
+        Properties index = new Properties();
+        try (InputStream in = loader.getResourceAsStream(INDEX_RESOURCE)) {
+            if (in == null) throw new FileNotFoundException(INDEX_RESOURCE);
+            index.load(in);
+        }
+        BufferedImage sheet;
+        try (InputStream in = loader.getResourceAsStream(IMAGE_RESOURCE)) {
+            if (in == null) throw new FileNotFoundException(IMAGE_RESOURCE);
+            sheet = ImageIO.read(in);
+        }
+        return new CardAtlas(sheet, index);
+    }
+
+    /**
+     * Packs images into an atlas.
+     *
+     * @param names  - the names of the images.
+     * @param images - the images, which must all be of the same size.
+     * @return - the atlas.
+     * @throws IllegalArgumentException if the images are not all of the same size.
+     */
+    public static CardAtlas pack(String[] names, BufferedImage[] images) {
+        int width = images[0].getWidth();
+        int height = images[0].getHeight();
+        int columns = (int) Math.ceil(Math.sqrt(images.length));
+        int rows = (images.length + columns - 1) / columns;
+
+        BufferedImage sheet = new BufferedImage(columns * width, rows * height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = sheet.createGraphics();
+        Properties index = new Properties();
+        for (int i = 0; i < images.length; i++) {
+            if (images[i].getWidth() != width || images[i].getHeight() != height)
+                throw new IllegalArgumentException(names[i] + " is not " + width + "x" + height);
+            g.drawImage(images[i], i % columns * width, i / columns * height, null);
+            index.setProperty(names[i], Integer.toString(i));
+        }
+        g.dispose();
+        index.setProperty(CELL_WIDTH, Integer.toString(width));
+        index.setProperty(CELL_HEIGHT, Integer.toString(height));
+        index.setProperty(COLUMNS, Integer.toString(columns));
+        return new CardAtlas(sheet, index);
+    }
+
+    /**
+     * @param configuration - the configuration of the screen the atlas is drawn on.
+     * @return - the same atlas, with its sheet copied into an image of the screen's format (which Java2D can keep
+     * in video memory, so that drawing a card is a plain blit with no conversion).
+     */
+    public CardAtlas accelerated(GraphicsConfiguration configuration) {
+        BufferedImage compatible = configuration.createCompatibleImage(sheet.getWidth(), sheet.getHeight(),
+                Transparency.TRANSLUCENT);
+        Graphics2D g = compatible.createGraphics();
+        g.drawImage(sheet, 0, 0, null);
+        g.dispose();
+        return new CardAtlas(compatible, index);
+    }
+
+    /**
+     * @return - the width of a card image.
+     */
+    public int cellWidth() {
+        return cellWidth;
+    }
+
+    /**
+     * @return - the height of a card image.
+     */
+    public int cellHeight() {
+        return cellHeight;
+    }
+
+    /**
+     * @param name - the name of a card image, without the extension (e.g. "0120" or "empty_card").
+     * @return - the cell of the image in the sprite sheet, or -1 if the atlas doesn't contain it.
+     */
+    public int cell(String name) {
+        return Integer.parseInt(index.getProperty(name, NO_CELL));
+    }
+
+    /**
+     * @param name - the name of a card image, without the extension.
+     * @return - the image (sharing its pixels with the sprite sheet), or null if the atlas doesn't contain it.
+     */
+    public BufferedImage image(String name) {
+        int cell = cell(name);
+        if (cell < 0) return null;
+        return sheet.getSubimage(cell % columns * cellWidth, cell / columns * cellHeight, cellWidth, cellHeight);
+    }
+
+    /**
+     * Draws the image of a cell.
+     *
+     * @param g        - the graphics to draw on.
+     * @param cell     - the cell of the image.
+     * @param x        - the x coordinate of the top left corner to draw the image at.
+     * @param y        - the y coordinate of the top left corner to draw the image at.
+     * @param observer - the component drawn on.
+     */
+    public void draw(Graphics g, int cell, int x, int y, ImageObserver observer) {
+        int sx = cell % columns * cellWidth;
+        int sy = cell / columns * cellHeight;
+        g.drawImage(sheet, x, y, x + cellWidth, y + cellHeight, sx, sy, sx + cellWidth, sy + cellHeight, observer);
+    }
+
+    /**
+     * Packs all the png images of a directory (which must all be of the same size) into a sprite sheet, and writes
+     * it and its index.
+     *
+     * @param args - the directory of the card images (src/main/resources/cards by default), and the directory to
+     *             write the atlas to (the same directory by default).
+     * @throws IOException if the images can't be read or the atlas can't be written.
+     */
+    public static void main(String[] args) throws IOException {
+        File directory = new File(args.length > 0 ? args[0] : "src/main/resources/cards");
+        File output = args.length > 1 ? new File(args[1]) : directory;
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".png") && !name.equals(IMAGE_FILE));
+        if (files == null || files.length == 0) throw new FileNotFoundException("no card images in " + directory);
+        Arrays.sort(files);
+
+        String[] names = new String[files.length];
+        BufferedImage[] images = new BufferedImage[files.length];
+        for (int i = 0; i < files.length; i++) {
+            String name = files[i].getName();
+            names[i] = name.substring(0, name.length() - ".png".length());
+            images[i] = ImageIO.read(files[i]);
+            if (images[i] == null) throw new IOException("can't read " + files[i]);
+        }
+        CardAtlas atlas = pack(names, images);
+
+        //noinspection ResultOfMethodCallIgnored
+        output.mkdirs();
+        ImageIO.write(atlas.sheet, "png", new File(output, IMAGE_FILE));
+        // written by hand rather than with Properties.store, so that the index is sorted and has no time stamp
+        Map<String, Integer> cells = new TreeMap<>();
+        for (String name : names) cells.put(name, atlas.cell(name));
+        try (PrintWriter out = new PrintWriter(new File(output, INDEX_FILE), "ISO-8859-1")) {
+            out.println("# generated by " + CardAtlas.class.getName() + ", do not edit");
+            out.println(CELL_WIDTH + "=" + atlas.cellWidth);
+            out.println(CELL_HEIGHT + "=" + atlas.cellHeight);
+            out.println(COLUMNS + "=" + atlas.columns);
+            cells.forEach((name, cell) -> out.println(name + "=" + cell));
+        }
+        System.out.println("packed " + images.length + " images into " + new File(output, IMAGE_FILE));
+    }
+}
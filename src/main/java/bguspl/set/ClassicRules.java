@@ -0,0 +1,165 @@
+package bguspl.set;
+
+/**
+ * The classic rules: in every feature the cards are either all the same or all different.
+ * Each feature is checked with one histogram bitmask of the values seen (a bit per value), instead of comparing every
+ * pair of cards: the cards are all the same iff one bit is set, and all different iff claimSize bits are set.
+ * When the claim has featureSize cards and all the features fit in a long, every card is also encoded as one-hot
+ * lanes of featureSize bits (a lane per feature), and all the features are checked at once on the OR of the codes
+ * (SIMD within a register): a lane is legal iff it has a single bit (all the same) or is full (all different).
+ */
+class ClassicRules implements Rules {
+
+    private final int featureCount;
+    private final int featureSize;
+    private final int claimSize;
+
+    /**
+     * The features of all the cards in the deck (card * featureCount + feature).
+     */
+    private final int[] features;
+
+    /**
+     * The one-hot codes of all the cards (null when the lanes don't fit in a long or the claim size differs from
+     * featureSize), and the masks of the lowest bit, highest bit and all the bits of every lane.
+     */
+    private final long[] codes;
+    private final long lowestBits;
+    private final long highestBits;
+    private final long laneBits;
+
+    /**
+     * @param config    - the game configuration.
+     * @param features  - the features of all the cards in the deck.
+     * @param claimSize - the number of cards in a set.
+     */
+    ClassicRules(Config config, int[] features, int claimSize) {
+        this.featureCount = config.featureCount;
+        this.featureSize = config.featureSize;
+        this.claimSize = claimSize;
+        this.features = features;
+
+        int lanes = featureCount * featureSize;
+        if (claimSize == featureSize && featureSize >= 2 && lanes <= Long.SIZE) {
+            long lowest = 0, highest = 0;
+            for (int i = 0; i < featureCount; ++i) {
+                lowest |= 1L << (i * featureSize);
+                highest |= 1L << (i * featureSize + featureSize - 1);
+            }
+            lowestBits = lowest;
+            highestBits = highest;
+            laneBits = lanes == Long.SIZE ? -1L : (1L << lanes) - 1;
+            codes = new long[features.length / featureCount];
+            for (int card = 0; card < codes.length; ++card)
+                for (int i = 0; i < featureCount; ++i)
+                    codes[card] |= 1L << (i * featureSize + features[card * featureCount + i]);
+        } else {
+            codes = null;
+            lowestBits = highestBits = laneBits = 0;
+        }
+    }
+
+    @Override
+    public int claimSize() {
+        return claimSize;
+    }
+
+    @Override
+    public boolean isSet(int[] cards) {
+        if (codes != null && cards.length == claimSize) {
+            long seen = 0;
+            for (int card : cards)
+                seen |= codes[card];
+            return lanesLegal(seen);
+        }
+        int k = cards.length;
+        for (int i = 0; i < featureCount; ++i) {
+            int seen = 0;
+            for (int card : cards)
+                seen |= 1 << features[card * featureCount + i];
+            int values = Integer.bitCount(seen);
+            if ((values == 1) == (values == k)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int testSets(int[] cards, int count, boolean[] legal) {
+        if (codes == null) return Rules.super.testSets(cards, count, legal);
+        int found = 0;
+        for (int c = 0, first = 0; c < count; ++c, first += claimSize) {
+            long seen = 0;
+            for (int i = first; i < first + claimSize; ++i)
+                seen |= codes[cards[i]];
+            legal[c] = lanesLegal(seen);
+            if (legal[c]) found++;
+        }
+        return found;
+    }
+
+    /**
+     * @param seen - the OR of the codes of featureSize cards.
+     * @return - true iff every lane has a single bit or all of its bits set.
+     */
+    private boolean lanesLegal(long seen) {
+        long notSingle = seen & (seen - lowestBits); // every lane has a bit, so there are no borrows between lanes
+        long notFull = seen ^ laneBits;
+        return (nonZeroLanes(notSingle) & nonZeroLanes(notFull)) == 0;
+    }
+
+    /**
+     * @return - the highest bit of every lane of the value that is not zero.
+     */
+    private long nonZeroLanes(long value) {
+        long low = laneBits & ~highestBits;
+        return (((value & low) + low) | value) & highestBits;
+    }
+
+    /**
+     * Only a set of featureSize cards has a single completion (with fewer, an all different feature could be completed
+     * by any of the values not seen), so the other claim sizes are left to the search.
+     */
+    @Override
+    public int complete(int[] cards, int size) {
+        if (size != claimSize - 1 || claimSize != featureSize || size < 2) return -1;
+        return completion(cards, size);
+    }
+
+    /**
+     * Finds the card that completes the given featureSize - 1 cards to a classic set of featureSize cards.
+     *
+     * @param cards - an array of card ids.
+     * @param size  - the number of cards in the array to consider (featureSize - 1).
+     * @return - the id of the completing card, or -1 if there is none.
+     */
+    int completion(int[] cards, int size) {
+        return completion(cards, (1L << size) - 1, -1);
+    }
+
+    /**
+     * Finds the card that completes featureSize - 1 distinct cards to a classic set of featureSize cards.
+     *
+     * @param cards - an array of card ids.
+     * @param mask  - the indices of the cards to complete (a bit per index).
+     * @param extra - one more card to complete together with them, or -1 for none.
+     * @return - the id of the completing card, or -1 if there is none.
+     */
+    int completion(int[] cards, long mask, int extra) {
+        int size = Long.bitCount(mask) + (extra >= 0 ? 1 : 0);
+        int allValues = (1 << featureSize) - 1;
+        int card = 0;
+        for (int i = 0; i < featureCount; ++i) {
+            int seen = extra >= 0 ? 1 << features[extra * featureCount + i] : 0;
+            for (long m = mask; m != 0; m &= m - 1)
+                seen |= 1 << features[cards[Long.numberOfTrailingZeros(m)] * featureCount + i];
+
+            int values = Integer.bitCount(seen);
+            int value;
+            if (values == 1) value = Integer.numberOfTrailingZeros(seen);
+            else if (values == size) value = Integer.numberOfTrailingZeros(allValues & ~seen);
+            else return -1;
+            card = card * featureSize + value;
+        }
+        return card;
+    }
+}
@@ -7,6 +7,7 @@ import java.nio.file.InvalidPathException;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,6 +22,20 @@ public class Config {
     public final long randomSpinMin;
     public final long randomSpinMax;
 
+    /**
+     * The seed for all the game's random number generators (card dealing, computer players, random spin).
+     * Only used if seeded is true, otherwise every run is different.
+     */
+    public final long randomSeed;
+    public final boolean seeded;
+
+    /**
+     * Whether the dealer steps the players itself, one after the other in a fixed order, in a single thread and with a
+     * simulated clock (instead of running a thread per player). Together with a seed, every run is exactly the same.
+     * The table does not wait its delays in real time then, so the game runs as fast as the machine allows.
+     */
+    public final boolean deterministic;
+
     /**
      * The number of features on the cards (e.g. shape, color etc.)
      */
@@ -36,6 +51,18 @@ public class Config {
      */
     public final int deckSize;
 
+    /**
+     * The rules that decide which cards form a legal set: "classic" (every feature is all the same or all different),
+     * "ultra" (two groups of featureSize - 1 cards that the same card completes to classic sets) or "affine" (the
+     * cards form a line of the affine space over featureSize values, which must be prime).
+     */
+    public final String rules;
+
+    /**
+     * The number of cards in a claimed set (i.e. the number of tokens a player places before claiming).
+     */
+    public final int claimSize;
+
     /**
      * The number of human players in the game.
      */
@@ -81,6 +108,35 @@ public class Config {
      */
     public final long tableDelayMillis;
 
+    /**
+     * The timing settings above as the game uses them now: the ones at startup, until the configuration file is
+     * reloaded (see ConfigWatcher). Published as a whole, so readers never see half a reload.
+     */
+    private final AtomicReference<Timing> timing;
+
+    /**
+     * Whether the configuration file is watched, and the timing settings reloaded when it changes (not when the game
+     * is stepped deterministically).
+     */
+    public final boolean reloadConfig;
+
+    /**
+     * The time the dealer waits from the stamp of a claim before judging it, so that a claim stamped earlier but
+     * submitted later (e.g. by a player descheduled under load) is still judged first.
+     */
+    public final long claimWindowMillis;
+
+    /**
+     * The time between checkpoints of the game (0 or less for no checkpoints), and the file they are written to.
+     */
+    public final long checkpointMillis;
+    public final String checkpointFile;
+
+    /**
+     * The file of the players' lifetime statistics, added to at the end of every game (empty for none).
+     */
+    public final String statsFile;
+
     /**
      * The number of milliseconds to pause at the end of the game before closing
      */
@@ -132,6 +188,31 @@ public class Config {
      */
     public final int fontSize;
 
+    /**
+     * The TCP port on which remote players can join the game (0 to run without a server)
+     */
+    public final int serverPort;
+
+    /**
+     * The TCP port on which any number of read-only spectators can watch the game (0 to run without one)
+     */
+    public final int spectatorPort;
+
+    /**
+     * The number of frames an in-process viewer may fall behind before it is resynchronized (0 for no in-process
+     * viewers, see Main.spectators)
+     */
+    public final int spectatorQueueFrames;
+
+    /**
+     * The size and the age at which the log file is rotated (0 or less for no limit), the number of log files kept in
+     * the logs directory (older ones are deleted), and the time between flushes of the log file (0 flushes every record)
+     */
+    public final long logRotateBytes;
+    public final long logRotateMillis;
+    public final int logMaxFiles;
+    public final long logFlushMillis;
+
     /**
      * The scancodes of the keyboard input data for each player
      * Notes:
@@ -155,7 +236,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -176,6 +257,36 @@ public class Config {
         return properties;
     }
 
+    /**
+     * @return - the timing settings in effect now.
+     */
+    public Timing timing() {
+        return timing.get();
+    }
+
+    /**
+     * Publishes the timing settings of a reloaded configuration. The kind of turn timer (a countdown, the time since
+     * the last action or none) is fixed when the game starts, so a turn timeout of another kind is ignored.
+     *
+     * @param properties - the reloaded properties.
+     * @param logger     - the logger to report the change to.
+     * @return - true iff a setting changed.
+     * @throws NumberFormatException if a setting is not a number (nothing is changed then).
+     */
+    public boolean reload(Properties properties, Logger logger) {
+        Timing next = Timing.parse(properties);
+        Timing current = timing.get();
+        if (Long.signum(next.turnTimeoutMillis) != Long.signum(current.turnTimeoutMillis)) {
+            logger.severe("warning: the kind of turn timer can't change while the game runs, keeping a turn timeout of "
+                    + current.turnTimeoutMillis + " ms.");
+            next = next.withTurnTimeout(current.turnTimeoutMillis);
+        }
+        if (next.equals(current)) return false;
+        timing.set(next);
+        logger.info("reloaded timing settings: " + next + ".");
+        return true;
+    }
+
     public Config(Logger logger, String configFilename) {
         this(logger, loadProperties(configFilename, logger));
     }
@@ -193,10 +304,25 @@ public class Config {
         if (randomSpinMax < randomSpinMin || randomSpinMin < 0)
             logger.severe("invalid random spin cycles: max: " + randomSpinMax + " min: " + randomSpinMin);
 
+        // for reproducible runs
+        String seed = properties.getProperty("RandomSeed", "").trim();
+        seeded = !seed.isEmpty();
+        randomSeed = seeded ? Long.parseLong(seed) : 0;
+        deterministic = Boolean.parseBoolean(properties.getProperty("Deterministic", "False"));
+
         // cards settings
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
         deckSize = (int) Math.pow(featureSize, featureCount);
+        rules = properties.getProperty("Rules", Rules.CLASSIC).trim().toLowerCase();
+        if (rules.equals(Rules.ULTRA))
+            claimSize = 2 * (featureSize - 1);
+        else if (rules.equals(Rules.AFFINE))
+            claimSize = featureSize;
+        else
+            claimSize = Integer.parseInt(properties.getProperty("ClaimSize", Integer.toString(featureSize)));
+        if (!Rules.isSupported(rules, featureSize))
+            logger.severe("warning: rules " + rules + " are not supported with feature size " + featureSize + ".");
 
         // gameplay settings
         humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
@@ -204,11 +330,18 @@ public class Config {
         players = humanPlayers + computerPlayers;
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
-        turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
+        Timing initial = Timing.parse(properties);
+        timing = new AtomicReference<>(initial);
+        turnTimeoutMillis = initial.turnTimeoutMillis;
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
-        pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
-        penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
-        tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
+        pointFreezeMillis = initial.pointFreezeMillis;
+        penaltyFreezeMillis = initial.penaltyFreezeMillis;
+        tableDelayMillis = initial.tableDelayMillis;
+        reloadConfig = Boolean.parseBoolean(properties.getProperty("ReloadConfig", "True"));
+        claimWindowMillis = (long) (Double.parseDouble(properties.getProperty("ClaimWindowSeconds", "0.002")) * 1000.0);
+        checkpointMillis = (long) (Double.parseDouble(properties.getProperty("CheckpointSeconds", "0")) * 1000.0);
+        checkpointFile = properties.getProperty("CheckpointFile", "checkpoint.bin").trim();
+        statsFile = properties.getProperty("StatsFile", "").trim();
         endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
 
         // ui settings
@@ -225,6 +358,19 @@ public class Config {
         playerCellHeight = Integer.parseInt(properties.getProperty("PlayerCellHeight", "40"));
         fontSize = Integer.parseInt(properties.getProperty("FontSize", "40"));
 
+        // network settings
+        serverPort = Integer.parseInt(properties.getProperty("ServerPort", "0"));
+        spectatorPort = Integer.parseInt(properties.getProperty("SpectatorPort", "0"));
+        spectatorQueueFrames = Math.max(0, Integer.parseInt(properties.getProperty("SpectatorQueueFrames", "0")));
+
+        // log settings
+        logRotateBytes = (long) (Double.parseDouble(properties.getProperty("LogRotateMegabytes", "16")) * 1024 * 1024);
+        logRotateMillis = (long) (Double.parseDouble(properties.getProperty("LogRotateSeconds", "3600")) * 1000.0);
+        logMaxFiles = Integer.parseInt(properties.getProperty("LogMaxFiles", "20"));
+        logFlushMillis = (long) (Double.parseDouble(properties.getProperty("LogFlushSeconds", "1")) * 1000.0);
+        if (logMaxFiles < 1)
+            logger.severe("warning: LogMaxFiles must be at least 1, keeping only the current log file.");
+
         // keyboard input data
         playerKeys = new int[players][rows * columns];
         for (int i = 0; i < players; i++) {
@@ -0,0 +1,111 @@
+package bguspl.set;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Watches the configuration file and reloads the timing settings (see Timing) when it changes, so the table delay,
+ * the freezes and the turn timeout can be tuned while a game runs. The other settings are only read at startup.
+ * Runs in a thread of its own, blocked on a WatchService (of the file's directory) until something changes there.
+ */
+public final class ConfigWatcher implements Runnable, Closeable {
+
+    /**
+     * How long to wait after a change before reading the file, for an editor to finish writing it (several changes
+     * meanwhile make one reload).
+     */
+    private static final long SETTLE_MILLIS = 100;
+
+    private final Logger logger;
+    private final Config config;
+    private final Path file;
+    private final WatchService watcher;
+
+    /**
+     * The class constructor.
+     *
+     * @param logger - the logger to report reloads to.
+     * @param config - the configuration to publish the reloaded settings to.
+     * @param file   - the configuration file.
+     * @throws IOException if the file's directory can't be watched.
+     */
+    public ConfigWatcher(Logger logger, Config config, Path file) throws IOException {
+        this.logger = logger;
+        this.config = config;
+        this.file = file.toAbsolutePath();
+        Path directory = this.file.getParent();
+        watcher = directory.getFileSystem().newWatchService();
+        directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * Waits for changes of the file and reloads it, until closed.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = changed(key);
+                if (!key.reset()) {
+                    logger.severe("warning: the directory of " + file + " can't be watched anymore.");
+                    return;
+                }
+                if (!changed) continue;
+                Thread.sleep(SETTLE_MILLIS);
+                for (WatchKey more = watcher.poll(); more != null; more = watcher.poll()) {
+                    changed(more);
+                    more.reset();
+                }
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {}
+    }
+
+    /**
+     * @return - true iff the events of the key may be a change of the file.
+     */
+    private boolean changed(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents())
+            changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context());
+        return changed;
+    }
+
+    /**
+     * Reads the file and publishes its timing settings. A file that can't be read, or with a setting that is not a
+     * number, is skipped with a warning (e.g. while it is half written), and the settings in effect are kept.
+     */
+    void reload() {
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(file)) {
+            properties.load(is);
+        } catch (IOException e) {
+            logger.severe("warning: cannot reload configuration file " + file + ": " + e);
+            return;
+        }
+        try {
+            config.reload(properties, logger);
+        } catch (NumberFormatException e) {
+            logger.severe("warning: invalid timing in " + file + " (" + e.getMessage() + "), keeping the current one.");
+        }
+    }
+
+    /**
+     * Stops watching the file (the thread running the watcher returns).
+     */
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+    }
+}
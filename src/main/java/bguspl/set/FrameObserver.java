@@ -0,0 +1,19 @@
+package bguspl.set;
+
+/**
+ * Receives the state frames published by a StateBroadcaster.
+ * All the calls are made from the broadcaster's thread, never from the game threads.
+ */
+public interface FrameObserver {
+
+    /**
+     * Called for every frame published (the first frame an observer gets is always a snapshot).
+     * @param frame - the frame, which must not be modified.
+     */
+    void onFrame(StateFrame frame);
+
+    /**
+     * Called once the broadcaster is disposed of, after the last frame.
+     */
+    default void close() {}
+}
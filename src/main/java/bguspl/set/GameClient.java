@@ -0,0 +1,170 @@
+package bguspl.set;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * The client side of GameServer: connects to a server, decodes the game events it sends and replays them on a local
+ * user interface, and sends slot presses for the seat the server assigned to this client.
+ * The events are decoded on the thread that calls receive (or on the thread started by start).
+ */
+public class GameClient implements AutoCloseable {
+
+    private final SocketChannel channel;
+    private final UserInterface ui;
+    private final ByteBuffer in = ByteBuffer.allocateDirect(1 << 16);
+    private final ByteBuffer out = ByteBuffer.allocateDirect(1 + Short.BYTES);
+
+    private final int seat;
+    private final int tableSize;
+    private final int players;
+
+    /**
+     * Connects to a server and waits for its welcome message.
+     *
+     * @param host - the server's host name.
+     * @param port - the server's port.
+     * @param ui   - the user interface to replay the game events on.
+     * @throws IOException if the connection fails.
+     */
+    public GameClient(String host, int port, UserInterface ui) throws IOException {
+        this.ui = ui;
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.socket().setTcpNoDelay(true);
+        in.limit(0);
+
+        require(1 + 3 * Short.BYTES);
+        if (in.get() != GameServer.WELCOME)
+            throw new IOException("unexpected message from server");
+        seat = in.getShort();
+        tableSize = in.getShort();
+        players = in.getShort();
+    }
+
+    /**
+     * @return - the id of the player this client plays as, or GameServer.NO_SEAT if it can only watch.
+     */
+    public int seat() {
+        return seat;
+    }
+
+    public int tableSize() {
+        return tableSize;
+    }
+
+    public int players() {
+        return players;
+    }
+
+    /**
+     * Sends a slot press for this client's seat.
+     *
+     * @param slot - the slot pressed.
+     * @throws IOException if the connection fails.
+     */
+    public synchronized void press(int slot) throws IOException {
+        out.clear();
+        out.put(GameServer.PRESS).putShort((short) slot).flip();
+        while (out.hasRemaining()) channel.write(out);
+    }
+
+    /**
+     * Blocks until the next game event arrives and replays it on the user interface.
+     *
+     * @return - the type of the event received.
+     * @throws IOException if the connection fails or is closed.
+     */
+    public byte receive() throws IOException {
+        require(1);
+        byte type = in.get();
+        switch (type) {
+            case GameServer.CARD_PLACED:
+                require(Short.BYTES + Integer.BYTES);
+                int slot = in.getShort();
+                ui.placeCard(in.getInt(), slot);
+                break;
+            case GameServer.CARD_REMOVED:
+                require(Short.BYTES);
+                ui.removeCard(in.getShort());
+                break;
+            case GameServer.TOKEN_PLACED:
+                require(2 * Short.BYTES);
+                ui.placeToken(in.getShort(), in.getShort());
+                break;
+            case GameServer.TOKEN_REMOVED:
+                require(2 * Short.BYTES);
+                ui.removeToken(in.getShort(), in.getShort());
+                break;
+            case GameServer.TOKENS_REMOVED:
+                require(Short.BYTES);
+                int tokensSlot = in.getShort();
+                if (tokensSlot < 0) ui.removeTokens();
+                else ui.removeTokens(tokensSlot);
+                break;
+            case GameServer.COUNTDOWN:
+                require(Long.BYTES + 1);
+                ui.setCountdown(in.getLong(), in.get() != 0);
+                break;
+            case GameServer.ELAPSED:
+                require(Long.BYTES);
+                ui.setElapsed(in.getLong());
+                break;
+            case GameServer.FREEZE:
+                require(Short.BYTES + Long.BYTES);
+                ui.setFreeze(in.getShort(), in.getLong());
+                break;
+            case GameServer.SCORE:
+                require(Short.BYTES + Integer.BYTES);
+                ui.setScore(in.getShort(), in.getInt());
+                break;
+            case GameServer.WINNERS:
+                require(Short.BYTES);
+                int[] winners = new int[in.getShort()];
+                require(winners.length * Short.BYTES);
+                for (int i = 0; i < winners.length; i++) winners[i] = in.getShort();
+                ui.announceWinner(winners);
+                break;
+            default:
+                throw new IOException("unknown message type " + type);
+        }
+        return type;
+    }
+
+    /**
+     * Starts a daemon thread that replays all the game events until the connection is closed.
+     *
+     * @return - the thread started.
+     */
+    public Thread start() {
+        Thread thread = new Thread(() -> {
+            try {
+                while (true) receive();
+            } catch (IOException ignored) {
+            } finally {
+                ui.dispose();
+            }
+        }, "client-" + seat);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Reads from the server until at least the given number of bytes are available.
+     */
+    private void require(int bytes) throws IOException {
+        if (in.remaining() >= bytes) return;
+        in.compact();
+        while (in.position() < bytes)
+            if (channel.read(in) < 0) throw new EOFException("server closed the connection");
+        in.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
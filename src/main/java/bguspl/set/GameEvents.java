@@ -0,0 +1,142 @@
+package bguspl.set;
+
+/**
+ * Emits the game's Java Flight Recorder events (see JfrEvents), so that a recording lines the game up with the GC,
+ * lock and CPU events of the JVM: claims submitted and judged, cards dealt, reshuffles, freezes and set searches.
+ * The game targets Java 8, where JFR may be missing, so JfrEvents is only compiled by the jfr profile of the build
+ * (active on JDK 11 and later), and only loaded, by name, when both it and the JVM's JFR are there. Otherwise the
+ * events are dropped. When no recording is running an event costs a check of a flag (the JIT removes the event object).
+ */
+public final class GameEvents {
+
+    /**
+     * The verdicts of a judged claim.
+     */
+    public static final String SET = "set";
+    public static final String NOT_A_SET = "not a set";
+    public static final String REJECTED_BY_PLAYER = "rejected by player";
+    public static final String DISCARDED = "discarded";
+
+    /**
+     * Emits the events (implemented by JfrEvents), see the methods of the same names below.
+     */
+    interface Recorder {
+        void claimSubmitted(int player, int[] slots, long stampNanos, long version);
+        void claimJudged(int player, String verdict, long queueWaitNanos, boolean confirmed);
+        void cardDealt(int card, int slot, int deckSize);
+        void reshuffle(int cards, int deckSize);
+        void freezeStart(int player, long millis, boolean penalty);
+        void freezeEnd(int player);
+        boolean setSearchEnabled();
+        void setSearch(String operation, int cards, int found, long searchNanos);
+    }
+
+    /**
+     * The recorder, or null if the game was built without JfrEvents or the JVM has no Java Flight Recorder.
+     */
+    private static final Recorder recorder = loadRecorder();
+
+    private GameEvents() {}
+
+    private static Recorder loadRecorder() {
+        try {
+            Class.forName("jdk.jfr.Event", false, GameEvents.class.getClassLoader());
+            return (Recorder) Class.forName("bguspl.set.JfrEvents").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return - true iff the events are recorded (while a recording that enables them runs).
+     */
+    static boolean available() {
+        return recorder != null;
+    }
+
+    /**
+     * A player submitted a claim to the dealer.
+     *
+     * @param player     - the player id.
+     * @param slots      - the slots claimed.
+     * @param stampNanos - the claim's stamp (see Dealer.claimStamp).
+     * @param version    - the table version the player checked the claim against (Table.noVersion if none).
+     */
+    public static void claimSubmitted(int player, int[] slots, long stampNanos, long version) {
+        if (recorder != null) recorder.claimSubmitted(player, slots, stampNanos, version);
+    }
+
+    /**
+     * A claim was judged.
+     *
+     * @param player         - the player id.
+     * @param verdict        - one of the verdicts above.
+     * @param queueWaitNanos - the time from the claim's stamp until it was judged.
+     * @param confirmed      - true iff the claim was confirmed by the table version, without checking the cards.
+     */
+    public static void claimJudged(int player, String verdict, long queueWaitNanos, boolean confirmed) {
+        if (recorder != null) recorder.claimJudged(player, verdict, queueWaitNanos, confirmed);
+    }
+
+    /**
+     * The dealer dealt a card from the deck to the table.
+     *
+     * @param card     - the card id.
+     * @param slot     - the slot it was placed in.
+     * @param deckSize - the number of cards left in the deck.
+     */
+    public static void cardDealt(int card, int slot, int deckSize) {
+        if (recorder != null) recorder.cardDealt(card, slot, deckSize);
+    }
+
+    /**
+     * The dealer returned the table to the deck.
+     *
+     * @param cards    - the number of cards returned.
+     * @param deckSize - the number of cards in the deck after it.
+     */
+    public static void reshuffle(int cards, int deckSize) {
+        if (recorder != null) recorder.reshuffle(cards, deckSize);
+    }
+
+    /**
+     * A player was frozen.
+     *
+     * @param player  - the player id.
+     * @param millis  - the freeze time.
+     * @param penalty - true for a penalty, false for the freeze after a point.
+     */
+    public static void freezeStart(int player, long millis, boolean penalty) {
+        if (recorder != null) recorder.freezeStart(player, millis, penalty);
+    }
+
+    /**
+     * A player's freeze is over.
+     *
+     * @param player - the player id.
+     */
+    public static void freezeEnd(int player) {
+        if (recorder != null) recorder.freezeEnd(player);
+    }
+
+    /**
+     * Called before a set search that may be reported with setSearch.
+     *
+     * @return - the start time of the search, or 0 if it is not recorded.
+     */
+    public static long setSearchStart() {
+        return recorder != null && recorder.setSearchEnabled() ? System.nanoTime() : 0;
+    }
+
+    /**
+     * A set search is over.
+     *
+     * @param operation - the search method (e.g. "anySet").
+     * @param cards     - the number of cards searched.
+     * @param found     - the number of sets found.
+     * @param start     - the value setSearchStart returned.
+     */
+    public static void setSearch(String operation, int cards, int found, long start) {
+        if (start != 0) recorder.setSearch(operation, cards, found, System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,519 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Serves the game to remote players over TCP, as another user interface of the game.
+ * Every change of the game state is encoded in a compact binary message and sent to all connected clients, and slot
+ * presses sent by a client are dispatched to the player seated at that connection (see GameClient for the other side).
+ * All the network I/O happens on a single thread using a non-blocking selector, so the game threads only append the
+ * encoded message to a buffer and never wait for the network.
+ *
+ * Every message starts with a one byte type, followed by its fixed size payload (all numbers are big-endian):
+ * WELCOME seat(short) tableSize(short) players(short), CARD_PLACED slot(short) card(int), CARD_REMOVED slot(short),
+ * TOKEN_PLACED player(short) slot(short), TOKEN_REMOVED player(short) slot(short), TOKENS_REMOVED slot(short, -1 for
+ * all), COUNTDOWN millies(long) warn(byte), ELAPSED millies(long), FREEZE player(short) millies(long),
+ * SCORE player(short) score(int), WINNERS count(short) followed by count player ids(short).
+ * Clients send PRESS slot(short). A client that was not given a seat (seat -1) can only watch.
+ * A client that can't keep up is not waited for: the events it missed are skipped, and once it has read everything
+ * that was already sent to it, it gets the whole state instead (so slow spectators see a sampled game).
+ */
+public class GameServer implements UserInterface, Runnable {
+
+    /**
+     * Message types.
+     */
+    public static final byte WELCOME = 1;
+    public static final byte CARD_PLACED = 2;
+    public static final byte CARD_REMOVED = 3;
+    public static final byte TOKEN_PLACED = 4;
+    public static final byte TOKEN_REMOVED = 5;
+    public static final byte TOKENS_REMOVED = 6;
+    public static final byte COUNTDOWN = 7;
+    public static final byte ELAPSED = 8;
+    public static final byte FREEZE = 9;
+    public static final byte SCORE = 10;
+    public static final byte WINNERS = 11;
+    public static final byte PRESS = 12;
+
+    /**
+     * The seat of a client that only watches the game.
+     */
+    public static final int NO_SEAT = -1;
+
+    /**
+     * The size of the buffer that collects the messages between two rounds of the selector thread.
+     */
+    private static final int EVENTS_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The minimal size of the per connection buffers. A client that falls this far behind skips events.
+     */
+    private static final int MIN_OUT_BUFFER_SIZE = 1 << 14;
+    private static final int IN_BUFFER_SIZE = 1 << 8;
+
+    private final Logger logger;
+    private final Config config;
+    private final Player[] players;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final List<Connection> connections = new ArrayList<>();
+
+    /**
+     * Guards the game state mirror and the events buffer. Only held for encoding a message or swapping buffers.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * The messages encoded since the last round of the selector thread, and the buffer it is currently sending.
+     */
+    private ByteBuffer events = ByteBuffer.allocate(EVENTS_BUFFER_SIZE);
+    private ByteBuffer sending = ByteBuffer.allocate(EVENTS_BUFFER_SIZE);
+
+    /**
+     * True iff the events buffer overflowed, so all clients have to be sent the whole state again.
+     */
+    private boolean overflow;
+
+    /**
+     * True iff the selector was already woken up for the events in the buffer.
+     */
+    private boolean wakeupPending;
+
+    /**
+     * A mirror of the game state, used to bring newly connected clients up to date.
+     */
+    private final int[] slotToCard;
+    private final boolean[][] tokens;
+    private final int[] scores;
+    private final long[] freezes;
+    private int[] winners;
+
+    /**
+     * The timer shown: COUNTDOWN or ELAPSED with its time (and warning), or 0 if none was shown yet.
+     */
+    private byte timer;
+    private long timerMillis;
+    private boolean timerWarn;
+
+    /**
+     * Which human seats are taken by remote clients.
+     */
+    private final boolean[] seatTaken;
+
+    /**
+     * The size of the outgoing buffer of each connection (enough for a few states of the game).
+     */
+    private final int outBufferSize;
+
+    private volatile boolean closed;
+
+    /**
+     * Opens the server socket (the network thread is started by running this object).
+     *
+     * @param logger  - the game's logger.
+     * @param config  - the game's configuration.
+     * @param players - the players (remote clients are seated at the human players).
+     * @param port    - the TCP port to listen on (0 for any free port).
+     * @throws IOException if the server socket can't be opened.
+     */
+    public GameServer(Logger logger, Config config, Player[] players, int port) throws IOException {
+        this(logger, config, players, port, config.humanPlayers);
+    }
+
+    /**
+     * Opens the server socket (the network thread is started by running this object).
+     *
+     * @param logger  - the game's logger.
+     * @param config  - the game's configuration.
+     * @param players - the players.
+     * @param port    - the TCP port to listen on (0 for any free port).
+     * @param seats   - the number of human players remote clients can be seated at (0 for a spectators only server).
+     * @throws IOException if the server socket can't be opened.
+     */
+    public GameServer(Logger logger, Config config, Player[] players, int port, int seats) throws IOException {
+        this.logger = logger;
+        this.config = config;
+        this.players = players;
+
+        slotToCard = new int[config.tableSize];
+        Arrays.fill(slotToCard, -1);
+        tokens = new boolean[config.players][config.tableSize];
+        scores = new int[config.players];
+        freezes = new long[config.players];
+        seatTaken = new boolean[Math.min(seats, config.humanPlayers)];
+        outBufferSize = Math.max(4 * stateSize(), MIN_OUT_BUFFER_SIZE);
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * @return - the TCP port the server listens on.
+     */
+    public int port() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * The network thread: accepts clients, reads their presses and sends them the game events.
+     */
+    @Override
+    public void run() {
+        try {
+            while (!closed) {
+                selector.select();
+                if (closed) break;
+
+                sendEvents();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept();
+                    else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isReadable()) read(connection);
+                        if (key.isValid() && key.isWritable()) flush(connection);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (!closed) logger.severe("game server stopped: " + e.getMessage());
+        } finally {
+            for (Connection connection : new ArrayList<>(connections)) disconnect(connection);
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel, outBufferSize);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        connections.add(connection);
+
+        synchronized (lock) {
+            for (int seat = 0; seat < seatTaken.length && connection.seat == NO_SEAT; seat++)
+                if (!seatTaken[seat]) {
+                    seatTaken[seat] = true;
+                    connection.seat = seat;
+                }
+            connection.out.put(WELCOME).putShort((short) connection.seat).putShort((short) config.tableSize).putShort((short) config.players);
+            putState(connection.out);
+        }
+        logger.info("client " + channel.getRemoteAddress() + " connected to seat " + connection.seat);
+        flush(connection);
+    }
+
+    private void read(Connection connection) {
+        int read;
+        try {
+            read = connection.channel.read(connection.in);
+        } catch (IOException e) {
+            read = -1;
+        }
+        if (read < 0) {
+            disconnect(connection);
+            return;
+        }
+
+        connection.in.flip();
+        while (connection.in.remaining() >= 1 + Short.BYTES) {
+            byte type = connection.in.get();
+            int slot = connection.in.getShort();
+            if (type != PRESS) {
+                logger.severe("client sent an unknown message type " + type);
+                disconnect(connection);
+                return;
+            }
+            if (connection.seat != NO_SEAT && slot >= 0 && slot < config.tableSize && players[connection.seat] != null)
+                players[connection.seat].keyPressed(slot);
+        }
+        connection.in.compact();
+    }
+
+    /**
+     * Copies the events encoded by the game threads since the last round to the buffers of all connections.
+     */
+    private void sendEvents() {
+        boolean resend;
+        synchronized (lock) {
+            ByteBuffer swap = sending;
+            sending = events;
+            events = swap;
+            events.clear();
+            resend = overflow;
+            overflow = false;
+            wakeupPending = false;
+        }
+        sending.flip();
+
+        for (Connection connection : new ArrayList<>(connections)) {
+            if (resend)
+                connection.needsState = true;
+            else if (!connection.needsState) {
+                if (connection.out.remaining() >= sending.remaining())
+                    connection.out.put(sending.duplicate());
+                else {
+                    connection.needsState = true;
+                    logger.fine("client of seat " + connection.seat + " is too slow, skipping events");
+                }
+            }
+            flush(connection);
+        }
+    }
+
+    /**
+     * Writes as much of the connection's buffer as the socket takes without blocking. Once a client that skipped
+     * events has read everything that was sent to it before, it is sent the whole state.
+     */
+    private void flush(Connection connection) {
+        try {
+            connection.out.flip();
+            connection.channel.write(connection.out);
+            connection.out.compact();
+            if (connection.needsState && connection.out.position() == 0) {
+                synchronized (lock) {
+                    putState(connection.out);
+                }
+                connection.needsState = false;
+                connection.out.flip();
+                connection.channel.write(connection.out);
+                connection.out.compact();
+            }
+            if (connection.key.isValid())
+                connection.key.interestOps(connection.out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    private void disconnect(Connection connection) {
+        connections.remove(connection);
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException ignored) {}
+        if (connection.seat != NO_SEAT)
+            synchronized (lock) {
+                seatTaken[connection.seat] = false;
+            }
+        logger.info("client of seat " + connection.seat + " disconnected");
+    }
+
+    /**
+     * @return - an upper bound on the size of the whole state encoded by putState.
+     */
+    private int stateSize() {
+        return config.tableSize * (1 + Short.BYTES + Integer.BYTES)
+                + config.players * config.tableSize * (1 + 2 * Short.BYTES)
+                + config.players * (2 + 2 * Short.BYTES + Integer.BYTES + Long.BYTES)
+                + 1 + Short.BYTES // all tokens removed
+                + 2 + Long.BYTES // the timer
+                + 1 + Short.BYTES + config.players * Short.BYTES;
+    }
+
+    /**
+     * Encodes the whole game state (used for newly connected clients and after an overflow). It starts by removing all
+     * the tokens, so that tokens removed by the events a client skipped are not left on its table.
+     * @pre - the lock is held.
+     */
+    private void putState(ByteBuffer out) {
+        out.put(TOKENS_REMOVED).putShort((short) -1);
+        for (int slot = 0; slot < slotToCard.length; slot++)
+            if (slotToCard[slot] >= 0) out.put(CARD_PLACED).putShort((short) slot).putInt(slotToCard[slot]);
+            else out.put(CARD_REMOVED).putShort((short) slot);
+        for (int player = 0; player < tokens.length; player++)
+            for (int slot = 0; slot < tokens[player].length; slot++)
+                if (tokens[player][slot]) out.put(TOKEN_PLACED).putShort((short) player).putShort((short) slot);
+        for (int player = 0; player < scores.length; player++) {
+            out.put(SCORE).putShort((short) player).putInt(scores[player]);
+            out.put(FREEZE).putShort((short) player).putLong(freezes[player]);
+        }
+        if (timer == COUNTDOWN) out.put(COUNTDOWN).putLong(timerMillis).put((byte) (timerWarn ? 1 : 0));
+        else if (timer == ELAPSED) out.put(ELAPSED).putLong(timerMillis);
+        if (winners != null) putWinners(out, winners);
+    }
+
+    private static void putWinners(ByteBuffer out, int[] winners) {
+        out.put(WINNERS).putShort((short) winners.length);
+        for (int player : winners) out.putShort((short) player);
+    }
+
+    /**
+     * Makes room for a message of the given size in the events buffer.
+     * @pre - the lock is held.
+     * @return - true iff the message fits, otherwise the buffer is dropped and the whole state will be resent.
+     */
+    private boolean reserve(int size) {
+        if (events.remaining() >= size) return true;
+        events.clear();
+        overflow = true;
+        return false;
+    }
+
+    /**
+     * Wakes up the selector thread to send the events (at most once per round).
+     * @pre - the lock is held.
+     */
+    private void wakeup() {
+        if (!wakeupPending && !closed) {
+            wakeupPending = true;
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        synchronized (lock) {
+            slotToCard[slot] = card;
+            if (reserve(1 + Short.BYTES + Integer.BYTES)) events.put(CARD_PLACED).putShort((short) slot).putInt(card);
+            wakeup();
+        }
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        synchronized (lock) {
+            slotToCard[slot] = -1;
+            if (reserve(1 + Short.BYTES)) events.put(CARD_REMOVED).putShort((short) slot);
+            wakeup();
+        }
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        synchronized (lock) {
+            tokens[player][slot] = true;
+            if (reserve(1 + 2 * Short.BYTES)) events.put(TOKEN_PLACED).putShort((short) player).putShort((short) slot);
+            wakeup();
+        }
+    }
+
+    @Override
+    public void removeTokens() {
+        synchronized (lock) {
+            for (boolean[] playerTokens : tokens) Arrays.fill(playerTokens, false);
+            if (reserve(1 + Short.BYTES)) events.put(TOKENS_REMOVED).putShort((short) -1);
+            wakeup();
+        }
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        synchronized (lock) {
+            for (boolean[] playerTokens : tokens) playerTokens[slot] = false;
+            if (reserve(1 + Short.BYTES)) events.put(TOKENS_REMOVED).putShort((short) slot);
+            wakeup();
+        }
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        synchronized (lock) {
+            tokens[player][slot] = false;
+            if (reserve(1 + 2 * Short.BYTES)) events.put(TOKEN_REMOVED).putShort((short) player).putShort((short) slot);
+            wakeup();
+        }
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        synchronized (lock) {
+            timer = COUNTDOWN;
+            timerMillis = millies;
+            timerWarn = warn;
+            if (reserve(2 + Long.BYTES)) events.put(COUNTDOWN).putLong(millies).put((byte) (warn ? 1 : 0));
+            wakeup();
+        }
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        synchronized (lock) {
+            timer = ELAPSED;
+            timerMillis = millies;
+            if (reserve(1 + Long.BYTES)) events.put(ELAPSED).putLong(millies);
+            wakeup();
+        }
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        synchronized (lock) {
+            freezes[player] = millies;
+            if (reserve(1 + Short.BYTES + Long.BYTES)) events.put(FREEZE).putShort((short) player).putLong(millies);
+            wakeup();
+        }
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        synchronized (lock) {
+            scores[player] = score;
+            if (reserve(1 + Short.BYTES + Integer.BYTES)) events.put(SCORE).putShort((short) player).putInt(score);
+            wakeup();
+        }
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        synchronized (lock) {
+            winners = players.clone();
+            if (reserve(1 + Short.BYTES + players.length * Short.BYTES)) putWinners(events, winners);
+            wakeup();
+        }
+    }
+
+    /**
+     * Closes the server and disconnects all clients (the pending events are not sent).
+     */
+    @Override
+    public void dispose() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    /**
+     * The state of a single client connection (only accessed by the selector thread).
+     */
+    private static class Connection {
+
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocateDirect(IN_BUFFER_SIZE);
+        private final ByteBuffer out;
+        private SelectionKey key;
+        private int seat = NO_SEAT;
+        private boolean needsState;
+
+        private Connection(SocketChannel channel, int outBufferSize) {
+            this.channel = channel;
+            out = ByteBuffer.allocateDirect(outBufferSize);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package bguspl.set;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.util.Arrays;
+
+/**
+ * The game's Java Flight Recorder events. Only used through GameEvents, which checks that the JVM has JFR before this
+ * class is loaded. Compiled only by the jfr profile of the build (see pom.xml), since jdk.jfr is missing from Java 8.
+ * Every event is created, checked and committed in one method, so when it is not enabled the JIT removes the event
+ * object and only the check is left.
+ * Enable them with e.g. java -XX:StartFlightRecording=filename=game.jfr,settings=profile bguspl.set.Main (the events
+ * are enabled by default, and have no stack traces).
+ */
+final class JfrEvents implements GameEvents.Recorder {
+
+    private static final String CATEGORY = "Set Game";
+
+    JfrEvents() {}
+
+    @Name("bguspl.set.ClaimSubmitted")
+    @Label("Claim Submitted")
+    @Category({CATEGORY, "Claims"})
+    @StackTrace(false)
+    static final class ClaimSubmitted extends Event {
+        @Label("Player") int player;
+        @Label("Slots") String slots;
+        @Label("Stamp") @Description("System.nanoTime() when the last token was placed") long stamp;
+        @Label("Table Version") long version;
+    }
+
+    @Name("bguspl.set.ClaimJudged")
+    @Label("Claim Judged")
+    @Category({CATEGORY, "Claims"})
+    @StackTrace(false)
+    static final class ClaimJudged extends Event {
+        @Label("Player") int player;
+        @Label("Verdict") String verdict;
+        @Label("Queue Wait") @Description("From the claim's stamp until it was judged") @Timespan long queueWait;
+        @Label("Confirmed By Version") boolean confirmed;
+    }
+
+    @Name("bguspl.set.CardDealt")
+    @Label("Card Dealt")
+    @Category({CATEGORY, "Table"})
+    @StackTrace(false)
+    static final class CardDealt extends Event {
+        @Label("Card") int card;
+        @Label("Slot") int slot;
+        @Label("Deck Size") int deckSize;
+    }
+
+    @Name("bguspl.set.Reshuffle")
+    @Label("Reshuffle")
+    @Category({CATEGORY, "Table"})
+    @StackTrace(false)
+    static final class Reshuffle extends Event {
+        @Label("Cards Returned") int cards;
+        @Label("Deck Size") int deckSize;
+    }
+
+    @Name("bguspl.set.FreezeStart")
+    @Label("Freeze Start")
+    @Category({CATEGORY, "Players"})
+    @StackTrace(false)
+    static final class FreezeStart extends Event {
+        @Label("Player") int player;
+        @Label("Freeze") @Timespan(Timespan.MILLISECONDS) long freeze;
+        @Label("Penalty") boolean penalty;
+    }
+
+    @Name("bguspl.set.FreezeEnd")
+    @Label("Freeze End")
+    @Category({CATEGORY, "Players"})
+    @StackTrace(false)
+    static final class FreezeEnd extends Event {
+        @Label("Player") int player;
+    }
+
+    @Name("bguspl.set.SetSearch")
+    @Label("Set Search")
+    @Category({CATEGORY, "Set Finder"})
+    @StackTrace(false)
+    static final class SetSearch extends Event {
+        @Label("Operation") String operation;
+        @Label("Cards") int cards;
+        @Label("Sets Found") int found;
+        @Label("Search Time") @Timespan long searchTime;
+    }
+
+    @Override
+    public void claimSubmitted(int player, int[] slots, long stampNanos, long version) {
+        ClaimSubmitted event = new ClaimSubmitted();
+        if (!event.isEnabled()) return;
+        event.player = player;
+        event.slots = Arrays.toString(slots);
+        event.stamp = stampNanos;
+        event.version = version;
+        event.commit();
+    }
+
+    @Override
+    public void claimJudged(int player, String verdict, long queueWaitNanos, boolean confirmed) {
+        ClaimJudged event = new ClaimJudged();
+        if (!event.isEnabled()) return;
+        event.player = player;
+        event.verdict = verdict;
+        event.queueWait = queueWaitNanos;
+        event.confirmed = confirmed;
+        event.commit();
+    }
+
+    @Override
+    public void cardDealt(int card, int slot, int deckSize) {
+        CardDealt event = new CardDealt();
+        if (!event.isEnabled()) return;
+        event.card = card;
+        event.slot = slot;
+        event.deckSize = deckSize;
+        event.commit();
+    }
+
+    @Override
+    public void reshuffle(int cards, int deckSize) {
+        Reshuffle event = new Reshuffle();
+        if (!event.isEnabled()) return;
+        event.cards = cards;
+        event.deckSize = deckSize;
+        event.commit();
+    }
+
+    @Override
+    public void freezeStart(int player, long millis, boolean penalty) {
+        FreezeStart event = new FreezeStart();
+        if (!event.isEnabled()) return;
+        event.player = player;
+        event.freeze = millis;
+        event.penalty = penalty;
+        event.commit();
+    }
+
+    @Override
+    public void freezeEnd(int player) {
+        FreezeEnd event = new FreezeEnd();
+        if (!event.isEnabled()) return;
+        event.player = player;
+        event.commit();
+    }
+
+    @Override
+    public boolean setSearchEnabled() {
+        return new SetSearch().isEnabled();
+    }
+
+    @Override
+    public void setSearch(String operation, int cards, int found, long searchNanos) {
+        SetSearch event = new SetSearch();
+        if (!event.isEnabled()) return;
+        event.operation = operation;
+        event.cards = cards;
+        event.found = found;
+        event.searchTime = searchNanos;
+        event.commit();
+    }
+}
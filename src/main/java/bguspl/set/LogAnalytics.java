@@ -0,0 +1,613 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * An offline tool that summarizes the games recorded in the log files (one run per game, see Main.initLogger):
+ * claim latency and penalty rate per player, time to the first set and how often the table is reshuffled.
+ * Usage: java bguspl.set.LogAnalytics [--claim-size N] [file or directory ...] (./logs by default).
+ * <p>
+ * A run is its file name.log and the parts rotated out of it, name.1.log.gz, name.2.log.gz, etc. (see
+ * RollingFileHandler), which are read in order as one game. The runs are aggregated in parallel by a fork/join task
+ * per range of runs. A plain file is memory mapped a window at a time and parsed in place, line by line, without
+ * copying the lines, and a compressed part is streamed through a buffer, so gigabytes of history are read in constant
+ * memory. Only the default log format ("[HH:mm:ss.SSS] [LEVEL] message") is understood, other lines are skipped.
+ */
+public final class LogAnalytics {
+
+    /**
+     * The size of the part of a file mapped at a time (a longer line is skipped).
+     */
+    private static final int WINDOW = 1 << 26;
+
+    /**
+     * The size of the buffer a compressed part is decompressed into (a longer line is skipped).
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * The messages of UserInterfaceDecorator and of the dealer (see Dealer.reportVerdict) the statistics are gathered
+     * from.
+     */
+    private static final byte[] PLACING_CARD = bytes("placing card ");
+    private static final byte[] REMOVING_CARD = bytes("removing card from slot ");
+    private static final byte[] PLAYER = bytes("player ");
+    private static final byte[] PLACING_TOKEN = bytes(" placing token on slot ");
+    private static final byte[] REMOVING_PLAYER = bytes("removing player ");
+    private static final byte[] TOKEN_FROM_SLOT = bytes(" token from slot ");
+    private static final byte[] REMOVING_ALL_TOKENS = bytes("removing all tokens");
+    private static final byte[] REMOVING_TOKENS = bytes("removing tokens from slot ");
+    private static final byte[] CLAIM_JUDGED = bytes(" claim judged: ");
+    private static final byte[] SET = bytes(GameEvents.SET);
+    private static final byte[] NOT_A_SET = bytes(GameEvents.NOT_A_SET);
+    private static final byte[] REJECTED_BY_PLAYER = bytes(GameEvents.REJECTED_BY_PLAYER);
+    private static final byte[] DISCARDED = bytes(GameEvents.DISCARDED);
+
+    private LogAnalytics() {}
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * The statistics of some games. Per player arrays are indexed by player id (as shown in the logs, from 1) and
+     * grow as players are seen.
+     */
+    public static final class Summary {
+
+        long games;
+        long lines;
+        long durationMillis;
+        long gamesWithSets;
+        long firstSetMillis;
+        long reshuffles;
+
+        long[] claims = new long[0];
+        long[] sets = new long[0];
+        long[] penalties = new long[0];
+        long[] discarded = new long[0];
+        long[] latencyMillis = new long[0];
+        long[] maxLatencyMillis = new long[0];
+
+        /**
+         * @return - the number of games (runs of log files) summarized.
+         */
+        public long games() {
+            return games;
+        }
+
+        /**
+         * @return - the number of table reshuffles in all the games.
+         */
+        public long reshuffles() {
+            return reshuffles;
+        }
+
+        /**
+         * @return - the mean time from the first card dealt to the first set, over the games that had one.
+         */
+        public double meanTimeToFirstSetMillis() {
+            return gamesWithSets == 0 ? 0 : (double) firstSetMillis / gamesWithSets;
+        }
+
+        /**
+         * @return - the number of players seen (the highest player id).
+         */
+        public int players() {
+            return claims.length - 1;
+        }
+
+        /**
+         * @param player - a player id (from 1).
+         * @return - the number of claims the player made that were judged.
+         */
+        public long claims(int player) {
+            return claims[player];
+        }
+
+        /**
+         * @param player - a player id (from 1).
+         * @return - the number of legal sets the player claimed.
+         */
+        public long sets(int player) {
+            return sets[player];
+        }
+
+        /**
+         * @param player - a player id (from 1).
+         * @return - the number of claims the player was penalized for.
+         */
+        public long penalties(int player) {
+            return penalties[player];
+        }
+
+        /**
+         * @param player - a player id (from 1).
+         * @return - the number of the player's claims that were dropped unjudged, because their cards left the table.
+         */
+        public long discarded(int player) {
+            return discarded[player];
+        }
+
+        /**
+         * @param player - a player id (from 1).
+         * @return - the mean time from the player's last token of a claim until it was judged.
+         */
+        public double meanLatencyMillis(int player) {
+            return claims[player] == 0 ? 0 : (double) latencyMillis[player] / claims[player];
+        }
+
+        /**
+         * @param player - a player id (from 1).
+         * @return - the longest time from the player's last token of a claim until it was judged.
+         */
+        public long maxLatencyMillis(int player) {
+            return maxLatencyMillis[player];
+        }
+
+        /**
+         * Makes sure the per player arrays hold the given player.
+         */
+        void ensurePlayer(int player) {
+            if (player < claims.length) return;
+            int length = player + 1;
+            claims = Arrays.copyOf(claims, length);
+            sets = Arrays.copyOf(sets, length);
+            penalties = Arrays.copyOf(penalties, length);
+            discarded = Arrays.copyOf(discarded, length);
+            latencyMillis = Arrays.copyOf(latencyMillis, length);
+            maxLatencyMillis = Arrays.copyOf(maxLatencyMillis, length);
+        }
+
+        /**
+         * Adds the statistics of other games to these.
+         *
+         * @param other - the statistics to add.
+         * @return - this summary.
+         */
+        Summary merge(Summary other) {
+            games += other.games;
+            lines += other.lines;
+            durationMillis += other.durationMillis;
+            gamesWithSets += other.gamesWithSets;
+            firstSetMillis += other.firstSetMillis;
+            reshuffles += other.reshuffles;
+            ensurePlayer(other.players());
+            for (int p = 1; p <= other.players(); p++) {
+                claims[p] += other.claims[p];
+                sets[p] += other.sets[p];
+                penalties[p] += other.penalties[p];
+                discarded[p] += other.discarded[p];
+                latencyMillis[p] += other.latencyMillis[p];
+                maxLatencyMillis[p] = Math.max(maxLatencyMillis[p], other.maxLatencyMillis[p]);
+            }
+            return this;
+        }
+
+        /**
+         * Prints the summary tables.
+         *
+         * @param out - the stream to print to.
+         */
+        public void print(PrintStream out) {
+            double minutes = durationMillis / 60_000.0;
+            out.printf("%-8s %10s %12s %16s %12s %14s%n",
+                    "games", "lines", "mean length", "first set (ms)", "reshuffles", "reshuffles/min");
+            out.printf("%-8d %10d %11.1fs %16.0f %12d %14.2f%n%n", games, lines,
+                    games == 0 ? 0 : durationMillis / 1000.0 / games, meanTimeToFirstSetMillis(), reshuffles,
+                    minutes == 0 ? 0 : reshuffles / minutes);
+            out.printf("%-8s %8s %8s %10s %13s %17s %16s %10s%n",
+                    "player", "claims", "sets", "penalties", "penalty rate", "mean latency (ms)", "max latency (ms)",
+                    "discarded");
+            for (int p = 1; p <= players(); p++)
+                out.printf("%-8d %8d %8d %10d %12.1f%% %17.1f %16d %10d%n", p, claims[p], sets[p], penalties[p],
+                        claims[p] == 0 ? 0 : 100.0 * penalties[p] / claims[p], meanLatencyMillis(p),
+                        maxLatencyMillis[p], discarded[p]);
+        }
+    }
+
+    /**
+     * Summarizes a range of runs, splitting it in two until a single run is left.
+     */
+    private static final class Aggregate extends RecursiveTask<Summary> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<List<Path>> runs;
+        private final int from;
+        private final int to;
+        private final int claimSize;
+
+        Aggregate(List<List<Path>> runs, int from, int to, int claimSize) {
+            this.runs = runs;
+            this.from = from;
+            this.to = to;
+            this.claimSize = claimSize;
+        }
+
+        @Override
+        protected Summary compute() {
+            if (to - from == 0) return new Summary();
+            if (to - from == 1) {
+                GameParser parser = new GameParser(claimSize);
+                for (Path part : runs.get(from)) {
+                    try {
+                        parser.parse(part);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(part.toString(), e);
+                    }
+                }
+                return parser.summary();
+            }
+            int middle = (from + to) >>> 1;
+            Aggregate right = new Aggregate(runs, middle, to, claimSize);
+            right.fork();
+            Summary left = new Aggregate(runs, from, middle, claimSize).compute();
+            return left.merge(right.join());
+        }
+    }
+
+    /**
+     * Follows the events of one game (the parts of one run, in order) and gathers its statistics.
+     */
+    private static final class GameParser {
+
+        private static final long noTime = -1;
+        private static final long noClaim = -1;
+
+        private final int claimSize;
+        private final Summary summary = new Summary();
+
+        private long dayOffset;
+        private long lastTime = noTime;
+        private long firstTime = noTime;
+        private long firstCardTime = noTime;
+        private long firstSetTime = noTime;
+        private int removedInARow;
+
+        /**
+         * Per player: the slots with its tokens, and the time of its pending claim (noClaim if none).
+         */
+        private long[] tokens = new long[0];
+        private long[] claimTime = new long[0];
+
+        GameParser(int claimSize) {
+            this.claimSize = claimSize;
+        }
+
+        /**
+         * Parses the next part of the game.
+         */
+        void parse(Path part) throws IOException {
+            if (part.getFileName().toString().endsWith(".gz"))
+                parseCompressed(part);
+            else
+                parseMapped(part);
+        }
+
+        /**
+         * Maps the file a window at a time and parses its whole lines (a line cut by the end of the window is parsed
+         * again at the start of the next one).
+         */
+        private void parseMapped(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                long position = 0;
+                while (position < size) {
+                    long length = Math.min(WINDOW, size - position);
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                    boolean last = position + length == size;
+                    int start = 0;
+                    for (int i = 0; i < length; i++)
+                        if (buffer.get(i) == '\n') {
+                            line(buffer, start, i);
+                            start = i + 1;
+                        }
+                    if (last && start < length)
+                        line(buffer, start, (int) length);
+                    else if (start == 0 && !last)
+                        start = (int) length; // a line longer than the window: skip it
+                    position += last ? length : start;
+                }
+            }
+        }
+
+        /**
+         * Decompresses the file into a buffer and parses its whole lines (a line cut by the end of the buffer is moved
+         * to its start, and completed by the next read).
+         */
+        private void parseCompressed(Path file) throws IOException {
+            byte[] bytes = new byte[BUFFER_SIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+                int length = 0;
+                boolean skipping = false;
+                for (int n; (n = in.read(bytes, length, bytes.length - length)) >= 0; ) {
+                    int end = length + n;
+                    int start = 0;
+                    for (int i = length; i < end; i++)
+                        if (bytes[i] == '\n') {
+                            if (!skipping) line(buffer, start, i);
+                            skipping = false;
+                            start = i + 1;
+                        }
+                    if (start == 0 && end == bytes.length) { // a line longer than the buffer: skip it
+                        skipping = true;
+                        start = end;
+                    }
+                    length = end - start;
+                    System.arraycopy(bytes, start, bytes, 0, length);
+                }
+                if (length > 0 && !skipping) line(buffer, 0, length);
+            }
+        }
+
+        /**
+         * @return - the statistics of the game, once all its parts were parsed.
+         */
+        Summary summary() {
+            summary.games = 1;
+            if (firstTime != noTime) summary.durationMillis = lastTime - firstTime;
+            if (firstSetTime != noTime && firstCardTime != noTime) {
+                summary.gamesWithSets = 1;
+                summary.firstSetMillis = firstSetTime - firstCardTime;
+            }
+            return summary;
+        }
+
+        /**
+         * Parses one line (from start to end, exclusive, without the line break).
+         */
+        private void line(ByteBuffer b, int start, int end) {
+            if (end > start && b.get(end - 1) == '\r') end--;
+            // [HH:mm:ss.SSS] [LEVEL  ] message
+            if (end - start < 17 || b.get(start) != '[' || b.get(start + 13) != ']') return;
+            long time = digits(b, start + 1, 2) * 3_600_000 + digits(b, start + 4, 2) * 60_000
+                    + digits(b, start + 7, 2) * 1000 + digits(b, start + 10, 3);
+            if (time < 0) return;
+            int message = indexOf(b, start + 15, end, (byte) ']');
+            if (message < 0) return;
+            message += 2;
+            summary.lines++;
+
+            time += dayOffset;
+            if (lastTime != noTime && time < lastTime - DAY_MS / 2) { // the game ran past midnight
+                dayOffset += DAY_MS;
+                time += DAY_MS;
+            }
+            if (firstTime == noTime) firstTime = time;
+            lastTime = time;
+
+            if (matches(b, message, end, PLACING_CARD)) {
+                if (firstCardTime == noTime) firstCardTime = time;
+                removedInARow = 0;
+            } else if (matches(b, message, end, REMOVING_CARD)) {
+                if (++removedInARow == claimSize + 1) summary.reshuffles++; // more cards than a set at once
+            } else if (matches(b, message, end, PLAYER)) {
+                int at = message + PLAYER.length;
+                int player = (int) number(b, at, end);
+                at = skipDigits(b, at, end);
+                if (player > 0 && matches(b, at, end, PLACING_TOKEN))
+                    placeToken(player, (int) number(b, at + PLACING_TOKEN.length, end), time);
+                else if (player > 0 && matches(b, at, end, CLAIM_JUDGED))
+                    verdict(player, b, at + CLAIM_JUDGED.length, end, time);
+            } else if (matches(b, message, end, REMOVING_PLAYER)) {
+                int at = message + REMOVING_PLAYER.length;
+                int player = (int) number(b, at, end);
+                at = skipDigits(b, at, end);
+                if (player > 0 && matches(b, at, end, TOKEN_FROM_SLOT))
+                    removeToken(player, (int) number(b, at + TOKEN_FROM_SLOT.length, end));
+            } else if (matches(b, message, end, REMOVING_ALL_TOKENS)) {
+                Arrays.fill(tokens, 0);
+            } else if (matches(b, message, end, REMOVING_TOKENS)) {
+                long slot = number(b, message + REMOVING_TOKENS.length, end);
+                if (slot >= 0 && slot < Long.SIZE)
+                    for (int p = 0; p < tokens.length; p++) tokens[p] &= ~(1L << slot);
+            }
+        }
+
+        private void placeToken(int player, int slot, long time) {
+            ensurePlayer(player);
+            if (slot < 0 || slot >= Long.SIZE) return;
+            tokens[player] |= 1L << slot;
+            if (Long.bitCount(tokens[player]) == claimSize) claimTime[player] = time;
+        }
+
+        private void removeToken(int player, int slot) {
+            ensurePlayer(player);
+            if (slot >= 0 && slot < Long.SIZE) tokens[player] &= ~(1L << slot);
+        }
+
+        /**
+         * Counts the verdict of the player's pending claim (from at to end), one of the verdicts of GameEvents.
+         */
+        private void verdict(int player, ByteBuffer b, int at, int end, long time) {
+            ensurePlayer(player);
+            if (is(b, at, end, SET)) {
+                summary.sets[player]++;
+                if (firstSetTime == noTime) firstSetTime = time;
+            } else if (is(b, at, end, NOT_A_SET) || is(b, at, end, REJECTED_BY_PLAYER)) {
+                summary.penalties[player]++;
+            } else if (is(b, at, end, DISCARDED)) {
+                summary.discarded[player]++;
+                claimTime[player] = noClaim;
+                return;
+            } else {
+                return;
+            }
+            judged(player, time);
+        }
+
+        /**
+         * Records the judgement of the player's pending claim.
+         */
+        private void judged(int player, long time) {
+            summary.claims[player]++;
+            if (claimTime[player] != noClaim) {
+                long latency = time - claimTime[player];
+                summary.latencyMillis[player] += latency;
+                summary.maxLatencyMillis[player] = Math.max(summary.maxLatencyMillis[player], latency);
+                claimTime[player] = noClaim;
+            }
+        }
+
+        private void ensurePlayer(int player) {
+            summary.ensurePlayer(player);
+            if (player < tokens.length) return;
+            int length = player + 1, from = tokens.length;
+            tokens = Arrays.copyOf(tokens, length);
+            claimTime = Arrays.copyOf(claimTime, length);
+            Arrays.fill(claimTime, from, length, noClaim);
+        }
+    }
+
+    /**
+     * @return - the value of count decimal digits, or -1 if they are not all digits.
+     */
+    private static long digits(ByteBuffer b, int at, int count) {
+        long value = 0;
+        for (int i = at; i < at + count; i++) {
+            int digit = b.get(i) - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * @return - the value of the decimal number starting at the given position, or -1 if there is none.
+     */
+    private static long number(ByteBuffer b, int at, int end) {
+        int last = skipDigits(b, at, end);
+        return last == at || last - at > 18 ? -1 : digits(b, at, last - at);
+    }
+
+    private static int skipDigits(ByteBuffer b, int at, int end) {
+        while (at < end && b.get(at) >= '0' && b.get(at) <= '9') at++;
+        return at;
+    }
+
+    private static int indexOf(ByteBuffer b, int from, int end, byte value) {
+        for (int i = from; i < end; i++)
+            if (b.get(i) == value) return i;
+        return -1;
+    }
+
+    private static boolean matches(ByteBuffer b, int at, int end, byte[] text) {
+        if (end - at < text.length) return false;
+        for (int i = 0; i < text.length; i++)
+            if (b.get(at + i) != text[i]) return false;
+        return true;
+    }
+
+    /**
+     * @return - true iff the text is all there is from at to end.
+     */
+    private static boolean is(ByteBuffer b, int at, int end, byte[] text) {
+        return end - at == text.length && matches(b, at, end, text);
+    }
+
+    /**
+     * Summarizes the games recorded in the given log files.
+     *
+     * @param files     - the log files and their rotated parts (the parts of a run make one game).
+     * @param claimSize - the number of cards in a claimed set in the recorded games (see Config.claimSize).
+     * @return - the summary of all the games.
+     * @throws UncheckedIOException if a file can't be read.
+     */
+    public static Summary analyze(List<Path> files, int claimSize) {
+        List<List<Path>> runs = runs(files);
+        return new Aggregate(runs, 0, runs.size(), claimSize).invoke();
+    }
+
+    /**
+     * Groups the files by run, each run in the order it was written: its rotated parts by number, then its file.
+     * A part found both compressed and not (while it is being compressed) is read once, from the plain file.
+     *
+     * @param files - log files and rotated parts.
+     * @return - the runs, in the order their first file was given.
+     */
+    static List<List<Path>> runs(List<Path> files) {
+        Map<Path, List<Path>> runs = new LinkedHashMap<>();
+        for (Path file : files)
+            runs.computeIfAbsent(file.resolveSibling(RollingFileHandler.runName(file)), run -> new ArrayList<>())
+                    .add(file);
+        Comparator<Path> order = Comparator.comparingInt(LogAnalytics::writeOrder)
+                .thenComparing(file -> file.getFileName().toString().endsWith(".gz"));
+        List<List<Path>> ordered = new ArrayList<>(runs.size());
+        for (List<Path> parts : runs.values()) {
+            parts.sort(order);
+            List<Path> run = new ArrayList<>(parts.size());
+            for (Path part : parts)
+                if (run.isEmpty() || writeOrder(part) != writeOrder(run.get(run.size() - 1))) run.add(part);
+            ordered.add(run);
+        }
+        return ordered;
+    }
+
+    /**
+     * @return - the position of a file in its run: the number of a rotated part, and the run's own file last.
+     */
+    private static int writeOrder(Path file) {
+        int part = RollingFileHandler.partNumber(file);
+        return part == 0 ? Integer.MAX_VALUE : part;
+    }
+
+    /**
+     * The tool's main function.
+     *
+     * @param args - "--claim-size N" (3 by default), followed by the log files and directories of log files to
+     *             summarize (./logs by default).
+     */
+    public static void main(String[] args) throws IOException {
+        int claimSize = 3;
+        boolean paths = false;
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--claim-size") && i + 1 < args.length) {
+                claimSize = Integer.parseInt(args[++i]);
+                continue;
+            }
+            addLogFiles(Paths.get(args[i]), files);
+            paths = true;
+        }
+        if (!paths)
+            addLogFiles(Paths.get("logs"), files);
+
+        long start = System.nanoTime();
+        Summary summary = analyze(files, claimSize);
+        summary.print(System.out);
+        System.out.printf("%n%d files in %d ms%n", files.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void addLogFiles(Path path, List<Path> files) throws IOException {
+        if (!Files.isDirectory(path)) {
+            files.add(path);
+            return;
+        }
+        try (DirectoryStream<Path> logs = Files.newDirectoryStream(path, "*.{log,log.gz}")) {
+            for (Path log : logs) files.add(log);
+        }
+    }
+}
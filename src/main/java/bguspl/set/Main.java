@@ -1,14 +1,18 @@
 package bguspl.set;
 
+import bguspl.set.ex.Checkpoint;
 import bguspl.set.ex.Dealer;
 import bguspl.set.ex.Player;
+import bguspl.set.ex.PlayerStatsStore;
 import bguspl.set.ex.Table;
 
-import java.io.File;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
 import java.util.Arrays;
-import java.util.Calendar;
 import java.util.Date;
 import java.util.logging.*;
 
@@ -23,6 +27,25 @@ public class Main {
     private static boolean xButtonPressed = false;
     private static Logger logger;
 
+    /**
+     * The configuration file, in the working directory (or in the resources, see Config).
+     */
+    private static final String configFile = "config.properties";
+
+    private static RollingFileHandler logFile;
+
+    /**
+     * The hub of the in-process viewers (null if none are configured, see Config.spectatorQueueFrames).
+     */
+    private static volatile SpectatorHub spectators;
+
+    /**
+     * @return - the hub that in-process viewers subscribe to, or null if the game runs without one.
+     */
+    public static SpectatorHub spectators() {
+        return spectators;
+    }
+
     public static void xButtonPressed() throws InterruptedException {
         if (logger != null) logger.severe("exit button pressed");
         xButtonPressed = true;
@@ -30,10 +53,31 @@ public class Main {
         mainThread.join();
     }
 
+    /**
+     * Reads the checkpoint to resume from, if the arguments ask for one.
+     *
+     * @param args   - the program's arguments.
+     * @param config - the game's configuration.
+     * @return - the checkpoint, or null to start a new game (also if the checkpoint can't be read).
+     */
+    private static Checkpoint readCheckpoint(String[] args, Config config) {
+        int option = Arrays.asList(args).indexOf("--resume");
+        if (option < 0) return null;
+        String file = option + 1 < args.length ? args[option + 1] : config.checkpointFile;
+        try {
+            Checkpoint checkpoint = Checkpoint.read(Paths.get(file), config);
+            logger.info("resuming the game saved in " + file);
+            return checkpoint;
+        } catch (IOException | RuntimeException e) {
+            logger.severe("can't resume from " + file + ", starting a new game: " + e);
+            return null;
+        }
+    }
+
     /**
      * The game's main function. Creates all data structures and initializes the threads.
      *
-     * @param args - unused.
+     * @param args - "--resume [file]" to continue the game saved in a checkpoint (Config.checkpointFile by default).
      */
     public static void main(String[] args) {
 
@@ -42,26 +86,50 @@ public class Main {
         // create the game environment objects
         logger = initLogger();
         ThreadLogger.logStart(logger, Thread.currentThread().getName());
-        Config config = new Config(logger, "config.properties");
+        Config config = new Config(logger, configFile);
+        logFile.configure(config);
         Util util = new UtilImpl(config);
 
         Player[] players = new Player[config.players];
-        UserInterface ui = null;
-        try {
-            ui = new UserInterfaceSwing(logger, config, players);
-        } catch (UnsupportedOperationException | IllegalArgumentException e) {
-            logger.severe("error creating swing user interface: " + e.getMessage());
-            logger.severe("will try to run without user interface");
-            if (config.humanPlayers > 0)
-                logger.severe("warning: running with human players with no user interface");
+        StateBroadcaster broadcaster = new StateBroadcaster(config);
+        if (config.serverPort > 0) {
+            try {
+                GameServer server = new GameServer(logger, config, players, config.serverPort);
+                ThreadLogger serverThread = new ThreadLogger(server, "server", logger);
+                serverThread.setDaemon(true);
+                serverThread.startWithLog();
+                broadcaster.addObserver(new UserInterfaceObserver(config, server));
+            } catch (IOException e) {
+                logger.severe("error starting game server on port " + config.serverPort + ": " + e.getMessage());
+            }
+        }
+        if (config.spectatorPort > 0) {
+            try {
+                GameServer spectatorServer = new GameServer(logger, config, players, config.spectatorPort, 0);
+                ThreadLogger spectatorServerThread = new ThreadLogger(spectatorServer, "spectators", logger);
+                spectatorServerThread.setDaemon(true);
+                spectatorServerThread.startWithLog();
+                broadcaster.addObserver(new UserInterfaceObserver(config, spectatorServer));
+            } catch (IOException e) {
+                logger.severe("error starting spectator server on port " + config.spectatorPort + ": " + e.getMessage());
+            }
         }
-        ui = new UserInterfaceDecorator(logger, util, ui);
+        if (config.spectatorQueueFrames > 0) {
+            spectators = new SpectatorHub(config, config.spectatorQueueFrames);
+            broadcaster.addObserver(spectators);
+        }
+        ThreadLogger broadcasterThread = new ThreadLogger(broadcaster, "broadcaster", logger);
+        broadcasterThread.setDaemon(true);
+        broadcasterThread.startWithLog();
+        UserInterface ui = new UserInterfaceDecorator(logger, util, broadcaster);
 
         Env env = new Env(logger, config, ui, util);
+        ConfigWatcher configWatcher = watchConfig(config);
 
         // create the game entities
         Table table = new Table(env);
-        dealer = new Dealer(env, table, players);
+        PlayerStatsStore stats = openStats(config);
+        dealer = new Dealer(env, table, players, readCheckpoint(args, config), stats);
         for (int i = 0; i < players.length; i++)
             players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
 
@@ -69,6 +137,11 @@ public class Main {
         ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
         dealerThread.startWithLog();
 
+        // the window (and the card images) are built alongside the game, and sent the whole table once attached
+        ThreadLogger swingThread = new ThreadLogger(() -> attachSwing(config, players, broadcaster), "swing", logger);
+        swingThread.setDaemon(true);
+        swingThread.startWithLog();
+
         try {
             // shutdown stuff
             dealerThread.joinWithLog();
@@ -79,22 +152,90 @@ public class Main {
             System.out.println("Thanks for playing... it was fun!");
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
             if (!xButtonPressed) env.ui.dispose();
+            if (configWatcher != null) {
+                try {
+                    configWatcher.close();
+                } catch (IOException ignored) {}
+            }
+            if (stats != null) {
+                try {
+                    stats.close();
+                } catch (IOException e) {
+                    logger.warning("can't close the player statistics: " + e);
+                }
+            }
             for (Handler h : logger.getHandlers()) h.flush();
+            logFile.close(); // last: waits for the compression of the rotated parts
         }
     }
 
-    private static Logger initLogger() {
+    /**
+     * Starts reloading the timing settings when the configuration file changes, if the configuration asks for it.
+     *
+     * @param config - the game's configuration.
+     * @return - the watcher, or null if the file is not watched (also if it was loaded from the resources).
+     */
+    private static ConfigWatcher watchConfig(Config config) {
+        Path file = Paths.get(configFile);
+        if (!config.reloadConfig || config.deterministic || !Files.isRegularFile(file)) return null;
+        try {
+            ConfigWatcher watcher = new ConfigWatcher(logger, config, file);
+            ThreadLogger watcherThread = new ThreadLogger(watcher, "config-watcher", logger);
+            watcherThread.setDaemon(true);
+            watcherThread.startWithLog();
+            return watcher;
+        } catch (IOException e) {
+            logger.severe("warning: can't watch " + file + " for changes: " + e.getMessage());
+            return null;
+        }
+    }
 
-        //just to make our log file nicer :)
-        SimpleDateFormat format = new SimpleDateFormat("M-d_HH-mm-ss");
-        FileHandler handler;
+    /**
+     * Opens the store of the players' lifetime statistics, if the configuration asks for one.
+     *
+     * @param config - the game's configuration.
+     * @return - the store, or null to play without one (also if it can't be opened).
+     */
+    private static PlayerStatsStore openStats(Config config) {
+        if (config.statsFile.isEmpty()) return null;
         try {
-            //noinspection ResultOfMethodCallIgnored
-            new File("./logs/").mkdirs();
-            handler = new FileHandler("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log");
+            return PlayerStatsStore.open(Paths.get(config.statsFile));
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            logger.severe("can't open the player statistics " + config.statsFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Creates the swing user interface and attaches it to the game.
+     *
+     * @param config      - the game's configuration.
+     * @param players     - the players (for the keyboard input).
+     * @param broadcaster - the game's user interface to attach the window to.
+     */
+    private static void attachSwing(Config config, Player[] players, StateBroadcaster broadcaster) {
+        try {
+            UserInterfaceSwing swing = new UserInterfaceSwing(logger, config, players);
+            broadcaster.addObserver(new UserInterfaceObserver(config, swing));
+            logger.info("swing user interface attached " + ManagementFactory.getRuntimeMXBean().getUptime()
+                    + " ms after startup");
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            logger.severe("error creating swing user interface: " + e.getMessage());
+            logger.severe("will try to run without user interface");
+            if (config.humanPlayers > 0)
+                logger.severe("warning: running with human players with no user interface");
         }
+    }
+
+    private static Logger initLogger() {
+
+        //just to make our log file nicer :) (java.time is much quicker to load than SimpleDateFormat)
+        LocalDateTime now = LocalDateTime.now();
+        String name = now.getMonthValue() + "-" + now.getDayOfMonth() + "_" + twoDigits(now.getHour()) + "-"
+                + twoDigits(now.getMinute()) + "-" + twoDigits(now.getSecond());
+        // the file is opened in the background, the game does not wait for it
+        logFile = new RollingFileHandler(Paths.get("logs", name + ".log"));
+        Handler handler = logFile;
 
         java.util.logging.Logger logger = java.util.logging.Logger.getLogger("SetGameLogger");
         logger.setUseParentHandlers(false);
@@ -104,6 +245,10 @@ public class Main {
         return logger;
     }
 
+    private static String twoDigits(int n) {
+        return n < 10 ? "0" + n : Integer.toString(n);
+    }
+
     public static void setLoggerLevelAndFormat(Logger logger, Level level, String format) {
         Handler[] handlers = logger.getHandlers();
         if (handlers != null) Arrays.stream(handlers).forEach(h -> h.setFormatter(new SimpleFormatter() {
@@ -0,0 +1,296 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Elo ratings of players (or of the strategies behind them), from the results of their games. Every pair of players
+ * in a game counts as a game between the two, won by the higher score, and the changes are divided by the number of
+ * opponents, so games of any number of players can be mixed.
+ * <p>
+ * The ratings are updated as every game is recorded, and the whole history is kept in primitive arrays (a game is a
+ * range of seats), so the ratings can be recomputed from scratch, e.g. with another K-factor. The recomputation tallies
+ * the games, wins and points in parallel, a range of games per fork/join task, and then replays the rating changes in
+ * order: an Elo rating depends on the order of the games, so the replay is the same one pass the updates made, over
+ * flat arrays, and ends with exactly the ratings the updates reached. Safe for use by several threads at once.
+ */
+public final class RatingEngine {
+
+    public static final double DEFAULT_INITIAL_RATING = 1500;
+    public static final double DEFAULT_K_FACTOR = 32;
+
+    /**
+     * The number of games tallied by one fork/join task.
+     */
+    private static final int TALLY_GAMES = 1 << 16;
+
+    /**
+     * A player's rating and record.
+     */
+    public static final class Rating {
+        public final String name;
+        public final double rating;
+        public final int games;
+        public final int wins;
+        public final long points;
+
+        Rating(String name, double rating, int games, int wins, long points) {
+            this.name = name;
+            this.rating = rating;
+            this.games = games;
+            this.wins = wins;
+            this.points = points;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-20s %6d %6d %8d %8.1f", name, games, wins, points, rating);
+        }
+    }
+
+    private double initialRating;
+    private double kFactor;
+
+    /**
+     * The players, by id (the order they were first seen in).
+     */
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * The history: the seats of game g are gameStart[g] to gameStart[g + 1], each with its player, score and whether
+     * it won.
+     */
+    private int games;
+    private int[] gameStart = new int[1024 + 1];
+    private int seats;
+    private int[] seatPlayer = new int[4096];
+    private int[] seatScore = new int[4096];
+    private boolean[] seatWon = new boolean[4096];
+
+    /**
+     * The current state of every player, by id.
+     */
+    private double[] ratings = new double[64];
+    private int[] playerGames = new int[64];
+    private int[] playerWins = new int[64];
+    private long[] playerPoints = new long[64];
+
+    /**
+     * The rating changes of the game being rated, by seat.
+     */
+    private double[] change = new double[8];
+
+    public RatingEngine() {
+        this(DEFAULT_INITIAL_RATING, DEFAULT_K_FACTOR);
+    }
+
+    /**
+     * @param initialRating - the rating of a new player.
+     * @param kFactor       - the most a rating can move in one game.
+     */
+    public RatingEngine(double initialRating, double kFactor) {
+        this.initialRating = initialRating;
+        this.kFactor = kFactor;
+    }
+
+    /**
+     * Adds the result of a game and updates the ratings of its players.
+     *
+     * @param players - the names of the players, by player id (see Config.playerNames).
+     * @param scores  - the scores of the players, by player id.
+     * @param winners - the ids of the winners, as announced by the dealer (none if the game had no winner).
+     * @throws IllegalArgumentException if there is not a score for every player, or a winner is not a player.
+     */
+    public synchronized void record(String[] players, int[] scores, int[] winners) {
+        if (players.length != scores.length)
+            throw new IllegalArgumentException(players.length + " players but " + scores.length + " scores");
+        for (int winner : winners)
+            if (winner < 0 || winner >= players.length)
+                throw new IllegalArgumentException(
+                        "winner " + winner + " is not one of " + players.length + " players");
+        if (games + 2 > gameStart.length) gameStart = Arrays.copyOf(gameStart, 2 * gameStart.length);
+        if (seats + players.length > seatPlayer.length) {
+            int capacity = Math.max(2 * seatPlayer.length, seats + players.length);
+            seatPlayer = Arrays.copyOf(seatPlayer, capacity);
+            seatScore = Arrays.copyOf(seatScore, capacity);
+            seatWon = Arrays.copyOf(seatWon, capacity);
+        }
+        for (int i = 0; i < players.length; i++) {
+            int player = id(players[i]);
+            seatPlayer[seats + i] = player;
+            seatScore[seats + i] = scores[i];
+            playerGames[player]++;
+            playerPoints[player] += scores[i];
+        }
+        for (int winner : winners) {
+            seatWon[seats + winner] = true;
+            playerWins[seatPlayer[seats + winner]]++;
+        }
+        seats += players.length;
+        gameStart[++games] = seats;
+        rate(games - 1);
+    }
+
+    /**
+     * @return - the id of a player, adding it if it is new.
+     */
+    private int id(String name) {
+        Integer id = ids.get(name);
+        if (id != null) return id;
+        int player = names.size();
+        ids.put(name, player);
+        names.add(name);
+        if (player == ratings.length) {
+            ratings = Arrays.copyOf(ratings, 2 * player);
+            playerGames = Arrays.copyOf(playerGames, 2 * player);
+            playerWins = Arrays.copyOf(playerWins, 2 * player);
+            playerPoints = Arrays.copyOf(playerPoints, 2 * player);
+        }
+        ratings[player] = initialRating;
+        return player;
+    }
+
+    /**
+     * Applies the rating changes of a game.
+     */
+    private void rate(int game) {
+        int from = gameStart[game];
+        int n = gameStart[game + 1] - from;
+        if (n < 2) return;
+        if (n > change.length) change = new double[n];
+        Arrays.fill(change, 0, n, 0);
+        double k = kFactor / (n - 1);
+        for (int a = 0; a < n; a++) {
+            double ratingA = ratings[seatPlayer[from + a]];
+            for (int b = a + 1; b < n; b++) {
+                double expected = 1 / (1 + Math.pow(10, (ratings[seatPlayer[from + b]] - ratingA) / 400));
+                double actual = Integer.compare(seatScore[from + a], seatScore[from + b]) * 0.5 + 0.5;
+                double delta = k * (actual - expected);
+                change[a] += delta;
+                change[b] -= delta;
+            }
+        }
+        for (int a = 0; a < n; a++) ratings[seatPlayer[from + a]] += change[a];
+    }
+
+    /**
+     * Recomputes all the ratings and records from the history of games, with a new initial rating and K-factor.
+     *
+     * @param initialRating - the rating of a new player.
+     * @param kFactor       - the most a rating can move in one game.
+     */
+    public synchronized void recompute(double initialRating, double kFactor) {
+        this.initialRating = initialRating;
+        this.kFactor = kFactor;
+        Tally tally = new Tally(0, games).invoke();
+        int players = names.size();
+        System.arraycopy(tally.played, 0, playerGames, 0, players);
+        System.arraycopy(tally.won, 0, playerWins, 0, players);
+        System.arraycopy(tally.scored, 0, playerPoints, 0, players);
+        Arrays.fill(ratings, 0, players, initialRating);
+        for (int game = 0; game < games; game++)
+            rate(game);
+    }
+
+    /**
+     * Recomputes all the ratings and records from the history of games.
+     */
+    public synchronized void recompute() {
+        recompute(initialRating, kFactor);
+    }
+
+    /**
+     * Tallies the games, wins and points of every player in a range of games, splitting the range between tasks.
+     * Only run by recompute, which holds the engine's lock, so the history does not change meanwhile.
+     */
+    private final class Tally extends RecursiveTask<Tally> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        int[] played;
+        int[] won;
+        long[] scored;
+
+        Tally(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (to - from > TALLY_GAMES) {
+                int middle = (from + to) >>> 1;
+                Tally right = new Tally(middle, to);
+                right.fork();
+                Tally left = new Tally(from, middle).compute();
+                return left.merge(right.join());
+            }
+            int players = names.size();
+            played = new int[players];
+            won = new int[players];
+            scored = new long[players];
+            for (int seat = gameStart[from]; seat < gameStart[to]; seat++) {
+                int player = seatPlayer[seat];
+                played[player]++;
+                if (seatWon[seat]) won[player]++;
+                scored[player] += seatScore[seat];
+            }
+            return this;
+        }
+
+        private Tally merge(Tally other) {
+            for (int player = 0; player < played.length; player++) {
+                played[player] += other.played[player];
+                won[player] += other.won[player];
+                scored[player] += other.scored[player];
+            }
+            return this;
+        }
+    }
+
+    /**
+     * @param name - a player's name.
+     * @return - the player's rating and record, or null if it has not played.
+     */
+    public synchronized Rating get(String name) {
+        Integer id = ids.get(name);
+        return id == null ? null : rating(id);
+    }
+
+    private Rating rating(int player) {
+        return new Rating(names.get(player), ratings[player], playerGames[player], playerWins[player],
+                playerPoints[player]);
+    }
+
+    /**
+     * @param count - the number of players to return.
+     * @return - the best rated players, best first.
+     */
+    public synchronized List<Rating> top(int count) {
+        List<Rating> all = new ArrayList<>(names.size());
+        for (int player = 0; player < names.size(); player++) all.add(rating(player));
+        all.sort(Comparator.comparingDouble((Rating r) -> r.rating).reversed());
+        return all.subList(0, Math.min(count, all.size()));
+    }
+
+    /**
+     * @return - the number of games recorded.
+     */
+    public synchronized int games() {
+        return games;
+    }
+
+    /**
+     * @return - the number of players seen.
+     */
+    public synchronized int players() {
+        return names.size();
+    }
+}
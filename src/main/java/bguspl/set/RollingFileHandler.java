@@ -0,0 +1,411 @@
+package bguspl.set;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A log file handler that keeps the disk I/O of logging bounded and off the game threads.
+ * Publishing only queues the record (a record that finds the bounded queue full is dropped and counted), and a
+ * background thread formats the records and writes them through a buffer, flushing it at most every flush interval.
+ * When the file reaches the configured size or age it is closed and compressed by another background thread, and a new
+ * file is started, while the oldest files in the directory are deleted so that it never holds more than the configured
+ * number of log files.
+ * The file of a run is name.log; its rotated parts are name.1.log.gz, name.2.log.gz, etc.
+ */
+public class RollingFileHandler extends Handler {
+
+    /**
+     * The number of records that can wait to be written.
+     */
+    private static final int QUEUE_CAPACITY = 1 << 16;
+
+    /**
+     * The size of the write buffer.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The time flush and close wait for the records to be written.
+     */
+    private static final long WAIT_MS = 5000;
+
+    /**
+     * Stands for no limit on the size or age of the file.
+     */
+    private static final long noLimit = 0;
+
+    /**
+     * The directory of the log files, and the name of this run's files (without the extension).
+     */
+    private final Path directory;
+    private final String name;
+
+    private final BlockingQueue<LogRecord> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    /**
+     * The number of records dropped since the last report of dropped records.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * The rotation, retention and flush policy (see configure).
+     */
+    private volatile long rotateBytes = 16L * 1024 * 1024;
+    private volatile long rotateMillis = 3_600_000;
+    private volatile int maxFiles = 20;
+    private volatile long flushMillis = 1000;
+
+    private volatile boolean closed;
+
+    private final Thread writer;
+
+    private final ExecutorService compressor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "log-compressor");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * The state of the open file, used only by the writer thread.
+     */
+    private OutputStream out;
+    private long written;
+    private long openedAt;
+    private long lastFlush;
+    private boolean unflushed;
+    private int segments;
+
+    /**
+     * A record that asks the writer to flush everything queued before it.
+     */
+    private static final class FlushRequest extends LogRecord {
+        private static final long serialVersionUID = 1L;
+
+        final CountDownLatch done = new CountDownLatch(1);
+
+        FlushRequest() {
+            super(Level.OFF, null);
+        }
+    }
+
+    /**
+     * Starts the writer thread. The file is opened by the writer, so the game does not wait for it.
+     *
+     * @param path - the path of the log file (its directory is created if needed).
+     */
+    public RollingFileHandler(Path path) {
+        Path absolute = path.toAbsolutePath();
+        directory = absolute.getParent();
+        String file = absolute.getFileName().toString();
+        name = file.endsWith(".log") ? file.substring(0, file.length() - ".log".length()) : file;
+        writer = new Thread(this::writeRecords, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        compressor.execute(this::deleteOldFiles);
+    }
+
+    /**
+     * Sets the rotation, retention and flush policy. The log file is configured before the game's configuration is
+     * read, so until this is called the defaults apply.
+     *
+     * @param config - the game's configuration (see Config.logRotateBytes and the following fields).
+     */
+    public void configure(Config config) {
+        rotateBytes = config.logRotateBytes;
+        rotateMillis = config.logRotateMillis;
+        maxFiles = Math.max(1, config.logMaxFiles);
+        flushMillis = Math.max(0, config.logFlushMillis);
+        compressor.execute(this::deleteOldFiles);
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) return;
+        if (!queue.offer(record))
+            dropped.incrementAndGet();
+    }
+
+    /**
+     * Waits for the records published until now to be written to the disk.
+     */
+    @Override
+    public void flush() {
+        if (closed || Thread.currentThread() == writer) return;
+        FlushRequest request = new FlushRequest();
+        try {
+            if (queue.offer(request, WAIT_MS, TimeUnit.MILLISECONDS))
+                request.done.await(WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the records published until now, closes the file, and waits for the compression of rotated files.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        flush();
+        closed = true;
+        queue.offer(new FlushRequest()); // wakes the writer up (it is not interrupted, which would close the file)
+        try {
+            writer.join(WAIT_MS);
+            compressor.shutdown();
+            compressor.awaitTermination(WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The writer thread's loop: writes the queued records in batches, and flushes, rotates and closes the file as
+     * the policy says.
+     */
+    private void writeRecords() {
+        List<LogRecord> batch = new ArrayList<>();
+        try {
+            while (!closed) {
+                LogRecord first = queue.poll(nextDeadline(), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                    for (LogRecord record : batch) write(record);
+                    batch.clear();
+                }
+                long now = System.currentTimeMillis();
+                if (unflushed && now - lastFlush >= flushMillis) flushFile(now);
+                if (out != null && rotateMillis > noLimit && now - openedAt >= rotateMillis) rotate();
+            }
+        } catch (InterruptedException ignored) {
+        } finally {
+            batch.clear();
+            queue.drainTo(batch);
+            for (LogRecord record : batch) write(record);
+            closeFile();
+        }
+    }
+
+    /**
+     * @return - the time until the writer needs to flush or rotate even if no record arrives.
+     */
+    private long nextDeadline() {
+        long now = System.currentTimeMillis();
+        long deadline = Long.MAX_VALUE;
+        if (unflushed) deadline = lastFlush + flushMillis;
+        if (out != null && rotateMillis > noLimit) deadline = Math.min(deadline, openedAt + rotateMillis);
+        return deadline == Long.MAX_VALUE ? WAIT_MS : Math.max(0, deadline - now);
+    }
+
+    private void write(LogRecord record) {
+        if (record instanceof FlushRequest) {
+            flushFile(System.currentTimeMillis());
+            ((FlushRequest) record).done.countDown();
+            return;
+        }
+        long lost = dropped.getAndSet(0);
+        if (lost > 0)
+            writeFormatted(new LogRecord(Level.WARNING, "the log could not keep up, " + lost + " records were dropped"));
+        writeFormatted(record);
+        if (flushMillis == 0) flushFile(System.currentTimeMillis());
+    }
+
+    private void writeFormatted(LogRecord record) {
+        Formatter formatter = getFormatter();
+        byte[] bytes;
+        try {
+            String text = formatter != null ? formatter.format(record) : record.getMessage() + System.lineSeparator();
+            String encoding = getEncoding();
+            bytes = text.getBytes(encoding != null ? Charset.forName(encoding) : Charset.defaultCharset());
+        } catch (RuntimeException e) {
+            reportError("can't format log record", e, ErrorManager.FORMAT_FAILURE);
+            return;
+        }
+        if (out != null && rotateBytes > noLimit && written > 0 && written + bytes.length > rotateBytes) rotate();
+        if (out == null && !open()) return;
+        try {
+            out.write(bytes);
+            written += bytes.length;
+            unflushed = true;
+        } catch (IOException e) {
+            reportError("can't write log file", e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    private Path activeFile() {
+        return directory.resolve(name + ".log");
+    }
+
+    private boolean open() {
+        try {
+            Files.createDirectories(directory);
+            out = new BufferedOutputStream(Files.newOutputStream(activeFile()), BUFFER_SIZE);
+        } catch (IOException | RuntimeException e) {
+            reportError("can't open log file " + activeFile(), e, ErrorManager.OPEN_FAILURE);
+            return false;
+        }
+        written = 0;
+        openedAt = lastFlush = System.currentTimeMillis();
+        return true;
+    }
+
+    private void flushFile(long now) {
+        lastFlush = now;
+        unflushed = false;
+        if (out == null) return;
+        try {
+            out.flush();
+        } catch (IOException e) {
+            reportError("can't flush log file", e, ErrorManager.FLUSH_FAILURE);
+        }
+    }
+
+    private void closeFile() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException e) {
+            reportError("can't close log file", e, ErrorManager.CLOSE_FAILURE);
+        }
+        out = null;
+        unflushed = false;
+    }
+
+    /**
+     * Closes the file, renames it to the next part of this run, and hands it to the compressor. The next record opens
+     * a new file.
+     */
+    private void rotate() {
+        closeFile();
+        Path part = directory.resolve(name + "." + ++segments + ".log");
+        try {
+            Files.move(activeFile(), part, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            reportError("can't rotate log file " + activeFile(), e, ErrorManager.GENERIC_FAILURE);
+            return;
+        }
+        compressor.execute(() -> {
+            compress(part);
+            deleteOldFiles();
+        });
+    }
+
+    /**
+     * Compresses a rotated file to file.gz (written to a temporary file first, so a .gz file is always whole). The
+     * .gz file keeps the time the file was last written, which orders the files for deletion.
+     */
+    private void compress(Path file) {
+        Path compressed = file.resolveSibling(file.getFileName() + ".gz");
+        Path temporary = file.resolveSibling(file.getFileName() + ".gz.tmp");
+        FileTime modified;
+        try (InputStream in = Files.newInputStream(file);
+             OutputStream gzip = new GZIPOutputStream(Files.newOutputStream(temporary), BUFFER_SIZE)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (int n; (n = in.read(buffer)) > 0; )
+                gzip.write(buffer, 0, n);
+            modified = Files.getLastModifiedTime(file);
+        } catch (NoSuchFileException e) {
+            return; // already deleted as one of the oldest files
+        } catch (IOException e) {
+            reportError("can't compress log file " + file, e, ErrorManager.GENERIC_FAILURE);
+            return;
+        }
+        try {
+            Files.setLastModifiedTime(temporary, modified);
+            Files.move(temporary, compressed, StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(file);
+        } catch (IOException e) {
+            reportError("can't compress log file " + file, e, ErrorManager.GENERIC_FAILURE);
+        }
+    }
+
+    /**
+     * Deletes the oldest log files in the directory (of this run and of earlier ones), so that it holds at most
+     * maxFiles of them, counting the file being written, and the temporary files left by compressions that were cut
+     * short (see compress, their file was not deleted yet).
+     */
+    private void deleteOldFiles() {
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(directory, "*.log.gz.tmp")) {
+            for (Path file : leftovers)
+                Files.deleteIfExists(file);
+        } catch (IOException e) {
+            return; // no directory yet
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> logs = Files.newDirectoryStream(directory, "*.{log,log.gz}")) {
+            for (Path file : logs)
+                if (!file.equals(activeFile())) files.add(file);
+        } catch (IOException e) {
+            return; // no directory yet
+        }
+        int excess = files.size() - (maxFiles - 1);
+        if (excess <= 0) return;
+        files.sort(Comparator.comparingLong(RollingFileHandler::lastModified) // parts rotated in the same tick by number
+                .thenComparingInt(RollingFileHandler::partNumber));
+        for (Path file : files.subList(0, excess)) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                reportError("can't delete old log file " + file, e, ErrorManager.GENERIC_FAILURE);
+            }
+        }
+    }
+
+    /**
+     * @return - the number of a rotated part (name.N.log or name.N.log.gz), 0 for other files.
+     */
+    static int partNumber(Path file) {
+        String name = file.getFileName().toString();
+        int end = name.lastIndexOf(".log");
+        int start = name.lastIndexOf('.', end - 1) + 1;
+        try {
+            return start > 0 ? Integer.parseInt(name.substring(start, end)) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return - the name of the run a file or rotated part belongs to (name, of name.log, name.N.log or name.N.log.gz).
+     */
+    static String runName(Path file) {
+        String name = file.getFileName().toString();
+        if (name.endsWith(".gz")) name = name.substring(0, name.length() - ".gz".length());
+        if (name.endsWith(".log")) name = name.substring(0, name.length() - ".log".length());
+        return partNumber(file) == 0 ? name : name.substring(0, name.lastIndexOf('.'));
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+}
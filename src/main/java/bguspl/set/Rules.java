@@ -0,0 +1,106 @@
+package bguspl.set;
+
+/**
+ * The rules of the game variant: which cards form a legal set, and which card completes a partial one.
+ * All the variants check cards against one precomputed features table (card * featureCount + feature) and never
+ * allocate, so the set search of UtilImpl runs at the same speed whatever the variant.
+ */
+public interface Rules {
+
+    /**
+     * The names of the supported variants (see Config.rules).
+     */
+    String CLASSIC = "classic";
+    String ULTRA = "ultra";
+    String AFFINE = "affine";
+
+    /**
+     * @return - the number of cards in a claimed set.
+     */
+    int claimSize();
+
+    /**
+     * Checks if the given cards (claimSize distinct card ids) form a legal set.
+     *
+     * @param cards - the card ids.
+     * @return - true iff the cards form a legal set.
+     */
+    boolean isSet(int[] cards);
+
+    /**
+     * Checks many candidate sets in one call.
+     *
+     * @param cards - the candidates, claimSize card ids each, one after the other.
+     * @param count - the number of candidates.
+     * @param legal - set to whether each candidate is a legal set (at least count entries).
+     * @return - the number of legal sets among the candidates.
+     */
+    default int testSets(int[] cards, int count, boolean[] legal) {
+        int r = claimSize();
+        int[] candidate = new int[r];
+        int found = 0;
+        for (int c = 0; c < count; ++c) {
+            System.arraycopy(cards, c * r, candidate, 0, r);
+            legal[c] = isSet(candidate);
+            if (legal[c]) found++;
+        }
+        return found;
+    }
+
+    /**
+     * Finds a card that completes the given claimSize - 1 cards to a legal set.
+     * Variants that can't compute it directly return -1, and callers should fall back to searching.
+     *
+     * @param cards - an array of card ids.
+     * @param size  - the number of cards in the array to consider.
+     * @return - the id of a completing card (not one of the given cards), or -1 if there is none.
+     */
+    default int complete(int[] cards, int size) {
+        return -1;
+    }
+
+    /**
+     * @param rules       - the name of a variant.
+     * @param featureSize - the number of choices for each feature.
+     * @return - true iff the variant can be played with the given feature size.
+     */
+    static boolean isSupported(String rules, int featureSize) {
+        switch (rules) {
+            case CLASSIC:
+                return featureSize >= 1 && featureSize < Integer.SIZE;
+            case ULTRA:
+                return featureSize >= 3 && featureSize < Integer.SIZE;
+            case AFFINE:
+                return AffineRules.isPrime(featureSize);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Creates the rules of the configured variant.
+     *
+     * @param config - the game configuration (see Config.rules and Config.claimSize).
+     * @return - the rules.
+     * @throws IllegalArgumentException if the variant is unknown, or can't be played with the configured feature size.
+     */
+    static Rules create(Config config) {
+        if (!isSupported(config.rules, config.featureSize))
+            throw new IllegalArgumentException("rules " + config.rules + " are not supported with feature size "
+                    + config.featureSize);
+
+        int[] features = new int[config.deckSize * config.featureCount];
+        for (int card = 0; card < config.deckSize; ++card)
+            for (int i = config.featureCount - 1, value = card; i >= 0; --i, value /= config.featureSize)
+                features[card * config.featureCount + i] = value % config.featureSize;
+
+        switch (config.rules) {
+            case ULTRA:
+                return new UltraRules(new ClassicRules(config, features, config.featureSize));
+            case AFFINE:
+                return new AffineRules(config, features);
+            default:
+                return new ClassicRules(config, features, config.claimSize);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package bguspl.set;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * All the legal sets of a deck, found once per configuration (rules, claim size and deck) and shared by every game
+ * played with it: 1080 sets for the default 3^4 deck.
+ * The sets are packed one after the other into a single array (claimSize sorted card ids each, in lexicographic
+ * order), with an inverted index from every card to the sets that contain it. Looking for the sets among some cards
+ * is then a walk over the short lists of those cards against a bitset of the cards present, instead of trying every
+ * combination of them.
+ */
+public final class SetCatalog {
+
+    /**
+     * Decks with more combinations of claimSize cards than this are not cataloged (searching them once would take too
+     * long, and the catalog could be huge).
+     */
+    private static final long MAX_COMBINATIONS = 1L << 24;
+
+    /**
+     * The catalogs built so far, by configuration (see key).
+     */
+    private static final Map<String, SetCatalog> catalogs = new ConcurrentHashMap<>();
+
+    private final int claimSize;
+    private final int deckSize;
+
+    /**
+     * The cards of all the sets, set * claimSize + i (sorted within each set).
+     */
+    private final int[] members;
+
+    /**
+     * The inverted index: the sets that contain a card are index[offsets[card]] .. index[offsets[card + 1] - 1].
+     */
+    private final int[] offsets;
+    private final int[] index;
+
+    /**
+     * Where the sets whose smallest card is the card start in its list (the index lists the sets of a card in catalog
+     * order, so these come last).
+     */
+    private final int[] smallest;
+
+    private SetCatalog(int claimSize, int deckSize, int[] members) {
+        this.claimSize = claimSize;
+        this.deckSize = deckSize;
+        this.members = members;
+
+        offsets = new int[deckSize + 1];
+        for (int card : members)
+            offsets[card + 1]++;
+        for (int card = 0; card < deckSize; card++)
+            offsets[card + 1] += offsets[card];
+        index = new int[members.length];
+        int[] next = new int[deckSize];
+        System.arraycopy(offsets, 0, next, 0, deckSize);
+        for (int i = 0; i < members.length; i++)
+            index[next[members[i]]++] = i / claimSize;
+
+        smallest = new int[deckSize];
+        for (int card = 0; card < deckSize; card++) {
+            int j = offsets[card + 1];
+            while (j > offsets[card] && members[index[j - 1] * claimSize] == card) --j;
+            smallest[card] = j;
+        }
+    }
+
+    /**
+     * Returns the catalog of the given configuration, building it on first use.
+     *
+     * @param config - the game configuration.
+     * @param rules  - the rules of the configuration.
+     * @return - the catalog, or null if the deck is too large to catalog.
+     */
+    public static SetCatalog of(Config config, Rules rules) {
+        int k = rules.claimSize();
+        if (k < 1 || combinations(config.deckSize, k) > MAX_COMBINATIONS) return null;
+        String key = config.rules + ":" + k + ":" + config.featureSize + ":" + config.featureCount;
+        return catalogs.computeIfAbsent(key, ignored -> build(config.deckSize, rules));
+    }
+
+    /**
+     * Checks every combination of claimSize cards of the deck.
+     */
+    private static SetCatalog build(int deckSize, Rules rules) {
+        int r = rules.claimSize();
+        int[] members = new int[r * 64];
+        int size = 0;
+        if (deckSize >= r) {
+            int[] combination = new int[r];
+            for (int i = 0; i < r; ++i)
+                combination[i] = i;
+            while (true) {
+                if (rules.isSet(combination)) {
+                    if (size + r > members.length)
+                        members = Arrays.copyOf(members, members.length * 2);
+                    System.arraycopy(combination, 0, members, size, r);
+                    size += r;
+                }
+
+                // generate next combination in lexicographic order
+                int t = r - 1;
+                while (t >= 0 && combination[t] == deckSize - r + t) --t;
+                if (t < 0) break;
+                combination[t]++;
+                for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+            }
+        }
+        return new SetCatalog(r, deckSize, Arrays.copyOf(members, size));
+    }
+
+    /**
+     * @return - the number of combinations of k out of n (saturating at Long.MAX_VALUE).
+     */
+    private static long combinations(int n, int k) {
+        if (k > n) return 0;
+        double count = 1;
+        for (int i = 1; i <= k; i++)
+            count = count * (n - k + i) / i;
+        return count >= Long.MAX_VALUE ? Long.MAX_VALUE : Math.round(count);
+    }
+
+    /**
+     * @return - the number of legal sets in the deck.
+     */
+    public int size() {
+        return members.length / claimSize;
+    }
+
+    /**
+     * @param card - a card id.
+     * @return - the number of legal sets that contain the card.
+     */
+    public int setsContaining(int card) {
+        return offsets[card + 1] - offsets[card];
+    }
+
+    /**
+     * Estimates whether looking up the sets among the given number of cards is cheaper here than trying all of their
+     * combinations (which it is for all but the smallest collections of cards).
+     *
+     * @param size - the number of cards.
+     * @return - true iff the catalog should be used.
+     */
+    public boolean worthIt(int size) {
+        return (long) size * size() / deckSize < combinations(size, claimSize);
+    }
+
+    /**
+     * @return - a bitset large enough for every card of the deck (see forEachSet).
+     */
+    public long[] newBitset() {
+        return new long[(deckSize + Long.SIZE - 1) / Long.SIZE];
+    }
+
+    /**
+     * Calls the visitor for every legal set in the first size cards of the given array (in the catalog's order),
+     * until the visitor says stop.
+     *
+     * @param cards   - an array of card ids.
+     * @param size    - the number of cards in the array to consider.
+     * @param present - a bitset of newBitset's size to mark the cards in (cleared again before returning).
+     * @param set     - an array of claimSize entries the sets are copied into for the visitor.
+     * @param visitor - called for every set found (may be null).
+     * @param limit   - stop after this many sets.
+     * @return - the number of sets found, or -1 if the visitor stopped the search.
+     */
+    public int forEachSet(int[] cards, int size, long[] present, int[] set, Util.SetVisitor visitor, int limit) {
+        for (int i = 0; i < size; i++)
+            present[cards[i] >>> 6] |= 1L << cards[i];
+        try {
+            int found = 0;
+            for (int i = 0; i < size; i++) {
+                int card = cards[i];
+                // every set is visited once, from its smallest card
+                for (int j = smallest[card]; j < offsets[card + 1]; j++) {
+                    int first = index[j] * claimSize;
+                    if (!allPresent(present, first)) continue;
+                    if (visitor != null) {
+                        System.arraycopy(members, first, set, 0, claimSize);
+                        if (!visitor.visit(set)) return -1;
+                    }
+                    if (++found >= limit) return found;
+                }
+            }
+            return found;
+        } finally {
+            for (int i = 0; i < size; i++)
+                present[cards[i] >>> 6] = 0;
+        }
+    }
+
+    private boolean allPresent(long[] present, int first) {
+        for (int i = first + 1; i < first + claimSize; i++)
+            if ((present[members[i] >>> 6] & 1L << members[i]) == 0) return false;
+        return true;
+    }
+}
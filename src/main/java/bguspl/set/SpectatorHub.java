@@ -0,0 +1,219 @@
+package bguspl.set;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the frames of a StateBroadcaster to any number of in-process read-only viewers.
+ * Every subscription has a bounded queue of its own. The hub never waits for a viewer: when a viewer's queue is full,
+ * the frames it did not read yet are dropped and replaced by a single snapshot of the current state, so a slow viewer
+ * sees a sampled game rather than slowing down anyone else.
+ */
+public class SpectatorHub implements FrameObserver {
+
+    private static final int EMPTY = -1;
+
+    /**
+     * The default number of frames a viewer may fall behind before it is resynchronized.
+     */
+    public static final int DEFAULT_QUEUE_FRAMES = 64;
+
+    private final Config config;
+
+    private final int queueFrames;
+
+    /**
+     * The state as of the last frame (kept to send snapshots to new and slow viewers).
+     */
+    private final int[] slotToCard;
+    private final long[][] tokens;
+    private final int[] scores;
+    private final long[] freezes;
+    private boolean countdownSet;
+    private long countdown;
+    private boolean warn;
+    private boolean elapsedSet;
+    private long elapsed;
+    private int[] winners;
+    private long sequence;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private volatile boolean closed;
+
+    public SpectatorHub(Config config) {
+        this(config, DEFAULT_QUEUE_FRAMES);
+    }
+
+    /**
+     * @param config      - the game's configuration.
+     * @param queueFrames - the number of frames a viewer may fall behind before it is resynchronized.
+     */
+    public SpectatorHub(Config config, int queueFrames) {
+        if (queueFrames < 1) throw new IllegalArgumentException("queueFrames must be positive: " + queueFrames);
+        this.config = config;
+        this.queueFrames = queueFrames;
+        slotToCard = new int[config.tableSize];
+        Arrays.fill(slotToCard, EMPTY);
+        tokens = new long[config.tableSize][(config.players + Long.SIZE - 1) / Long.SIZE];
+        scores = new int[config.players];
+        freezes = new long[config.players];
+    }
+
+    /**
+     * Adds a viewer. The first frame it gets is a snapshot of the current state, followed by the later frames.
+     *
+     * @return - the new subscription.
+     * @throws IllegalStateException if the hub was closed.
+     */
+    public synchronized Subscription subscribe() {
+        if (closed) throw new IllegalStateException("the spectator hub is closed");
+        Subscription subscription = new Subscription(queueFrames);
+        subscription.queue.offer(snapshot());
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Stops sending frames to a viewer.
+     * @param subscription - the subscription to end.
+     */
+    public void unsubscribe(Subscription subscription) {
+        subscription.closed = true;
+        subscriptions.remove(subscription);
+    }
+
+    /**
+     * @return - the number of viewers currently subscribed.
+     */
+    public int subscribers() {
+        return subscriptions.size();
+    }
+
+    @Override
+    public synchronized void onFrame(StateFrame frame) {
+        apply(frame);
+        StateFrame snapshot = null;
+        for (Subscription subscription : subscriptions) {
+            if (subscription.queue.offer(frame)) continue;
+            if (snapshot == null) snapshot = snapshot();
+            subscription.resync(snapshot);
+        }
+    }
+
+    /**
+     * Closes all the subscriptions (their viewers get the frames already queued, then nothing more).
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Subscription subscription : subscriptions) subscription.closed = true;
+        subscriptions.clear();
+    }
+
+    /**
+     * Updates the state with the changes in a frame.
+     */
+    private void apply(StateFrame frame) {
+        sequence = frame.sequence;
+        for (int i = 0; i < frame.cardSlots.length; i++)
+            slotToCard[frame.cardSlots[i]] = frame.cards[i];
+        for (int i = 0; i < frame.tokenSlots.length; i++)
+            System.arraycopy(frame.tokenMasks[i], 0, tokens[frame.tokenSlots[i]], 0, tokens[0].length);
+        for (int i = 0; i < frame.scorePlayers.length; i++)
+            scores[frame.scorePlayers[i]] = frame.scores[i];
+        for (int i = 0; i < frame.freezePlayers.length; i++)
+            freezes[frame.freezePlayers[i]] = frame.freezes[i];
+        if (frame.countdownChanged) {
+            countdownSet = true;
+            countdown = frame.countdown;
+            warn = frame.warn;
+        }
+        if (frame.elapsedChanged) {
+            elapsedSet = true;
+            elapsed = frame.elapsed;
+        }
+        if (frame.winners != null) winners = frame.winners;
+    }
+
+    private StateFrame snapshot() {
+        int[] cardSlots = range(config.tableSize);
+        long[][] masks = new long[config.tableSize][];
+        for (int slot = 0; slot < masks.length; slot++) masks[slot] = tokens[slot].clone();
+        int[] players = range(config.players);
+        return new StateFrame(sequence, true, cardSlots, slotToCard.clone(), cardSlots.clone(), masks,
+                players, scores.clone(), players.clone(), freezes.clone(),
+                countdownSet, countdown, warn, elapsedSet, elapsed, winners);
+    }
+
+    private static int[] range(int size) {
+        int[] range = new int[size];
+        for (int i = 0; i < size; i++) range[i] = i;
+        return range;
+    }
+
+    /**
+     * The frames waiting for a single viewer.
+     */
+    public static class Subscription {
+
+        private final BlockingQueue<StateFrame> queue;
+
+        /**
+         * The number of times the viewer fell behind and was sent a snapshot instead of the frames it missed.
+         */
+        private volatile int resyncs;
+
+        private volatile boolean closed;
+
+        private Subscription(int capacity) {
+            queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        /**
+         * Drops the frames waiting in the queue and queues a snapshot instead.
+         * @pre - called by the hub only (the only thread adding frames).
+         */
+        private void resync(StateFrame snapshot) {
+            queue.clear();
+            queue.offer(snapshot);
+            resyncs++;
+        }
+
+        /**
+         * @return - the next frame, or null if there is none yet.
+         */
+        public StateFrame poll() {
+            return queue.poll();
+        }
+
+        /**
+         * Waits for the next frame.
+         *
+         * @param timeoutMillis - the maximal time to wait.
+         * @return - the next frame, or null if none arrived in time.
+         * @throws InterruptedException if interrupted while waiting.
+         */
+        public StateFrame poll(long timeoutMillis) throws InterruptedException {
+            return queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * @return - the number of times the viewer fell behind and skipped frames.
+         */
+        public int resyncs() {
+            return resyncs;
+        }
+
+        /**
+         * @return - true iff no more frames will be queued.
+         */
+        public boolean isClosed() {
+            return closed;
+        }
+    }
+}
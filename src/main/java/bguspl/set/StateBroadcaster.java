@@ -0,0 +1,343 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A user interface that collects the changes made by the game into delta frames, one per tick, and publishes them to
+ * any number of observers (the Swing window, the game server, spectators...).
+ * The game threads only update the state arrays under a short lock, the frames are built and delivered by the
+ * broadcaster's own thread, so adding observers costs the dealer nothing and a slow observer never stalls the game.
+ * Values that did not change their displayed form (e.g. the countdown within the same second) are not published.
+ */
+public class StateBroadcaster implements UserInterface, Runnable {
+
+    /**
+     * The number of milliseconds of changes collected into a single frame.
+     */
+    public static final long TICK_MILLIS = 10;
+
+    private static final int EMPTY = -1;
+
+    private final Config config;
+
+    /**
+     * Guards the state and the dirty flags below.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * The current state.
+     */
+    private final int[] slotToCard;
+    private final long[][] tokens;
+    private final int[] scores;
+    private final long[] freezes;
+    private long countdown;
+    private boolean warn;
+    private long elapsed;
+    private int[] winners;
+
+    /**
+     * The displayed form of the countdown, elapsed time and freezes last published (-1 if never set).
+     */
+    private long countdownShown = -1;
+    private long elapsedShown = -1;
+    private final long[] freezesShown;
+
+    /**
+     * What changed since the last frame.
+     */
+    private final BitSet dirtyCards;
+    private final BitSet dirtyTokens;
+    private final BitSet dirtyScores;
+    private final BitSet dirtyFreezes;
+    private boolean dirtyCountdown;
+    private boolean dirtyElapsed;
+    private boolean dirtyWinners;
+    private boolean dirty;
+
+    private long sequence;
+
+    private final List<FrameObserver> observers = new CopyOnWriteArrayList<>();
+    private final List<FrameObserver> joining = new ArrayList<>();
+
+    private volatile boolean closed;
+
+    public StateBroadcaster(Config config) {
+        this.config = config;
+        slotToCard = new int[config.tableSize];
+        Arrays.fill(slotToCard, EMPTY);
+        tokens = new long[config.tableSize][(config.players + Long.SIZE - 1) / Long.SIZE];
+        scores = new int[config.players];
+        freezes = new long[config.players];
+        freezesShown = new long[config.players];
+        dirtyCards = new BitSet(config.tableSize);
+        dirtyTokens = new BitSet(config.tableSize);
+        dirtyScores = new BitSet(config.players);
+        dirtyFreezes = new BitSet(config.players);
+    }
+
+    /**
+     * Registers an observer. Its first frame is a snapshot of the whole state, followed by all the later deltas.
+     * An observer added after the broadcaster was disposed of is closed at once.
+     * @param observer - the observer to add.
+     */
+    public void addObserver(FrameObserver observer) {
+        synchronized (lock) {
+            if (!closed) {
+                joining.add(observer);
+                lock.notifyAll();
+                return;
+            }
+        }
+        observer.close();
+    }
+
+    /**
+     * @param observer - the observer to remove (it is not closed).
+     */
+    public void removeObserver(FrameObserver observer) {
+        synchronized (lock) {
+            joining.remove(observer);
+        }
+        observers.remove(observer);
+    }
+
+    /**
+     * The broadcaster thread: publishes a frame at most once per tick, and only if something changed.
+     */
+    @Override
+    public void run() {
+        try {
+            while (!closed) {
+                synchronized (lock) {
+                    while (!dirty && joining.isEmpty() && !closed)
+                        lock.wait();
+                }
+                Thread.sleep(TICK_MILLIS); // let the rest of the changes of this tick pile up
+                publish();
+            }
+        } catch (InterruptedException ignored) {}
+    }
+
+    /**
+     * Builds the frame of the changes since the last one and delivers it to the observers, then brings the observers
+     * that joined since up to date with a snapshot.
+     */
+    public synchronized void publish() {
+        StateFrame delta = null;
+        StateFrame snapshot = null;
+        List<FrameObserver> joined = null;
+        synchronized (lock) {
+            if (dirty) {
+                delta = buildFrame(false);
+                dirty = false;
+            }
+            if (!joining.isEmpty()) {
+                snapshot = buildFrame(true);
+                joined = new ArrayList<>(joining);
+                joining.clear();
+            }
+        }
+
+        if (delta != null)
+            for (FrameObserver observer : observers) deliver(observer, delta);
+        if (joined != null)
+            for (FrameObserver observer : joined)
+                if (deliver(observer, snapshot)) observers.add(observer);
+    }
+
+    /**
+     * @return - false iff the observer failed (it is then removed).
+     */
+    private boolean deliver(FrameObserver observer, StateFrame frame) {
+        try {
+            observer.onFrame(frame);
+            return true;
+        } catch (RuntimeException e) {
+            observers.remove(observer);
+            return false;
+        }
+    }
+
+    /**
+     * @pre - the lock is held.
+     */
+    private StateFrame buildFrame(boolean snapshot) {
+        BitSet cardSlots = snapshot ? all(config.tableSize) : dirtyCards;
+        BitSet tokenSlots = snapshot ? all(config.tableSize) : dirtyTokens;
+        BitSet scorePlayers = snapshot ? all(config.players) : dirtyScores;
+        BitSet freezePlayers = snapshot ? all(config.players) : dirtyFreezes;
+
+        int[] changedCards = cardSlots.stream().toArray();
+        int[] cards = Arrays.stream(changedCards).map(slot -> slotToCard[slot]).toArray();
+        int[] changedTokens = tokenSlots.stream().toArray();
+        long[][] masks = Arrays.stream(changedTokens).mapToObj(slot -> tokens[slot].clone()).toArray(long[][]::new);
+        int[] changedScores = scorePlayers.stream().toArray();
+        int[] newScores = Arrays.stream(changedScores).map(player -> scores[player]).toArray();
+        int[] changedFreezes = freezePlayers.stream().toArray();
+        long[] newFreezes = Arrays.stream(changedFreezes).mapToLong(player -> freezes[player]).toArray();
+        boolean countdownChanged = snapshot ? countdownShown >= 0 : dirtyCountdown;
+        boolean elapsedChanged = snapshot ? elapsedShown >= 0 : dirtyElapsed;
+        int[] announced = (snapshot || dirtyWinners) && winners != null ? winners.clone() : null;
+
+        if (!snapshot) {
+            sequence++;
+            dirtyCards.clear();
+            dirtyTokens.clear();
+            dirtyScores.clear();
+            dirtyFreezes.clear();
+            dirtyCountdown = dirtyElapsed = dirtyWinners = false;
+        }
+        return new StateFrame(sequence, snapshot, changedCards, cards, changedTokens, masks, changedScores, newScores,
+                changedFreezes, newFreezes, countdownChanged, countdown, warn, elapsedChanged, elapsed, announced);
+    }
+
+    private static BitSet all(int size) {
+        BitSet bits = new BitSet(size);
+        bits.set(0, size);
+        return bits;
+    }
+
+    /**
+     * Marks that there is something to publish.
+     * @pre - the lock is held.
+     */
+    private void changed() {
+        if (!dirty) {
+            dirty = true;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        synchronized (lock) {
+            slotToCard[slot] = card;
+            dirtyCards.set(slot);
+            changed();
+        }
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        synchronized (lock) {
+            slotToCard[slot] = EMPTY;
+            dirtyCards.set(slot);
+            changed();
+        }
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        synchronized (lock) {
+            tokens[slot][player >>> 6] |= 1L << player;
+            dirtyTokens.set(slot);
+            changed();
+        }
+    }
+
+    @Override
+    public void removeTokens() {
+        synchronized (lock) {
+            for (long[] mask : tokens) Arrays.fill(mask, 0);
+            dirtyTokens.set(0, config.tableSize);
+            changed();
+        }
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        synchronized (lock) {
+            Arrays.fill(tokens[slot], 0);
+            dirtyTokens.set(slot);
+            changed();
+        }
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        synchronized (lock) {
+            tokens[slot][player >>> 6] &= ~(1L << player);
+            dirtyTokens.set(slot);
+            changed();
+        }
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        // the countdown is shown in hundredths of a second when warning, otherwise in whole seconds
+        long shown = warn ? (millies / 10) * 2 + 1 : (millies / 1000) * 2;
+        synchronized (lock) {
+            countdown = millies;
+            this.warn = warn;
+            if (shown != countdownShown) {
+                countdownShown = shown;
+                dirtyCountdown = true;
+                changed();
+            }
+        }
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        long shown = millies / 1000;
+        synchronized (lock) {
+            elapsed = millies;
+            if (shown != elapsedShown) {
+                elapsedShown = shown;
+                dirtyElapsed = true;
+                changed();
+            }
+        }
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        long shown = millies > 0 ? millies / 1000 + 1 : 0;
+        synchronized (lock) {
+            freezes[player] = Math.max(millies, 0);
+            if (shown != freezesShown[player]) {
+                freezesShown[player] = shown;
+                dirtyFreezes.set(player);
+                changed();
+            }
+        }
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        synchronized (lock) {
+            scores[player] = score;
+            dirtyScores.set(player);
+            changed();
+        }
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        synchronized (lock) {
+            winners = players.clone();
+            dirtyWinners = true;
+            changed();
+        }
+    }
+
+    /**
+     * Publishes the last changes, stops the broadcaster thread and closes all the observers.
+     */
+    @Override
+    public void dispose() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        publish();
+        for (FrameObserver observer : observers) observer.close();
+        observers.clear();
+    }
+}
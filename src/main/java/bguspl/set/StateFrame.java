@@ -0,0 +1,100 @@
+package bguspl.set;
+
+/**
+ * The changes to the displayed game state during one tick of the StateBroadcaster (or the whole state, for a
+ * snapshot). Only values whose displayed form changed are included, e.g. the countdown is only included when the
+ * number shown on the screen changes.
+ * Frames are immutable once published, and the same frame object is handed to all the observers.
+ */
+public final class StateFrame {
+
+    /**
+     * The number of the frame (frames are numbered consecutively, a snapshot has the number of the last delta).
+     */
+    public final long sequence;
+
+    /**
+     * True iff this frame contains the whole state rather than only the changes.
+     */
+    public final boolean snapshot;
+
+    /**
+     * The slots whose card changed, and the card now in each of them (-1 for an empty slot).
+     */
+    public final int[] cardSlots;
+    public final int[] cards;
+
+    /**
+     * The slots whose tokens changed, and for each of them a bitmask of the players that now have a token there
+     * (bit p % 64 of word p / 64 is set iff player p has a token on the slot).
+     */
+    public final int[] tokenSlots;
+    public final long[][] tokenMasks;
+
+    /**
+     * The players whose score changed, and their new score.
+     */
+    public final int[] scorePlayers;
+    public final int[] scores;
+
+    /**
+     * The players whose displayed freeze changed, and their remaining freeze time in milliseconds (0 if not frozen).
+     */
+    public final int[] freezePlayers;
+    public final long[] freezes;
+
+    /**
+     * The countdown, if its displayed value changed (see countdownChanged).
+     */
+    public final boolean countdownChanged;
+    public final long countdown;
+    public final boolean warn;
+
+    /**
+     * The elapsed time, if its displayed value changed (see elapsedChanged).
+     */
+    public final boolean elapsedChanged;
+    public final long elapsed;
+
+    /**
+     * The winners, if they were announced (null otherwise).
+     */
+    public final int[] winners;
+
+    StateFrame(long sequence, boolean snapshot, int[] cardSlots, int[] cards, int[] tokenSlots, long[][] tokenMasks,
+               int[] scorePlayers, int[] scores, int[] freezePlayers, long[] freezes,
+               boolean countdownChanged, long countdown, boolean warn, boolean elapsedChanged, long elapsed,
+               int[] winners) {
+        this.sequence = sequence;
+        this.snapshot = snapshot;
+        this.cardSlots = cardSlots;
+        this.cards = cards;
+        this.tokenSlots = tokenSlots;
+        this.tokenMasks = tokenMasks;
+        this.scorePlayers = scorePlayers;
+        this.scores = scores;
+        this.freezePlayers = freezePlayers;
+        this.freezes = freezes;
+        this.countdownChanged = countdownChanged;
+        this.countdown = countdown;
+        this.warn = warn;
+        this.elapsedChanged = elapsedChanged;
+        this.elapsed = elapsed;
+        this.winners = winners;
+    }
+
+    /**
+     * @return - true iff the player has a token in the i-th slot of tokenSlots.
+     */
+    public boolean hasToken(int i, int player) {
+        return (tokenMasks[i][player >>> 6] & (1L << player)) != 0;
+    }
+
+    /**
+     * @return - true iff the frame contains no changes.
+     */
+    public boolean isEmpty() {
+        return cardSlots.length == 0 && tokenSlots.length == 0 && scorePlayers.length == 0 && freezePlayers.length == 0
+                && !countdownChanged && !elapsedChanged && winners == null;
+    }
+}
@@ -0,0 +1,205 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A hashed timer wheel: runs tasks at given times, at the resolution of one tick.
+ * Scheduling and cancelling a task take constant time, and advancing the wheel only visits the buckets of the ticks
+ * that passed, so any number of timers (e.g. the freezes of all the players) can be pending at once for the cost of a
+ * single thread that wakes up once a tick, and only while there are timers pending.
+ * A wheel is either driven by its own thread against the system clock (see shared()), or advanced manually (e.g. by
+ * the dealer's simulated clock when the game is stepped deterministically).
+ * The tasks are run by the thread advancing the wheel, in the order of their deadlines, so they should be short.
+ * A task that throws is reported to the thread's uncaught exception handler, and the other tasks still run.
+ */
+public class TimerWheel implements Runnable {
+
+    /**
+     * The default resolution of the timers, in milliseconds.
+     */
+    public static final long DEFAULT_TICK_MILLIS = 10;
+
+    /**
+     * The default number of buckets (a power of two). Timers further away than a whole round are simply skipped
+     * until the round of their deadline.
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static TimerWheel shared;
+
+    private final long tickMillis;
+    private final int mask;
+
+    /**
+     * The heads of the buckets, each a doubly linked list of the timers whose deadline tick maps to it.
+     */
+    private final Timeout[] buckets;
+
+    /**
+     * The last tick processed.
+     */
+    private long currentTick;
+
+    /**
+     * The number of timers pending, and the number of timers ever scheduled (used to order timers of the same tick).
+     */
+    private int pending;
+    private long scheduled;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a wheel that is advanced manually (see advanceTo).
+     *
+     * @param tickMillis  - the resolution of the timers in milliseconds.
+     * @param wheelSize   - the number of buckets (rounded up to a power of two).
+     * @param startMillis - the current time.
+     */
+    public TimerWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize <= 0) throw new IllegalArgumentException("tick and wheel size must be positive");
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) size <<= 1;
+        this.tickMillis = tickMillis;
+        mask = size - 1;
+        buckets = new Timeout[size];
+        currentTick = startMillis / tickMillis;
+    }
+
+    /**
+     * @return - the wheel shared by the whole game, driven by its own daemon thread against the system clock.
+     */
+    public static synchronized TimerWheel shared() {
+        if (shared == null) {
+            shared = new TimerWheel(DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE, System.currentTimeMillis());
+            Thread thread = new Thread(shared, "timers");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return shared;
+    }
+
+    /**
+     * The thread of a wheel driven by the system clock: sleeps while no timers are pending, otherwise advances the
+     * wheel once a tick.
+     */
+    @Override
+    public void run() {
+        try {
+            while (!closed) {
+                synchronized (this) {
+                    while (pending == 0 && !closed)
+                        wait();
+                }
+                Thread.sleep(tickMillis);
+                advanceTo(System.currentTimeMillis());
+            }
+        } catch (InterruptedException ignored) {}
+    }
+
+    /**
+     * Schedules a task.
+     *
+     * @param deadlineMillis - the time to run the task at (a time that already passed runs it on the next tick).
+     * @param task           - the task to run.
+     * @return - the handle of the timer, to cancel it.
+     */
+    public synchronized Timeout schedule(long deadlineMillis, Runnable task) {
+        long tick = Math.max((deadlineMillis + tickMillis - 1) / tickMillis, currentTick + 1);
+        Timeout timeout = new Timeout(this, tick, scheduled++, task);
+        int bucket = (int) (tick & mask);
+        timeout.next = buckets[bucket];
+        if (timeout.next != null) timeout.next.prev = timeout;
+        buckets[bucket] = timeout;
+        if (pending++ == 0) notifyAll();
+        return timeout;
+    }
+
+    /**
+     * Runs all the tasks whose deadline passed.
+     * @param nowMillis - the current time.
+     */
+    public void advanceTo(long nowMillis) {
+        List<Timeout> due = new ArrayList<>();
+        synchronized (this) {
+            long target = nowMillis / tickMillis;
+            if (target <= currentTick) return;
+            // a whole round visits every bucket, no need to go around more than once
+            long from = Math.max(currentTick + 1, target - mask);
+            for (long tick = from; tick <= target && pending > 0; tick++) {
+                int bucket = (int) (tick & mask);
+                for (Timeout timeout = buckets[bucket]; timeout != null; ) {
+                    Timeout next = timeout.next;
+                    if (timeout.tick <= target) {
+                        unlink(timeout, bucket);
+                        due.add(timeout);
+                    }
+                    timeout = next;
+                }
+            }
+            currentTick = target;
+        }
+        due.sort(Comparator.comparingLong((Timeout timeout) -> timeout.tick).thenComparingLong(timeout -> timeout.order));
+        for (Timeout timeout : due) {
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) { // report it, but don't let it stop the other timers (or the wheel's thread)
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+
+    /**
+     * Stops the wheel's thread (if it has one). Pending timers are never run.
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * @pre - the wheel's lock is held and the timer is pending.
+     */
+    private void unlink(Timeout timeout, int bucket) {
+        if (timeout.prev != null) timeout.prev.next = timeout.next;
+        else buckets[bucket] = timeout.next;
+        if (timeout.next != null) timeout.next.prev = timeout.prev;
+        timeout.prev = timeout.next = null;
+        timeout.done = true;
+        pending--;
+    }
+
+    private synchronized void cancel(Timeout timeout) {
+        if (!timeout.done) unlink(timeout, (int) (timeout.tick & mask));
+    }
+
+    /**
+     * A timer scheduled on a wheel.
+     */
+    public static final class Timeout {
+
+        private final TimerWheel wheel;
+        private final long tick;
+        private final long order;
+        private final Runnable task;
+        private Timeout prev;
+        private Timeout next;
+        private boolean done;
+
+        private Timeout(TimerWheel wheel, long tick, long order, Runnable task) {
+            this.wheel = wheel;
+            this.tick = tick;
+            this.order = order;
+            this.task = task;
+        }
+
+        /**
+         * Makes sure the task is not run (does nothing if it already ran or is about to run).
+         */
+        public void cancel() {
+            wheel.cancel(this);
+        }
+    }
+}
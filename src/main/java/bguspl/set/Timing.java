@@ -0,0 +1,73 @@
+package bguspl.set;
+
+import java.util.Properties;
+
+/**
+ * The timing settings that can be changed while the game runs (see ConfigWatcher). Immutable: a reload publishes a new
+ * snapshot, see Config.timing(). Every reader takes the snapshot once at a well-defined point, so a change applies from
+ * the next card placed or removed (the table delay), the next freeze (the freezes) or the next turn (the timeout).
+ */
+public final class Timing {
+
+    /**
+     * See the fields of the same names in Config.
+     */
+    public final long tableDelayMillis;
+    public final long pointFreezeMillis;
+    public final long penaltyFreezeMillis;
+    public final long turnTimeoutMillis;
+
+    public Timing(long tableDelayMillis, long pointFreezeMillis, long penaltyFreezeMillis, long turnTimeoutMillis) {
+        this.tableDelayMillis = tableDelayMillis;
+        this.pointFreezeMillis = pointFreezeMillis;
+        this.penaltyFreezeMillis = penaltyFreezeMillis;
+        this.turnTimeoutMillis = turnTimeoutMillis;
+    }
+
+    /**
+     * Reads the timing settings of a configuration.
+     *
+     * @param properties - the configuration's properties.
+     * @return - the settings.
+     * @throws NumberFormatException if a setting is not a number.
+     */
+    static Timing parse(Properties properties) {
+        return new Timing(
+                millis(properties, "TableDelaySeconds", "0.1"),
+                millis(properties, "PointFreezeSeconds", "1"),
+                millis(properties, "PenaltyFreezeSeconds", "3"),
+                millis(properties, "TurnTimeoutSeconds", "60"));
+    }
+
+    private static long millis(Properties properties, String key, String defaultSeconds) {
+        return (long) (Double.parseDouble(properties.getProperty(key, defaultSeconds).trim()) * 1000.0);
+    }
+
+    /**
+     * @param turnTimeoutMillis - a turn timeout.
+     * @return - these settings with the given turn timeout.
+     */
+    Timing withTurnTimeout(long turnTimeoutMillis) {
+        return new Timing(tableDelayMillis, pointFreezeMillis, penaltyFreezeMillis, turnTimeoutMillis);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Timing)) return false;
+        Timing other = (Timing) o;
+        return tableDelayMillis == other.tableDelayMillis && pointFreezeMillis == other.pointFreezeMillis
+                && penaltyFreezeMillis == other.penaltyFreezeMillis && turnTimeoutMillis == other.turnTimeoutMillis;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(tableDelayMillis) * 31 * 31 * 31 + Long.hashCode(pointFreezeMillis) * 31 * 31
+                + Long.hashCode(penaltyFreezeMillis) * 31 + Long.hashCode(turnTimeoutMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "table delay " + tableDelayMillis + " ms, point freeze " + pointFreezeMillis + " ms, penalty freeze "
+                + penaltyFreezeMillis + " ms, turn timeout " + turnTimeoutMillis + " ms";
+    }
+}
@@ -0,0 +1,481 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.PlayerStatsStore;
+import bguspl.set.ex.SplitMix64;
+import bguspl.set.ex.Table;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs tournaments of computer players without a window. Every match is a whole game of Dealer and Players, with its
+ * own Config: the base configuration, with the seats of the match, its seed and no checkpoints on top.
+ * The matches are run in parallel by a work-stealing pool, one thread per core by default. A deterministic match is
+ * played entirely by the pool thread that took it (see Dealer.runDeterministic), which is why the tournament plays
+ * deterministic matches by default; then every match, and so the whole tournament, is the same on every run with the
+ * same seed, whatever the order the matches finish in.
+ * Usage: java bguspl.set.Tournament [--format round-robin|bracket] [--seats K] [--rounds R] [--threads T]
+ * [--config file] [Key=Value ...] name1 name2 ...
+ * The Key=Value pairs override the configuration file (e.g. TurnTimeoutSeconds=30). Human seats need a window per
+ * match, so all the seats of a tournament are computer players.
+ */
+public final class Tournament implements Closeable {
+
+    public enum Format {ROUND_ROBIN, BRACKET}
+
+    /**
+     * How many times a bracket match is replayed: when it has more than one winner (then the winner seated first goes
+     * on), or when it failed or had no winner (then all its entrants forfeit).
+     */
+    private static final int MAX_REPLAYS = 2;
+
+    /**
+     * No entrant: the winner of a match nobody won, or the champion of a bracket every entrant left forfeited.
+     */
+    public static final int NOBODY = -1;
+
+    /**
+     * A match to play: the entrants in their seats (seat i is player i of the game), and the game's seed.
+     */
+    public static final class Match {
+        public final int index;
+        public final int round;
+        public final int[] entrants;
+        public final long seed;
+
+        Match(int index, int round, int[] entrants, long seed) {
+            this.index = index;
+            this.round = round;
+            this.entrants = entrants;
+            this.seed = seed;
+        }
+    }
+
+    /**
+     * The outcome of a match, by seat.
+     */
+    public static final class Result {
+        public final Match match;
+        public final int[] scores;
+
+        /**
+         * The seats that won, as announced by the dealer (more than one on a shared first place).
+         */
+        public final int[] winners;
+
+        /**
+         * @throws IllegalArgumentException if a winner is not a seat of the match.
+         */
+        public Result(Match match, int[] scores, int[] winners) {
+            for (int seat : winners)
+                if (seat < 0 || seat >= match.entrants.length)
+                    throw new IllegalArgumentException(
+                            "winner " + seat + " of match " + match.index + " is not seated");
+            this.match = match;
+            this.scores = scores;
+            this.winners = winners;
+        }
+
+        /**
+         * @return - the entrant of the first seat that won, or NOBODY if no winner was announced.
+         */
+        public int firstWinner() {
+            if (winners.length == 0) return NOBODY;
+            int first = winners[0];
+            for (int seat : winners) first = Math.min(first, seat);
+            return match.entrants[first];
+        }
+    }
+
+    private final Logger logger;
+    private final Properties base;
+    private final String[] entrants;
+    private final int seats;
+    private final PlayerStatsStore stats;
+    private final SplitMix64 seeds;
+    private final ForkJoinPool pool;
+
+    /**
+     * The ratings of the entrants, updated after every batch of matches in schedule order (so they don't depend on the
+     * order the matches finished in).
+     */
+    private final RatingEngine ratings = new RatingEngine();
+
+    /**
+     * The number of matches scheduled so far (the index of the next one), and played so far.
+     */
+    private int scheduled;
+    private final AtomicInteger played = new AtomicInteger();
+
+    /**
+     * The number of matches in the batch being played (for the progress shown).
+     */
+    private volatile int batch;
+
+    /**
+     * The entrant who won the last bracket.
+     */
+    private int champion = NOBODY;
+
+    /**
+     * Plays a match in the calling thread (replaced by tests, to fail matches on purpose).
+     */
+    Function<Match, Result> playMatch = this::play;
+
+    /**
+     * The class constructor.
+     *
+     * @param logger   - the tournament's logger; the matches log to it at their own LogLevel.
+     * @param base     - the configuration every match starts from.
+     * @param entrants - the names of the entrants (a player's name in its matches, see Config.playerNames).
+     * @param seats    - the number of players in a match.
+     * @param threads  - the number of matches played at once.
+     * @param seed     - the seed the seeds of the matches are drawn from.
+     * @param stats    - the store the players' statistics are added to after every match, or null for none.
+     */
+    public Tournament(Logger logger, Properties base, String[] entrants, int seats, int threads, long seed,
+                      PlayerStatsStore stats) {
+        if (seats < 2 || seats > entrants.length)
+            throw new IllegalArgumentException("can't seat " + seats + " of " + entrants.length + " entrants");
+        Set<String> names = new HashSet<>();
+        for (String name : entrants)
+            if (name.isEmpty() || name.contains(",") || !names.add(name))
+                throw new IllegalArgumentException("invalid or repeated entrant name \"" + name + "\"");
+        this.logger = logger;
+        this.base = base;
+        this.entrants = entrants.clone();
+        this.seats = seats;
+        this.stats = stats;
+        seeds = new SplitMix64(seed);
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Every choice of seats entrants out of the given number, in lexicographic order.
+     *
+     * @param entrants - the number of entrants.
+     * @param seats    - the number of players in a match.
+     * @return - the entrants of every match of a round.
+     */
+    public static List<int[]> roundRobin(int entrants, int seats) {
+        List<int[]> matches = new ArrayList<>();
+        int[] combination = new int[seats];
+        for (int i = 0; i < seats; i++) combination[i] = i;
+        while (true) {
+            matches.add(combination.clone());
+            int i = seats - 1;
+            while (i >= 0 && combination[i] == entrants - seats + i) i--;
+            if (i < 0) return matches;
+            combination[i]++;
+            for (int j = i + 1; j < seats; j++) combination[j] = combination[j - 1] + 1;
+        }
+    }
+
+    /**
+     * Splits the entrants left in a bracket into matches of at most seats entrants, as even as possible. An entrant
+     * left alone in its group goes on without playing.
+     *
+     * @param alive - the entrants left, in bracket order.
+     * @param seats - the number of players in a match.
+     * @return - the groups, in bracket order.
+     */
+    static List<int[]> bracketGroups(int[] alive, int seats) {
+        int groups = (alive.length + seats - 1) / seats;
+        List<int[]> split = new ArrayList<>(groups);
+        for (int g = 0, from = 0; g < groups; g++) {
+            int size = alive.length / groups + (g < alive.length % groups ? 1 : 0);
+            split.add(Arrays.copyOfRange(alive, from, from + size));
+            from += size;
+        }
+        return split;
+    }
+
+    /**
+     * Plays every choice of seats entrants against each other, rounds times. Every round the seats are rotated, so
+     * that no entrant keeps the first seat (which moves first when the game is stepped deterministically).
+     *
+     * @param rounds - the number of rounds.
+     * @return - the results of the matches, in schedule order (without the matches that failed).
+     */
+    public List<Result> roundRobin(int rounds) {
+        List<Match> matches = new ArrayList<>();
+        List<int[]> round = roundRobin(entrants.length, seats);
+        for (int r = 0; r < rounds; r++)
+            for (int[] combination : round) {
+                int[] seated = new int[seats];
+                for (int seat = 0; seat < seats; seat++) seated[seat] = combination[(seat + r) % seats];
+                matches.add(schedule(r, seated));
+            }
+        List<Result> results = play(matches);
+        results.removeIf(Objects::isNull);
+        return results;
+    }
+
+    /**
+     * Plays a single elimination bracket: the winner of every match goes on to the next round, until one is left (see
+     * champion). The matches of a round are played in parallel. A match that failed or had no winner is replayed, and
+     * if it keeps failing all its entrants forfeit.
+     *
+     * @return - the results of all the matches played (replays included), in schedule order.
+     */
+    public List<Result> bracket() {
+        List<Result> results = new ArrayList<>();
+        int[] alive = new int[entrants.length];
+        Arrays.setAll(alive, i -> i);
+        for (int round = 0; alive.length > 1; round++) {
+            List<int[]> groups = bracketGroups(alive, seats);
+            int[] winners = new int[groups.size()];
+            List<Match> matches = new ArrayList<>();
+            List<Integer> playing = new ArrayList<>();
+            for (int g = 0; g < groups.size(); g++) {
+                if (groups.get(g).length == 1) {
+                    winners[g] = groups.get(g)[0];
+                    continue;
+                }
+                matches.add(schedule(round, groups.get(g)));
+                playing.add(g);
+            }
+            for (int replay = 0; !matches.isEmpty(); replay++) {
+                List<Result> played = play(matches);
+                List<Match> again = new ArrayList<>();
+                List<Integer> stillPlaying = new ArrayList<>();
+                for (int i = 0; i < matches.size(); i++) {
+                    Result result = played.get(i);
+                    int group = playing.get(i);
+                    if (result != null) results.add(result);
+                    if ((result == null || result.winners.length != 1) && replay < MAX_REPLAYS) {
+                        again.add(schedule(round, matches.get(i).entrants));
+                        stillPlaying.add(group);
+                    } else {
+                        winners[group] = result == null ? NOBODY : result.firstWinner();
+                        if (winners[group] == NOBODY)
+                            logger.severe("match " + matches.get(i).index
+                                    + (result == null ? " failed " : " had no winner ") + (replay + 1)
+                                    + " times, its entrants forfeit.");
+                    }
+                }
+                matches = again;
+                playing = stillPlaying;
+            }
+            alive = Arrays.stream(winners).filter(winner -> winner != NOBODY).toArray();
+        }
+        champion = alive.length == 1 ? alive[0] : NOBODY;
+        return results;
+    }
+
+    /**
+     * @return - the entrant who won the last bracket played, or NOBODY.
+     */
+    public int champion() {
+        return champion;
+    }
+
+    private Match schedule(int round, int[] seated) {
+        return new Match(scheduled++, round, seated, seeds.nextLong());
+    }
+
+    /**
+     * Plays matches in parallel, and rates their results.
+     *
+     * @param matches - the matches.
+     * @return - the results of the matches, in the same order (null for a match that failed).
+     */
+    private List<Result> play(List<Match> matches) {
+        List<Callable<Result>> tasks = new ArrayList<>(matches.size());
+        for (Match match : matches) tasks.add(() -> playMatch.apply(match));
+        batch = matches.size();
+        List<Result> results = new ArrayList<>(matches.size());
+        for (Future<Result> future : pool.invokeAll(tasks)) {
+            results.add(null);
+            try {
+                Result result = future.get();
+                results.set(results.size() - 1, result);
+                String[] names = new String[result.match.entrants.length];
+                for (int seat = 0; seat < names.length; seat++) names[seat] = entrants[result.match.entrants[seat]];
+                ratings.record(names, result.scores, result.winners);
+            } catch (ExecutionException e) {
+                logger.log(Level.SEVERE, "a match failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Plays a match in the calling thread (the dealer's), and waits for it to end.
+     *
+     * @param match - the match.
+     * @return - the result of the match.
+     */
+    private Result play(Match match) {
+        Logger matchLogger = Logger.getAnonymousLogger();
+        matchLogger.setParent(logger);
+        Config config = new Config(matchLogger, properties(match));
+        Headless ui = new Headless();
+        Env env = new Env(matchLogger, config, ui, new UtilImpl(config));
+        Table table = new Table(env);
+        Player[] players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players, null, stats);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+        dealer.run();
+        Thread.interrupted(); // the dealer may leave the pool thread interrupted when it stops the players
+
+        int[] scores = new int[players.length];
+        for (int i = 0; i < players.length; i++) scores[i] = players[i].score();
+        int done = played.incrementAndGet();
+        if (done % Math.max(1, batch / 10) == 0)
+            logger.info("played " + done + " matches (" + scheduled + " scheduled).");
+        return new Result(match, scores, ui.winners);
+    }
+
+    /**
+     * @return - the configuration of a match.
+     */
+    private Properties properties(Match match) {
+        Properties properties = new Properties();
+        properties.putAll(base);
+        StringBuilder names = new StringBuilder();
+        for (int entrant : match.entrants) names.append(names.length() > 0 ? ", " : "").append(entrants[entrant]);
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", Integer.toString(match.entrants.length));
+        properties.setProperty("PlayerNames", names.toString());
+        properties.setProperty("RandomSeed", Long.toString(match.seed));
+        properties.setProperty("CheckpointSeconds", "0"); // the matches would all write the same file
+        return properties;
+    }
+
+    /**
+     * @return - the ratings of the entrants, from the matches played so far.
+     */
+    public RatingEngine ratings() {
+        return ratings;
+    }
+
+    /**
+     * Prints standings as a table.
+     *
+     * @param standings - the ratings of the entrants, in the order to print.
+     * @param out       - the stream to print to.
+     */
+    public static void print(List<RatingEngine.Rating> standings, PrintStream out) {
+        out.printf("%-20s %6s %6s %8s %8s%n", "entrant", "games", "wins", "points", "rating");
+        for (RatingEngine.Rating standing : standings) out.println(standing);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * The user interface of a match: nothing is shown, only the winners are kept.
+     */
+    private static final class Headless implements UserInterface {
+        volatile int[] winners = new int[0];
+
+        @Override public void placeCard(int card, int slot) {}
+        @Override public void removeCard(int slot) {}
+        @Override public void placeToken(int player, int slot) {}
+        @Override public void removeTokens() {}
+        @Override public void removeTokens(int slot) {}
+        @Override public void removeToken(int player, int slot) {}
+        @Override public void setCountdown(long millies, boolean warn) {}
+        @Override public void setElapsed(long millies) {}
+        @Override public void setFreeze(int player, long millies) {}
+        @Override public void setScore(int player, int score) {}
+        @Override public void announceWinner(int[] players) { winners = players.clone(); }
+        @Override public void dispose() {}
+    }
+
+    public static void main(String[] args) throws IOException {
+        Format format = Format.ROUND_ROBIN;
+        int seats = 2;
+        int rounds = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String file = "config.properties";
+        Properties overrides = new Properties();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--format") && i + 1 < args.length)
+                format = Format.valueOf(args[++i].toUpperCase().replace('-', '_'));
+            else if (arg.equals("--seats") && i + 1 < args.length)
+                seats = Integer.parseInt(args[++i]);
+            else if (arg.equals("--rounds") && i + 1 < args.length)
+                rounds = Integer.parseInt(args[++i]);
+            else if (arg.equals("--threads") && i + 1 < args.length)
+                threads = Integer.parseInt(args[++i]);
+            else if (arg.equals("--config") && i + 1 < args.length)
+                file = args[++i];
+            else if (arg.indexOf('=') > 0)
+                overrides.setProperty(arg.substring(0, arg.indexOf('=')).trim(), arg.substring(arg.indexOf('=') + 1));
+            else
+                names.add(arg);
+        }
+        if (names.size() < 2) {
+            System.err.println("usage: java bguspl.set.Tournament [--format round-robin|bracket] [--seats K] "
+                    + "[--rounds R] [--threads T] [--config file] [Key=Value ...] name1 name2 ...");
+            System.exit(1);
+        }
+
+        Logger logger = Logger.getLogger(Tournament.class.getName());
+        Properties base = Config.loadProperties(file, logger);
+        // the matches are played without a window, and quietly unless asked otherwise
+        base.setProperty("Deterministic", "True");
+        base.setProperty("Hints", "False");
+        base.setProperty("LogLevel", "WARNING");
+        base.putAll(overrides);
+        String seed = base.getProperty("RandomSeed", "").trim();
+        Config config = new Config(Logger.getAnonymousLogger(), base);
+
+        PlayerStatsStore stats = null;
+        if (!config.statsFile.isEmpty()) {
+            try {
+                stats = PlayerStatsStore.open(Paths.get(config.statsFile));
+            } catch (IOException e) {
+                logger.severe("can't open the player statistics " + config.statsFile + ": " + e.getMessage());
+            }
+        }
+
+        String[] entrants = names.toArray(new String[0]);
+        long start = System.nanoTime();
+        List<Result> results;
+        List<RatingEngine.Rating> standings;
+        int champion;
+        try (Tournament tournament = new Tournament(logger, base, entrants, seats, threads,
+                seed.isEmpty() ? SplitMix64.unseeded().nextLong() : Long.parseLong(seed), stats)) {
+            results = format == Format.BRACKET ? tournament.bracket() : tournament.roundRobin(rounds);
+            standings = tournament.ratings().top(entrants.length);
+            champion = tournament.champion();
+        } finally {
+            if (stats != null) stats.close();
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        print(standings, System.out);
+        if (format == Format.BRACKET)
+            System.out.println("champion: " + (champion == NOBODY ? "none" : entrants[champion]));
+        System.out.printf("%n%d matches on %d threads in %d ms%n", results.size(), threads, millis);
+    }
+}
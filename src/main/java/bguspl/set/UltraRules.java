@@ -0,0 +1,78 @@
+package bguspl.set;
+
+/**
+ * The ultra set rules: 2 * (featureSize - 1) cards form a set iff they split into two groups of featureSize - 1 cards
+ * that the same (ghost) card completes to classic sets. With the default 3 values, any two pairs out of four cards.
+ * The groups are enumerated as bitmasks of card indices and completed straight from the masks, so nothing is copied.
+ */
+class UltraRules implements Rules {
+
+    /**
+     * The classic rules (with sets of featureSize cards) the groups are completed with.
+     */
+    private final ClassicRules classic;
+
+    /**
+     * The number of cards in a group (featureSize - 1).
+     */
+    private final int groupSize;
+
+    /**
+     * @param classic - the classic rules, with sets of featureSize cards.
+     */
+    UltraRules(ClassicRules classic) {
+        this.classic = classic;
+        groupSize = classic.claimSize() - 1;
+    }
+
+    @Override
+    public int claimSize() {
+        return 2 * groupSize;
+    }
+
+    @Override
+    public boolean isSet(int[] cards) {
+        int k = cards.length;
+        if (k != 2 * groupSize) return false;
+        long all = (1L << k) - 1;
+        // the first card is always in the first group, so that every split is checked once
+        for (long rest = (1L << (groupSize - 1)) - 1; rest < 1L << (k - 1); rest = nextMask(rest)) {
+            long group = rest << 1 | 1;
+            int ghost = classic.completion(cards, group, -1);
+            if (ghost >= 0 && ghost == classic.completion(cards, all & ~group, -1)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Tries every group of featureSize - 1 of the given cards: its ghost card, together with the remaining cards,
+     * completes to the missing card.
+     */
+    @Override
+    public int complete(int[] cards, int size) {
+        if (size != 2 * groupSize - 1) return -1;
+        long all = (1L << size) - 1;
+        for (long group = (1L << groupSize) - 1; group <= all; group = nextMask(group)) {
+            int ghost = classic.completion(cards, group, -1);
+            if (ghost < 0 || contains(cards, size, ghost)) continue;
+            int card = classic.completion(cards, all & ~group, ghost);
+            if (card >= 0 && !contains(cards, size, card)) return card;
+        }
+        return -1;
+    }
+
+    /**
+     * @return - the next larger mask with the same number of bits set (Gosper's hack).
+     */
+    private static long nextMask(long mask) {
+        long lowest = mask & -mask;
+        long ripple = mask + lowest;
+        return ripple | ((mask ^ ripple) >>> 2) / lowest;
+    }
+
+    private static boolean contains(int[] cards, int size, int card) {
+        for (int i = 0; i < size; ++i)
+            if (cards[i] == card) return true;
+        return false;
+    }
+}
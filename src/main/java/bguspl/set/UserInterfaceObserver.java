@@ -0,0 +1,50 @@
+package bguspl.set;
+
+/**
+ * Replays the state frames of a StateBroadcaster on a user interface (e.g. the Swing window or the game server).
+ */
+public class UserInterfaceObserver implements FrameObserver {
+
+    private final UserInterface ui;
+
+    /**
+     * The tokens the user interface currently shows (tokens[player][slot]), to replay only the tokens that changed.
+     */
+    private final boolean[][] tokens;
+
+    public UserInterfaceObserver(Config config, UserInterface ui) {
+        this.ui = ui;
+        tokens = new boolean[config.players][config.tableSize];
+    }
+
+    @Override
+    public void onFrame(StateFrame frame) {
+        for (int i = 0; i < frame.cardSlots.length; i++)
+            if (frame.cards[i] < 0) ui.removeCard(frame.cardSlots[i]);
+            else ui.placeCard(frame.cards[i], frame.cardSlots[i]);
+
+        for (int i = 0; i < frame.tokenSlots.length; i++) {
+            int slot = frame.tokenSlots[i];
+            for (int player = 0; player < tokens.length; player++) {
+                boolean token = frame.hasToken(i, player);
+                if (token == tokens[player][slot]) continue;
+                tokens[player][slot] = token;
+                if (token) ui.placeToken(player, slot);
+                else ui.removeToken(player, slot);
+            }
+        }
+
+        for (int i = 0; i < frame.scorePlayers.length; i++)
+            ui.setScore(frame.scorePlayers[i], frame.scores[i]);
+        for (int i = 0; i < frame.freezePlayers.length; i++)
+            ui.setFreeze(frame.freezePlayers[i], frame.freezes[i]);
+        if (frame.countdownChanged) ui.setCountdown(frame.countdown, frame.warn);
+        if (frame.elapsedChanged) ui.setElapsed(frame.elapsed);
+        if (frame.winners != null) ui.announceWinner(frame.winners);
+    }
+
+    @Override
+    public void close() {
+        ui.dispose();
+    }
+}
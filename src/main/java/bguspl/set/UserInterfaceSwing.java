@@ -2,9 +2,13 @@ package bguspl.set;
 
 import bguspl.set.ex.Player;
 
+import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.List;
@@ -29,10 +33,17 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     }
 
     public UserInterfaceSwing(Logger logger, Config config, Player[] players) {
+        this(logger, config, players, loadAtlas(logger));
+    }
+
+    /**
+     * @param atlas - the card images (null to load every card image separately).
+     */
+    public UserInterfaceSwing(Logger logger, Config config, Player[] players, CardAtlas atlas) {
 
         this.config = config;
         timerPanel = new TimerPanel();
-        gamePanel = new GamePanel();
+        gamePanel = new GamePanel(atlas);
         playersPanel = new PlayersPanel();
         winnerPanel = new WinnerPanel();
 
@@ -69,6 +80,18 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         EventQueue.invokeLater(() -> setVisible(true));
     }
 
+    /**
+     * @return - the card atlas, or null if it can't be loaded.
+     */
+    static CardAtlas loadAtlas(Logger logger) {
+        try {
+            return CardAtlas.load();
+        } catch (IOException e) {
+            logger.warning("error loading the card atlas, loading the card images separately: " + e.getMessage());
+            return null;
+        }
+    }
+
     private class TimerPanel extends JPanel {
 
         private final JLabel timerField;
@@ -102,33 +125,67 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
     private class GamePanel extends JLayeredPane {
 
-        private final Image emptyCard;
-        private final Image[] deck;
-        private final Image[][] grid;
+        /**
+         * All the card images, in a single image of the screen's format.
+         */
+        private final CardAtlas atlas;
+
+        /**
+         * The cell in the atlas of every card, and of the empty card.
+         */
+        private final int[] deck;
+        private final int emptyCard;
+
+        /**
+         * The cell in the atlas of the card shown in every slot.
+         */
+        private final int[][] grid;
         private final boolean[][][] playerTokens;
         private final JLabel[][] tokenText;
 
-        private Image loadImageResource(String filename) {
+        private BufferedImage loadImageResource(String filename) {
             URL imageResource = getClass().getClassLoader().getResource(filename);
             if (imageResource == null)
                 throw new RuntimeException(new FileNotFoundException(filename));
-            return new ImageIcon(imageResource).getImage();
+            try {
+                return ImageIO.read(imageResource);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
 
-        private GamePanel() {
+        /**
+         * @return - the atlas, if it has all the cards, otherwise an atlas packed from the separate card images.
+         */
+        private CardAtlas loadCards(CardAtlas atlas, String[] names) {
+            if (atlas != null && Arrays.stream(names).allMatch(name -> atlas.cell(name) >= 0))
+                return atlas;
+            BufferedImage[] images = new BufferedImage[names.length];
+            for (int i = 0; i < names.length; i++)
+                images[i] = loadImageResource("cards/" + names[i] + ".png");
+            return CardAtlas.pack(names, images);
+        }
+
+        private GamePanel(CardAtlas atlas) {
 
             setPreferredSize(new Dimension(config.columns * config.cellWidth, config.rows * config.cellHeight));
 
             // init deck and load all pictures from png files
             assert config.featureSize < 10; // otherwise there will be naming conflicts
 
-            // load the image resources
-            deck = new Image[config.deckSize];
+            // load the image resources (from the atlas when it has them)
+            String[] names = new String[config.deckSize + 1];
+            for (int i = 0; i < config.deckSize; ++i)
+                names[i] = intInBaseToPaddedString(i, config.featureCount, config.featureSize);
+            names[config.deckSize] = "empty_card";
+            this.atlas = loadCards(atlas, names).accelerated(GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDefaultConfiguration());
+            deck = new int[config.deckSize];
             for (int i = 0; i < config.deckSize; ++i)
-                deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png");
-            emptyCard = loadImageResource("cards/empty_card.png");
+                deck[i] = this.atlas.cell(names[i]);
+            emptyCard = this.atlas.cell("empty_card");
 
-            grid = new Image[config.rows][config.columns];
+            grid = new int[config.rows][config.columns];
             tokenText = new JLabel[config.rows][config.columns];
             playerTokens = new boolean[config.players][config.rows][config.columns];
             for (int row = 0; row < config.rows; row++) {
@@ -152,16 +209,21 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             int row = slot / config.columns;
             int column = slot % config.columns;
             grid[row][column] = deck[card];
-            validate();
-            repaint();
+            repaintCell(row, column);
         }
 
         private void removeCard(int slot) {
             int row = slot / config.columns;
             int column = slot % config.columns;
             grid[row][column] = emptyCard;
-            validate();
-            repaint();
+            repaintCell(row, column);
+        }
+
+        /**
+         * Marks only the cell of a slot as dirty (Swing merges the dirty cells into the clip of the next paint).
+         */
+        private void repaintCell(int row, int column) {
+            repaint(column * config.cellWidth, row * config.cellHeight, config.cellWidth, config.cellHeight);
         }
 
         private void placeToken(int player, int slot) {
@@ -205,10 +267,15 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
         @Override
         public void paintComponent(Graphics g) {
-            // draw card images
+            // draw the card images of the dirty cells only, each a blit out of the atlas
+            Rectangle clip = g.getClipBounds();
             for (int row = 0; row < config.rows; row++)
-                for (int column = 0; column < config.columns; column++)
-                    g.drawImage(grid[row][column], (column * config.cellWidth), (row * config.cellHeight), this);
+                for (int column = 0; column < config.columns; column++) {
+                    int x = column * config.cellWidth;
+                    int y = row * config.cellHeight;
+                    if (clip == null || clip.intersects(x, y, config.cellWidth, config.cellHeight))
+                        atlas.draw(g, grid[row][column], x, y, this);
+                }
         }
     }
 
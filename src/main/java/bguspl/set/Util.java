@@ -1,5 +1,6 @@
 package bguspl.set;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -40,6 +41,99 @@ public interface Util {
      */
     List<int[]> findSets(List<Integer> deck, int count);
 
+    /**
+     * Same as findSets, but allowed to split the search across all available cores (for large decks).
+     * Implementations that do not support a parallel search simply fall back to findSets.
+     *
+     * @param deck  - a collection of cards (may not include null objects).
+     * @param count - the maximum number of sets to find.
+     * @return - a list of up to count integer arrays, each one contains the card ids of a legal set.
+     */
+    default List<int[]> findSetsParallel(List<Integer> deck, int count) {
+        return findSets(deck, count);
+    }
+
+    /**
+     * Finds a card that completes the given claimSize - 1 cards to a legal set (see Rules.complete).
+     * Implementations that can't compute it directly return -1, and callers should fall back to searching.
+     *
+     * @param cards - an array of card ids.
+     * @param size  - the number of cards in the array to consider.
+     * @return - the id of a completing card (not one of the given cards), or -1 if there is none.
+     */
+    default int completeSet(int[] cards, int size) {
+        return -1;
+    }
+
+    /**
+     * A callback for forEachSet.
+     */
+    @FunctionalInterface
+    interface SetVisitor {
+
+        /**
+         * Called once for every legal set found.
+         *
+         * @param set - the card ids of the set. The array may be reused between calls, so copy it if it is kept.
+         * @return - true to continue searching, false to stop.
+         */
+        boolean visit(int[] set);
+    }
+
+    /**
+     * Calls the visitor for every legal set in the first size cards of the given array, until the visitor says stop.
+     *
+     * @param cards   - an array of card ids.
+     * @param size    - the number of cards in the array to consider.
+     * @param visitor - the callback for each set found.
+     * @return - true iff the visitor stopped the search early.
+     */
+    default boolean forEachSet(int[] cards, int size, SetVisitor visitor) {
+        List<Integer> deck = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) deck.add(cards[i]);
+        for (int[] set : findSets(deck, Integer.MAX_VALUE))
+            if (!visitor.visit(set)) return true;
+        return false;
+    }
+
+    /**
+     * Counts the legal sets in the first size cards of the given array.
+     *
+     * @param cards - an array of card ids.
+     * @param size  - the number of cards in the array to consider.
+     * @return - the number of legal sets.
+     */
+    default int countSets(int[] cards, int size) {
+        int[] count = new int[1];
+        forEachSet(cards, size, set -> {
+            count[0]++;
+            return true;
+        });
+        return count[0];
+    }
+
+    /**
+     * Checks whether there is at least one legal set in the first size cards of the given array.
+     *
+     * @param cards - an array of card ids.
+     * @param size  - the number of cards in the array to consider.
+     * @return - true iff there is a legal set.
+     */
+    default boolean anySet(int[] cards, int size) {
+        return forEachSet(cards, size, set -> false);
+    }
+
+    /**
+     * Tells whether anySet looks the sets up in a catalog of all the sets of the deck (see SetCatalog) rather than
+     * trying every combination of the cards, so it is cheap enough to call on a game thread.
+     *
+     * @param size - the number of cards to search.
+     * @return - true iff anySet of that many cards is cheap.
+     */
+    default boolean cheapAnySet(int size) {
+        return false;
+    }
+
     /**
      * Spin a random number of times (for debugging/testing).
      */
@@ -1,9 +1,14 @@
 package bguspl.set;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
 
 /**
@@ -11,10 +16,50 @@ import java.util.stream.IntStream;
  */
 public class UtilImpl implements Util {
 
+    /**
+     * Decks smaller than this are searched sequentially even by findSetsParallel (3^5 cards and below).
+     */
+    private static final int PARALLEL_DECK_THRESHOLD = 243;
+
+    /**
+     * The approximate number of combinations a fork/join task checks by itself before splitting.
+     */
+    private static final long SEQUENTIAL_WORK_THRESHOLD = 1 << 12;
+
+    /**
+     * The number of combinations copied out and checked by one call of Rules.testSets when going over combinations.
+     */
+    private static final int BATCH_SIZE = 64;
+
     private final Config config;
 
+    /**
+     * The rules of the game variant, which check and complete the sets.
+     */
+    private final Rules rules;
+
+    /**
+     * All the legal sets of the deck, shared by every game with the same configuration (null if the deck is too large
+     * to catalog). Searches use it instead of trying every combination whenever it is cheaper.
+     */
+    private final SetCatalog catalog;
+
+    /**
+     * Per thread buffers for the allocation free set enumeration.
+     */
+    private final ThreadLocal<Scratch> scratch;
+
+    /**
+     * The random number generator for spin when the game is seeded (null otherwise).
+     */
+    private final SplittableRandom seededRandom;
+
     public UtilImpl(Config config) {
         this.config = config;
+        rules = Rules.create(config);
+        catalog = SetCatalog.of(config, rules);
+        scratch = ThreadLocal.withInitial(this::newScratch);
+        seededRandom = config.seeded ? new SplittableRandom(config.randomSeed) : null;
     }
 
     private void cardToFeatures(int card, int[] features) {
@@ -40,35 +85,25 @@ public class UtilImpl implements Util {
 
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
-        for (int i = 0; i < config.featureCount; ++i) {
-            boolean sameSame = true, butDifferent = true;
-
-            // check if this features is sameSame in all cards
-            for (int j = 1; j < features.length; ++j)
-                if (features[0][i] != features[j][i]) {
-                    sameSame = false;
-                    break;
-                }
-
-            // check if this feature is butDifferent in all cards
-            for (int j = 1; j < features.length; ++j)
-                for (int k = j; k < features.length; ++k)
-                    if (features[j - 1][i] == features[k][i]) {
-                        butDifferent = false;
-                        break;
-                    }
-
-            if (sameSame == butDifferent) return false;
-        }
-        return true;
+        return rules.isSet(cards);
     }
 
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
+        long start = GameEvents.setSearchStart();
+        List<int[]> sets = catalog != null && catalog.worthIt(deck.size()) ? findCatalogSets(deck, count)
+                : findCombinationSets(deck, count);
+        GameEvents.setSearch("findSets", deck.size(), sets.size(), start);
+        return sets;
+    }
+
+    /**
+     * Goes over the combinations of the deck in lexicographic order (see findSets).
+     */
+    private List<int[]> findCombinationSets(List<Integer> deck, int count) {
         LinkedList<int[]> sets = new LinkedList<>();
         int n = deck.size();
-        int r = config.featureSize;
+        int r = rules.claimSize();
         int[] combination = new int[r];
 
         for (int i = 0; i < r; ++i)
@@ -90,9 +125,282 @@ public class UtilImpl implements Util {
         return sets;
     }
 
+    @Override
+    public List<int[]> findSetsParallel(List<Integer> deck, int count) {
+        int r = rules.claimSize();
+        if (deck.size() < PARALLEL_DECK_THRESHOLD || count <= 0 || deck.size() < r
+                || catalog != null && catalog.worthIt(deck.size()))
+            return findSets(deck, count);
+
+        long start = GameEvents.setSearchStart();
+        int[] cards = deck.stream().mapToInt(Integer::intValue).toArray();
+        FindSetsTask root = new FindSetsTask(cards, new int[0], 0, cards.length - r + 1, count, new AtomicInteger());
+        List<int[]> sets = ForkJoinPool.commonPool().invoke(root);
+        while (sets.size() > count) sets.remove(sets.size() - 1);
+        GameEvents.setSearch("findSetsParallel", deck.size(), sets.size(), start);
+        return sets;
+    }
+
+    /**
+     * Looks the sets up in the catalog.
+     */
+    private List<int[]> findCatalogSets(List<Integer> deck, int count) {
+        int[] cards = deck.stream().mapToInt(Integer::intValue).toArray();
+        List<int[]> sets = new ArrayList<>();
+        if (count > 0)
+            enumerateSets(cards, cards.length, set -> {
+                sets.add(set.clone());
+                return sets.size() < count;
+            }, count);
+        return sets;
+    }
+
+    /**
+     * Checks all the combinations that start with the given fixed prefix of card indices and collects the legal sets.
+     *
+     * @param cards       - the cards to search in.
+     * @param combination - the current combination (indices into cards), the first fixed entries are not changed.
+     * @param fixed       - the number of leading entries of combination that are fixed (at least 1).
+     * @param count       - the maximum number of sets to find (across all tasks).
+     * @param found       - the number of sets found so far (across all tasks).
+     * @param sets        - the list to add the sets to.
+     * @param batch       - a buffer for BATCH_SIZE combinations (see nextCandidates).
+     * @param legal       - a buffer for the verdicts of BATCH_SIZE combinations.
+     */
+    private void collectSets(int[] cards, int[] combination, int fixed, int count, AtomicInteger found,
+                             List<int[]> sets, int[] batch, boolean[] legal) {
+        int r = combination.length;
+        for (int i = fixed; i < r; i++) combination[i] = combination[i - 1] + 1;
+
+        while (found.get() < count) {
+            int candidates = nextCandidates(cards, cards.length, combination, fixed, batch);
+            if (candidates == 0) return;
+            if (rules.testSets(batch, candidates, legal) == 0) continue;
+            for (int c = 0; c < candidates; c++) {
+                if (!legal[c]) continue;
+                int[] set = Arrays.copyOfRange(batch, c * r, c * r + r);
+                Arrays.sort(set);
+                sets.add(set);
+                if (found.incrementAndGet() >= count) return;
+            }
+        }
+    }
+
+    /**
+     * Copies the cards of the next combinations of the first size cards into batch, one after the other, starting
+     * with the given one and going on in lexicographic order (without touching the fixed prefix), and advances the
+     * combination past them.
+     *
+     * @param combination - the current combination (indices into cards), past the last one when they ran out.
+     * @param fixed       - the number of leading entries of combination that are fixed.
+     * @param batch       - the buffer to copy to, room for BATCH_SIZE combinations.
+     * @return - the number of combinations copied (less than BATCH_SIZE only when they ran out).
+     */
+    private static int nextCandidates(int[] cards, int size, int[] combination, int fixed, int[] batch) {
+        int r = combination.length;
+        int candidates = 0;
+        while (candidates < BATCH_SIZE && combination[r - 1] < size) {
+            System.arraycopy(combination, 0, batch, candidates * r, r);
+            for (int i = candidates * r; i < candidates * r + r; i++)
+                batch[i] = cards[batch[i]];
+            candidates++;
+
+            // generate next combination in lexicographic order
+            int t = r - 1;
+            while (t >= fixed && combination[t] == size - r + t) --t;
+            if (t < fixed) {
+                combination[r - 1] = size; // ran out
+                break;
+            }
+            combination[t]++;
+            for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+        }
+        return candidates;
+    }
+
+    /**
+     * A fork/join task that searches all the combinations whose first prefix.length indices are given, and whose
+     * next index is in the range [lo, hi). The search is split over the first card index and then over the second one
+     * (i.e. the pair space), each task collects its own sets so merging them needs no synchronization.
+     */
+    private class FindSetsTask extends RecursiveTask<List<int[]>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] cards;
+        private final int[] prefix;
+        private final int lo;
+        private final int hi;
+        private final int count;
+        private final AtomicInteger found;
+
+        private FindSetsTask(int[] cards, int[] prefix, int lo, int hi, int count, AtomicInteger found) {
+            this.cards = cards;
+            this.prefix = prefix;
+            this.lo = lo;
+            this.hi = hi;
+            this.count = count;
+            this.found = found;
+        }
+
+        /**
+         * @return - a rough estimate of the number of combinations this task has to check.
+         */
+        private long work() {
+            long remaining = cards.length - lo;
+            long work = hi - lo;
+            for (int i = prefix.length + 1; i < rules.claimSize(); i++)
+                work *= remaining;
+            return work;
+        }
+
+        @Override
+        protected List<int[]> compute() {
+            List<int[]> sets = new ArrayList<>();
+            if (found.get() >= count || lo >= hi) return sets;
+
+            int r = rules.claimSize();
+            int depth = prefix.length;
+            boolean splittable = depth < 2 && depth < r - 1 && work() > SEQUENTIAL_WORK_THRESHOLD;
+
+            if (splittable && hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                FindSetsTask left = new FindSetsTask(cards, prefix, lo, mid, count, found);
+                left.fork();
+                List<int[]> right = new FindSetsTask(cards, prefix, mid, hi, count, found).compute();
+                sets.addAll(left.join());
+                sets.addAll(right);
+            } else if (splittable) {
+                // a single choice for this index, so split the range of the next one
+                int[] next = Arrays.copyOf(prefix, depth + 1);
+                next[depth] = lo;
+                return new FindSetsTask(cards, next, lo + 1, cards.length - r + depth + 2, count, found).compute();
+            } else {
+                int[] combination = new int[r];
+                int[] batch = new int[BATCH_SIZE * r];
+                boolean[] legal = new boolean[BATCH_SIZE];
+                System.arraycopy(prefix, 0, combination, 0, depth);
+                for (int i = lo; i < hi && found.get() < count; i++) {
+                    combination[depth] = i;
+                    if (depth + 1 == r) {
+                        int[] candidate = Arrays.stream(combination).map(index -> cards[index]).sorted().toArray();
+                        if (testSet(candidate)) {
+                            sets.add(candidate);
+                            found.incrementAndGet();
+                        }
+                    } else
+                        collectSets(cards, combination, depth + 1, count, found, sets, batch, legal);
+                }
+            }
+            return sets;
+        }
+    }
+
+    @Override
+    public boolean forEachSet(int[] cards, int size, SetVisitor visitor) {
+        return enumerateSets(cards, size, visitor, Integer.MAX_VALUE) < 0;
+    }
+
+    @Override
+    public int countSets(int[] cards, int size) {
+        long start = GameEvents.setSearchStart();
+        int found = enumerateSets(cards, size, null, Integer.MAX_VALUE);
+        GameEvents.setSearch("countSets", size, found, start);
+        return found;
+    }
+
+    @Override
+    public boolean anySet(int[] cards, int size) {
+        long start = GameEvents.setSearchStart();
+        int found = enumerateSets(cards, size, null, 1);
+        GameEvents.setSearch("anySet", size, found, start);
+        return found > 0;
+    }
+
+    @Override
+    public boolean cheapAnySet(int size) {
+        return catalog != null; // below worthIt there are fewer combinations than sets to look up
+    }
+
+    @Override
+    public int completeSet(int[] cards, int size) {
+        return rules.complete(cards, size);
+    }
+
+    /**
+     * Goes over all the combinations of the first size cards in lexicographic order, checking them a batch at a time
+     * (see Rules.testSets), or looks the sets up in the catalog when that is cheaper, without allocating anything
+     * (unless the visitor calls back into this method on the same thread).
+     *
+     * @param visitor - called for every set found (may be null).
+     * @param limit   - stop after this many sets.
+     * @return - the number of sets found, or -1 if the visitor stopped the search.
+     */
+    private int enumerateSets(int[] cards, int size, SetVisitor visitor, int limit) {
+        int r = rules.claimSize();
+        if (size < r) return 0;
+
+        Scratch buffers = scratch.get();
+        if (buffers.inUse) buffers = newScratch();
+        buffers.inUse = true;
+        int[] combination = buffers.combination;
+        int[] set = buffers.set;
+        try {
+            if (catalog != null && catalog.worthIt(size))
+                return catalog.forEachSet(cards, size, buffers.present, set, visitor, limit);
+
+            for (int i = 0; i < r; ++i)
+                combination[i] = i;
+
+            int found = 0;
+            for (int candidates; (candidates = nextCandidates(cards, size, combination, 0, buffers.batch)) > 0; ) {
+                if (rules.testSets(buffers.batch, candidates, buffers.legal) == 0) continue;
+                for (int c = 0; c < candidates; c++) {
+                    if (!buffers.legal[c]) continue;
+                    System.arraycopy(buffers.batch, c * r, set, 0, r);
+                    if (visitor != null && !visitor.visit(set)) return -1;
+                    if (++found >= limit) return found;
+                }
+            }
+            return found;
+        } finally {
+            buffers.inUse = false;
+        }
+    }
+
+    /**
+     * Reusable buffers for enumerateSets.
+     */
+    private static class Scratch {
+
+        private final int[] combination;
+        private final int[] set;
+        private final int[] batch;
+        private final boolean[] legal;
+        private final long[] present;
+        private boolean inUse;
+
+        private Scratch(int setSize, long[] present) {
+            combination = new int[setSize];
+            set = new int[setSize];
+            batch = new int[BATCH_SIZE * setSize];
+            legal = new boolean[BATCH_SIZE];
+            this.present = present;
+        }
+    }
+
+    private Scratch newScratch() {
+        return new Scratch(rules.claimSize(), catalog != null ? catalog.newBitset() : null);
+    }
+
     public void spin() {
         if (config.randomSpinMax <= 0) return;
-        long cycles = ThreadLocalRandom.current().nextLong(config.randomSpinMin, config.randomSpinMax);
+        long cycles;
+        if (seededRandom != null)
+            synchronized (seededRandom) {
+                cycles = seededRandom.nextLong(config.randomSpinMin, config.randomSpinMax);
+            }
+        else
+            cycles = ThreadLocalRandom.current().nextLong(config.randomSpinMin, config.randomSpinMax);
         for (int i = 0; i < cycles; ++i)
             Thread.yield();
     }
@@ -0,0 +1,270 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The full state of a game at one moment: the deck (in order), the table, the players' tokens, scores and freezes, the
+ * countdown and the state of every random number generator. Resuming from it continues the game where it was (and a
+ * seeded game deals the same cards it would have).
+ * The dealer only copies its arrays into a checkpoint, the encoding and writing happen on the writer's thread (see
+ * CheckpointWriter). The binary format is a magic number and a format version, followed by the fields in order,
+ * with card ids, slots and times as unsigned varints and the tokens as bitsets.
+ */
+public final class Checkpoint {
+
+    /**
+     * "SETC", and the version of the format.
+     */
+    private static final int MAGIC = 0x53455443;
+    private static final int FORMAT = 1;
+
+    /**
+     * Marks an empty slot in table.
+     */
+    public static final int emptySlot = -1;
+
+    /**
+     * The shape of the game, which must match the configuration it is resumed with.
+     */
+    final int deckSize;
+    final int tableSize;
+
+    /**
+     * The cards in the deck (in the deck's order) and its random number generator.
+     */
+    final int[] deck;
+    final long deckSeed;
+    final long deckGamma;
+
+    /**
+     * The card in every slot of the table (emptySlot if none).
+     */
+    final int[] table;
+
+    /**
+     * The time left until the reshuffle, or the time since the last action when the countdown is reversed.
+     */
+    final long turnMillis;
+
+    /**
+     * The clock of a game stepped deterministically (0 otherwise).
+     */
+    final long simulatedTimeMillis;
+
+    /**
+     * Per player: the score, the freeze time left, the slots with tokens, and the random number generator.
+     */
+    final int[] scores;
+    final long[] freezeMillis;
+    final boolean[][] tokens;
+    final long[] playerSeeds;
+    final long[] playerGammas;
+
+    Checkpoint(int deckSize, int tableSize, int[] deck, long deckSeed, long deckGamma, int[] table, long turnMillis,
+               long simulatedTimeMillis, int[] scores, long[] freezeMillis, boolean[][] tokens, long[] playerSeeds,
+               long[] playerGammas) {
+        this.deckSize = deckSize;
+        this.tableSize = tableSize;
+        this.deck = deck;
+        this.deckSeed = deckSeed;
+        this.deckGamma = deckGamma;
+        this.table = table;
+        this.turnMillis = turnMillis;
+        this.simulatedTimeMillis = simulatedTimeMillis;
+        this.scores = scores;
+        this.freezeMillis = freezeMillis;
+        this.tokens = tokens;
+        this.playerSeeds = playerSeeds;
+        this.playerGammas = playerGammas;
+    }
+
+    /**
+     * @return the number of players in the game.
+     */
+    public int players() {
+        return scores.length;
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file next to the given one, and then moves it over the given file in one
+     * step, so that the file always holds a whole checkpoint (the previous one if writing fails midway).
+     *
+     * @param file - the checkpoint file.
+     * @throws IOException if the checkpoint can't be written.
+     */
+    public void write(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Path temporary = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        Files.write(temporary, encode());
+        try {
+            Files.move(temporary, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads a checkpoint written by write.
+     *
+     * @param file   - the checkpoint file.
+     * @param config - the configuration of the game to resume.
+     * @return - the checkpoint.
+     * @throws IOException if the file can't be read, is not a checkpoint, or doesn't match the configuration.
+     */
+    public static Checkpoint read(Path file, Config config) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return decode(new DataInputStream(in), config);
+        }
+    }
+
+    /**
+     * @return - the checkpoint in the binary format.
+     */
+    byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 2 * deck.length + 2 * table.length + 32 * scores.length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(FORMAT);
+        writeVarint(out, deckSize);
+        writeVarint(out, tableSize);
+        writeVarint(out, scores.length);
+
+        writeVarint(out, deck.length);
+        for (int card : deck) writeVarint(out, card);
+        out.writeLong(deckSeed);
+        out.writeLong(deckGamma);
+        for (int card : table) writeVarint(out, card + 1); // so that an empty slot is 0
+        writeVarint(out, turnMillis);
+        writeVarint(out, simulatedTimeMillis);
+
+        for (int i = 0; i < scores.length; i++) {
+            writeVarint(out, scores[i]);
+            writeVarint(out, freezeMillis[i]);
+            writeBits(out, tokens[i]);
+            out.writeLong(playerSeeds[i]);
+            out.writeLong(playerGammas[i]);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a checkpoint from the binary format, checking it before anything is allocated by it: its shape must match
+     * the configuration, and every card of the deck must be in the deck or on the table at most once.
+     *
+     * @param config - the configuration of the game to resume.
+     * @return - the checkpoint read.
+     * @throws IOException if the checkpoint can't be read, is corrupt, or doesn't match the configuration.
+     */
+    static Checkpoint decode(DataInputStream in, Config config) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("not a checkpoint");
+        int format = in.readUnsignedByte();
+        if (format != FORMAT) throw new IOException("unknown checkpoint format " + format);
+        long deckSize = readVarint(in);
+        long tableSize = readVarint(in);
+        long players = readVarint(in);
+        if (deckSize != config.deckSize || tableSize != config.tableSize || players != config.players)
+            throw new IOException("a checkpoint of a game with " + deckSize + " cards, " + tableSize + " slots and "
+                    + players + " players");
+
+        long deckLength = readVarint(in);
+        if (deckLength > deckSize) throw new IOException("a deck of " + deckLength + " cards out of " + deckSize);
+        boolean[] seen = new boolean[config.deckSize];
+        int[] deck = new int[(int) deckLength];
+        for (int i = 0; i < deck.length; i++) deck[i] = card(readVarint(in), seen);
+        long deckSeed = in.readLong();
+        long deckGamma = in.readLong();
+        int[] table = new int[config.tableSize];
+        for (int i = 0; i < table.length; i++) {
+            long slot = readVarint(in);
+            table[i] = slot == 0 ? emptySlot : card(slot - 1, seen);
+        }
+        long turnMillis = readVarint(in);
+        long simulatedTimeMillis = readVarint(in);
+
+        int[] scores = new int[config.players];
+        long[] freezeMillis = new long[config.players];
+        boolean[][] tokens = new boolean[config.players][];
+        long[] playerSeeds = new long[config.players];
+        long[] playerGammas = new long[config.players];
+        for (int i = 0; i < config.players; i++) {
+            scores[i] = (int) readVarint(in);
+            freezeMillis[i] = readVarint(in);
+            tokens[i] = readBits(in, config.tableSize);
+            playerSeeds[i] = in.readLong();
+            playerGammas[i] = in.readLong();
+        }
+        return new Checkpoint(config.deckSize, config.tableSize, deck, deckSeed, deckGamma, table, turnMillis,
+                simulatedTimeMillis, scores, freezeMillis, tokens, playerSeeds, playerGammas);
+    }
+
+    /**
+     * Checks a card read from a checkpoint: it must be a card of the deck, seen for the first time.
+     *
+     * @param card - the card id read.
+     * @param seen - the cards seen so far, by id (the card is added).
+     * @return - the card id.
+     * @throws IOException if it is not a card of the deck, or it was seen already.
+     */
+    private static int card(long card, boolean[] seen) throws IOException {
+        if (card >= seen.length) throw new IOException("card " + card + " is not in a deck of " + seen.length);
+        if (seen[(int) card]) throw new IOException("card " + card + " is in the checkpoint twice");
+        seen[(int) card] = true;
+        return (int) card;
+    }
+
+    /**
+     * Writes a non negative number in 7 bit groups, lowest first, with the high bit set on all but the last group.
+     */
+    private static void writeVarint(OutputStream out, long value) throws IOException {
+        if (value < 0) throw new IOException("negative value " + value);
+        while (value >= 0x80) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = in.read();
+            if (b < 0) throw new EOFException();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("malformed varint");
+    }
+
+    private static void writeBits(OutputStream out, boolean[] bits) throws IOException {
+        for (int i = 0; i < bits.length; i += Byte.SIZE) {
+            int b = 0;
+            for (int j = 0; j < Byte.SIZE && i + j < bits.length; j++)
+                if (bits[i + j]) b |= 1 << j;
+            out.write(b);
+        }
+    }
+
+    private static boolean[] readBits(InputStream in, int length) throws IOException {
+        boolean[] bits = new boolean[length];
+        for (int i = 0; i < length; i += Byte.SIZE) {
+            int b = in.read();
+            if (b < 0) throw new EOFException();
+            for (int j = 0; j < Byte.SIZE && i + j < length; j++)
+                bits[i + j] = (b & 1 << j) != 0;
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,102 @@
+package bguspl.set.ex;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes the game's checkpoints on a background thread, so that the dealer only pays for copying the state.
+ * The dealer never wakes the writer: the writer looks for the latest checkpoint offered on its own short schedule (so
+ * that on a busy machine it does not take the dealer's place on the CPU the moment a checkpoint is offered, and yet
+ * writes it soon after), and checkpoints that were replaced before it got to them are skipped (an older checkpoint is
+ * of no use once there is a newer one).
+ */
+public final class CheckpointWriter {
+
+    /**
+     * The time close waits for the last checkpoint to be written.
+     */
+    private static final long closeTimeoutMS = 1000;
+
+    /**
+     * The time between looks for a new checkpoint to write (independent of the time between checkpoints, so a
+     * checkpoint is written at most this long after it was offered).
+     */
+    private static final long pollMS = 50;
+
+    private final Path file;
+    private final Logger logger;
+
+    /**
+     * The checkpoint waiting to be written (null if none).
+     */
+    private final AtomicReference<Checkpoint> pending = new AtomicReference<>();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The class constructor.
+     *
+     * @param file   - the checkpoint file.
+     * @param logger - the logger to report failures to.
+     */
+    public CheckpointWriter(Path file, Logger logger) {
+        this.file = file;
+        this.logger = logger;
+        executor.scheduleWithFixedDelay(this::writePending, pollMS, pollMS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a checkpoint to be written (replacing the one waiting, if any). Never blocks.
+     *
+     * @param checkpoint - the checkpoint.
+     */
+    public void offer(Checkpoint checkpoint) {
+        pending.set(checkpoint);
+    }
+
+    private void writePending() {
+        Checkpoint checkpoint = pending.getAndSet(null);
+        if (checkpoint == null) return;
+        try {
+            checkpoint.write(file);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "can't write checkpoint " + file + ": " + e);
+        }
+    }
+
+    /**
+     * Stops the writer's thread, and then writes the last checkpoint offered (if it was not written yet).
+     *
+     * @param delete - true to delete the checkpoint file instead (e.g. when the game is over, so there is nothing to
+     *               resume).
+     */
+    public void close(boolean delete) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(closeTimeoutMS, TimeUnit.MILLISECONDS))
+                logger.log(Level.WARNING, "the checkpoint writer did not stop in time.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!delete)
+            writePending();
+        else {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "can't delete checkpoint " + file + ": " + e);
+            }
+        }
+    }
+}
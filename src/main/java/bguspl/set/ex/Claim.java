@@ -0,0 +1,119 @@
+package bguspl.set.ex;
+
+/**
+ * A set claimed by a player, stamped when the player placed its last token. The dealer judges the claims in stamp
+ * order (see Dealer.iGotASet), and the player waits on its own claim until it is judged.
+ */
+public final class Claim implements Comparable<Claim> {
+
+    /**
+     * The player that claimed the set.
+     */
+    private final Player player;
+
+    /**
+     * The slots of the cards of the set.
+     */
+    private final int[] slots;
+
+    /**
+     * The time the last token was placed (System.nanoTime(), or the simulated clock when stepping deterministically).
+     */
+    private final long stampNanos;
+
+    /**
+     * The order in which the dealer received the claim, which breaks ties between equal stamps.
+     */
+    private final long sequence;
+
+    /**
+     * The version of the table the player checked the set against, or Table.noVersion if it could not.
+     */
+    private final long version;
+
+    /**
+     * True once the dealer judged the claim, or dropped it because its cards left the table.
+     */
+    private boolean judged;
+
+    /**
+     * The class constructor.
+     *
+     * @param player     - the player that claimed the set.
+     * @param slots      - the slots of the cards of the set.
+     * @param stampNanos - the time the last token was placed.
+     * @param sequence   - the order in which the dealer received the claim.
+     * @param version    - the version of the table the player found the set legal at (or Table.noVersion).
+     */
+    public Claim(Player player, int[] slots, long stampNanos, long sequence, long version) {
+        this.player = player;
+        this.slots = slots;
+        this.stampNanos = stampNanos;
+        this.sequence = sequence;
+        this.version = version;
+    }
+
+    /**
+     * @return the player that claimed the set.
+     */
+    public Player player() {
+        return player;
+    }
+
+    /**
+     * @return the slots of the cards of the set.
+     */
+    public int[] slots() {
+        return slots;
+    }
+
+    /**
+     * @return the time the last token was placed, in nanoseconds.
+     */
+    public long stampNanos() {
+        return stampNanos;
+    }
+
+    /**
+     * @return the version of the table the player found the set legal at, or Table.noVersion if it did not check it.
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * @param slot - a slot on the table.
+     * @return true iff the set uses the card in the slot.
+     */
+    public boolean uses(int slot) {
+        for (int s : slots)
+            if (s == slot) return true;
+        return false;
+    }
+
+    /**
+     * Marks the claim as judged, and wakes the player waiting for it.
+     */
+    public synchronized void judged() {
+        judged = true;
+        notifyAll();
+    }
+
+    /**
+     * Waits until the claim is judged (or the waiting thread is interrupted, at the end of the game).
+     */
+    public synchronized void awaitJudgement() {
+        try {
+            while (!judged)
+                wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public int compareTo(Claim other) {
+        int byStamp = Long.compare(stampNanos, other.stampNanos);
+        return byStamp != 0 ? byStamp : Long.compare(sequence, other.sequence);
+    }
+}
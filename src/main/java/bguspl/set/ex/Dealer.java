@@ -1,11 +1,19 @@
 package bguspl.set.ex;
 import bguspl.set.Env;
+import bguspl.set.GameEvents;
+import bguspl.set.TimerWheel;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
  * This class manages the dealer's threads and data
@@ -24,9 +32,9 @@ public class Dealer implements Runnable {
     private final Player[] players;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The card ids that are left in the dealer's deck.
      */
-    private final List<Integer> deck;
+    private final Deck deck;
 
     /**
      * True iff game should be terminated due to an external event.
@@ -38,26 +46,165 @@ public class Dealer implements Runnable {
      */
     private long reshuffleTime = Long.MAX_VALUE;
 
-    private final BlockingQueue<int[]> fairnessQueueCardsSlots;
-    private final BlockingQueue<Player> fairnessQueuePlayers;
-    protected final BlockingQueue<Thread> fairnessTerminatingSequence;
+    /**
+     * The claims waiting to be judged, ordered by their stamps (see iGotASet).
+     */
+    private final PriorityBlockingQueue<Claim> claims;
+
+    /**
+     * The number of claims received so far (the sequence number of the next claim).
+     */
+    private final AtomicLong claimsReceived = new AtomicLong();
+
+    /**
+     * The number of claims judged, and the total and the longest time from their stamps until they were judged.
+     * Written only by the dealer thread. Confirmed claims were only checked against the table version.
+     */
+    private volatile long claimsJudged;
+    private volatile long claimsConfirmed;
+    private volatile long totalArbitrationDelayNanos;
+    private volatile long maxArbitrationDelayNanos;
+
+    protected final BlockingDeque<ShutdownHandle> fairnessTerminatingSequence;
     private final Object bothQueues = new Object();
     private boolean foundSet;
     private int[] currCardSlots;
     public final static long practicallyZeroMS = 9;
+    public final static long shutdownTimeoutMS = 2000;
+    private final long firstDealTargetMS = 200;
+
+    /**
+     * Whether no dealer has been created in this JVM yet: the first game's time to the first deal includes the startup
+     * of the JVM, the later games' (e.g. of a tournament) is measured from the creation of their dealer.
+     */
+    private static final AtomicBoolean firstGameOfJvm = new AtomicBoolean(true);
+
+    /**
+     * When the time to the first deal starts (see logTimeToFirstDeal), and whether that is the start of the JVM.
+     */
+    private final boolean startedWithJvm = firstGameOfJvm.getAndSet(false);
+    private final long startNanos = startedWithJvm
+            ? System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(ManagementFactory.getRuntimeMXBean().getUptime())
+            : System.nanoTime();
     private final long actualZero = 0;
     public boolean placedCards = false;
     private boolean reverseTimer;
 
+    /**
+     * Reusable buffer for the cards on the table (used by the set existence checks).
+     */
+    private final int[] tableCards;
+
+    /**
+     * Reusable buffer for all the cards still in the game (used by the end of game check).
+     */
+    private final int[] gameCards;
+
+    /**
+     * The random number generators of the players, split from the game's generator in player order.
+     */
+    private final SplitMix64[] playerRandoms;
+
+    /**
+     * The simulated clock used when the game is stepped deterministically (see Config.deterministic).
+     */
+    private long simulatedTimeMillis;
+
+    /**
+     * The timers of the game (the players' freezes): the shared wheel, or one advanced by the simulated clock when
+     * the game is stepped deterministically.
+     */
+    private final TimerWheel timers;
+
+    /**
+     * The checkpoint the game resumes from (null for a new game), and the turn time it had (see Checkpoint.turnMillis)
+     * until the first countdown reset honours it.
+     */
+    private final Checkpoint resume;
+    private final long noResumedTurn = -1;
+    private long resumedTurnMillis = noResumedTurn;
+
+    /**
+     * Writes the checkpoints in the background (null when Config.checkpointMillis is off), and the time of the next one.
+     */
+    private final CheckpointWriter checkpoints;
+    private long nextCheckpointMillis;
+
+    /**
+     * The number of checkpoints taken, and the longest time the dealer spent taking one.
+     */
+    private long checkpointsTaken;
+    private long maxCheckpointPauseNanos;
+
+    /**
+     * The store the players' statistics are added to when the game is over (null for none).
+     */
+    private final PlayerStatsStore stats;
+
     public Dealer(Env env, Table table, Player[] players) {
+        this(env, table, players, null, null);
+    }
+
+    /**
+     * Creates a dealer that continues a game from a checkpoint (see Checkpoint.read).
+     * @param resume the checkpoint, or null for a new game.
+     */
+    public Dealer(Env env, Table table, Player[] players, Checkpoint resume) {
+        this(env, table, players, resume, null);
+    }
+
+    /**
+     * Creates a dealer that adds the players' statistics to a store when the game is over.
+     * @param resume the checkpoint, or null for a new game.
+     * @param stats  the store of the players' lifetime statistics, or null for none.
+     */
+    public Dealer(Env env, Table table, Player[] players, Checkpoint resume, PlayerStatsStore stats) {
+        this(env, table, players, resume, stats, null);
+    }
+
+    /**
+     * Creates a dealer of a new game that deals from the given deck (for tests).
+     * @param deck the deck, with the cards of the game that are not on the table.
+     */
+    Dealer(Env env, Table table, Player[] players, Deck deck) {
+        this(env, table, players, null, null, deck);
+    }
+
+    /**
+     * @param resume the checkpoint, or null for a new game.
+     * @param stats  the store of the players' lifetime statistics, or null for none.
+     * @param deck   the deck of a new game, or null to shuffle one.
+     */
+    private Dealer(Env env, Table table, Player[] players, Checkpoint resume, PlayerStatsStore stats, Deck deck) {
         this.env = env;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
-        fairnessQueueCardsSlots = new LinkedBlockingQueue<>();
-        fairnessQueuePlayers = new LinkedBlockingQueue<>();
-        fairnessTerminatingSequence = new LinkedBlockingQueue<>();
+        this.resume = resume;
+        this.stats = stats;
+        if (resume == null) {
+            SplitMix64 random = env.config.seeded ? new SplitMix64(env.config.randomSeed) : SplitMix64.unseeded();
+            SplitMix64 deckRandom = random.split();
+            this.deck = deck != null ? deck : new Deck(env.config.deckSize, deckRandom);
+            playerRandoms = new SplitMix64[env.config.players];
+            for (int i = 0; i < playerRandoms.length; i++)
+                playerRandoms[i] = random.split();
+        } else {
+            this.deck = new Deck(env.config.deckSize, new SplitMix64(resume.deckSeed, resume.deckGamma), resume.deck);
+            playerRandoms = new SplitMix64[env.config.players];
+            for (int i = 0; i < playerRandoms.length; i++)
+                playerRandoms[i] = new SplitMix64(resume.playerSeeds[i], resume.playerGammas[i]);
+            simulatedTimeMillis = resume.simulatedTimeMillis;
+            resumedTurnMillis = resume.turnMillis;
+        }
+        checkpoints = env.config.checkpointMillis > 0
+                ? new CheckpointWriter(Paths.get(env.config.checkpointFile), env.logger) : null;
+        claims = new PriorityBlockingQueue<>();
+        fairnessTerminatingSequence = new LinkedBlockingDeque<>();
         reverseTimer = env.config.turnTimeoutMillis <= actualZero; //bonus 3
+        tableCards = new int[env.config.tableSize];
+        gameCards = new int[env.config.deckSize];
+        timers = env.config.deterministic ? new TimerWheel(1, TimerWheel.DEFAULT_WHEEL_SIZE, simulatedTimeMillis)
+                : TimerWheel.shared();
     }
 
     /**
@@ -66,32 +213,214 @@ public class Dealer implements Runnable {
     @Override
     public void run() {
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " starting.");
+        if (env.config.deterministic) {
+            runDeterministic();
+            env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
+            return;
+        }
+        resumeGame();
         Thread[] playerThreads = new Thread[env.config.players];
         for(int i = 0 ; i< env.config.players; i++){
             playerThreads[i] = new Thread(players[i],Player.playerThreadName+"-"+i);
             playerThreads[i].start();
         }
 
+        logTimeToFirstDeal();
         while (!shouldFinish()) {
             placeCardsOnTable();
+            if (env.config.hints) table.hints();
             updateTimerDisplay(true);
             timerLoop();
             removeAllCardsFromTable();
         }
-        announceWinners();
+        int[] winners = announceWinners();
+        logArbitrationDelay();
+        closeCheckpoints();
         terminatePlayers();
+        recordStats(winners);
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
     }
 
+    /**
+     * Logs how long after the start of the program (or of the game, for the later games of a JVM) the dealer is ready
+     * to deal the first cards (the configured delays of placing the cards one by one come on top of that).
+     */
+    private void logTimeToFirstDeal() {
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        env.logger.log(millis > firstDealTargetMS ? Level.WARNING : Level.INFO, "first deal " + millis + " ms after "
+                + (startedWithJvm ? "startup" : "the dealer was created") + " (target " + firstDealTargetMS + " ms).");
+    }
+
+    /**
+     * Logs how long the claims waited from their stamps until they were judged (see checkNextSet).
+     */
+    private void logArbitrationDelay() {
+        env.logger.log(Level.INFO, "judged " + claimsJudged() + " claims (" + claimsConfirmed()
+                + " confirmed by table version), arbitration delay mean "
+                + TimeUnit.NANOSECONDS.toMicros(meanArbitrationDelayNanos()) + " us, max "
+                + TimeUnit.NANOSECONDS.toMicros(maxArbitrationDelayNanos()) + " us (window "
+                + env.config.claimWindowMillis + " ms).");
+    }
+
+    /**
+     * The main loop of the dealer when the game is stepped deterministically: no player threads are created, instead
+     * every turn each player (and its AI) is stepped once in id order, then the dealer judges the claims made.
+     * The clock advances by the dealer's delay every turn, so the game does not depend on the speed of the machine.
+     */
+    private void runDeterministic() {
+        resumeGame();
+        logTimeToFirstDeal();
+        while (!shouldFinish()) {
+            placeCardsOnTable();
+            if (env.config.hints) table.hints();
+            updateTimerDisplay(true);
+            while (checkTableForSets() && !terminate && turnIsRunning()) {
+                simulatedTimeMillis += tableDelayMillis();
+                timers.advanceTo(simulatedTimeMillis);
+                for (Player p : players) {
+                    p.simulateKeyPress();
+                    p.step();
+                }
+                updateTimerDisplay(false);
+                while (!foundSet && !claims.isEmpty())
+                    checkNextSet();
+                collectFoundSet();
+                placeCardsOnTable();
+                checkpoint();
+            }
+            removeAllCardsFromTable();
+        }
+        int[] winners = announceWinners();
+        closeCheckpoints();
+        recordStats(winners);
+    }
+
+    /**
+     * Places the cards, tokens, scores and freezes of the checkpoint the game resumes from (if any) back on the table.
+     * Called before the players start, so they see the table as it was.
+     */
+    private void resumeGame() {
+        nextCheckpointMillis = currentTimeMillis() + env.config.checkpointMillis;
+        if (resume == null) return;
+        for (int slot = 0; slot < env.config.tableSize; slot++)
+            if (resume.table[slot] != Checkpoint.emptySlot)
+                table.placeCard(resume.table[slot], slot);
+        placedCards = true;
+        for (int i = 0; i < players.length; i++)
+            players[i].restore(resume.scores[i], resume.tokens[i], resume.freezeMillis[i]);
+        env.logger.log(Level.INFO, "resumed a game with " + deck.size() + " cards in the deck.");
+    }
+
+    /**
+     * Takes a checkpoint of the game if it is time to. The dealer only copies the state, which is encoded and written
+     * by the checkpoint writer's thread.
+     */
+    private void checkpoint() {
+        if (checkpoints == null || currentTimeMillis() < nextCheckpointMillis) return;
+        long start = System.nanoTime();
+        long now = currentTimeMillis();
+        nextCheckpointMillis = now + env.config.checkpointMillis;
+
+        int[] deckCards = new int[deck.size()];
+        deck.copyTo(deckCards, 0);
+        int[] slots = new int[env.config.tableSize];
+        for (int slot = 0; slot < slots.length; slot++) {
+            Integer card = table.slotToCard[slot];
+            slots[slot] = card != null ? card : Checkpoint.emptySlot;
+        }
+        long turnMillis = reverseTimer ? now - reshuffleTime : Math.max(actualZero, reshuffleTime - now);
+        int[] scores = new int[players.length];
+        long[] freezeMillis = new long[players.length];
+        boolean[][] tokens = new boolean[players.length][];
+        long[] playerSeeds = new long[players.length];
+        long[] playerGammas = new long[players.length];
+        for (int i = 0; i < players.length; i++) {
+            scores[i] = players[i].score();
+            freezeMillis[i] = players[i].freezeRemainingMillis();
+            tokens[i] = players[i].copyTokens();
+            playerSeeds[i] = playerRandoms[i].seed();
+            playerGammas[i] = playerRandoms[i].gamma();
+        }
+        checkpoints.offer(new Checkpoint(env.config.deckSize, env.config.tableSize, deckCards, deck.random().seed(),
+                deck.random().gamma(), slots, turnMillis, env.config.deterministic ? simulatedTimeMillis : actualZero,
+                scores, freezeMillis, tokens, playerSeeds, playerGammas));
+
+        checkpointsTaken++;
+        maxCheckpointPauseNanos = Math.max(maxCheckpointPauseNanos, System.nanoTime() - start);
+    }
+
+    /**
+     * Waits for the last checkpoint to be written. Once no set is left the game can't be resumed, so the checkpoint
+     * file is deleted.
+     */
+    private void closeCheckpoints() {
+        if (checkpoints == null) return;
+        checkpoints.close(checkDeckAndTable());
+        env.logger.log(Level.INFO, "took " + checkpointsTaken + " checkpoints, longest dealer pause "
+                + TimeUnit.NANOSECONDS.toMicros(maxCheckpointPauseNanos) + " us.");
+    }
+
+    /**
+     * Adds the statistics of the players in this game to their lifetime statistics, all at once. Only games played to
+     * the end (no set left) are recorded.
+     * @param winners the ids of the winners.
+     */
+    private void recordStats(int[] winners) {
+        if (stats == null || !checkDeckAndTable()) return;
+        PlayerStats[] game = new PlayerStats[players.length];
+        for (int i = 0; i < players.length; i++) {
+            boolean won = false;
+            for (int winner : winners) won |= winner == players[i].id;
+            game[i] = players[i].stats(env.config.playerNames[i], won);
+        }
+        try {
+            for (PlayerStats total : stats.record(game))
+                env.logger.log(Level.INFO, "lifetime statistics of " + total);
+        } catch (IOException e) {
+            env.logger.log(Level.WARNING, "can't record the players' statistics: " + e);
+        }
+    }
+
+    /**
+     * The game's clock: the simulated one when stepping deterministically, otherwise the system's.
+     * @return the current time in milliseconds.
+     */
+    public long currentTimeMillis() {
+        return env.config.deterministic ? simulatedTimeMillis : System.currentTimeMillis();
+    }
+
+    /**
+     * @return the timers of the game (advanced by the game's clock).
+     */
+    public TimerWheel timers() {
+        return timers;
+    }
+
+    /**
+     * @param id the id of a player.
+     * @return the random number generator of the player.
+     */
+    public SplitMix64 playerRandom(int id) {
+        return playerRandoms[id];
+    }
+
+    /**
+     * @return true iff the current turn did not time out yet (always true when there is no countdown).
+     */
+    private boolean turnIsRunning() {
+        return (currentTimeMillis() < reshuffleTime && !reverseTimer) || reverseTimer && currentTimeMillis() >= reshuffleTime;
+    }
+
     /**
      * The inner loop of the dealer thread that runs as long as the countdown did not time out.
      */
     private void timerLoop() {
-        while (checkTableForSets() && !terminate && ((System.currentTimeMillis() < reshuffleTime && !reverseTimer) || reverseTimer && System.currentTimeMillis() >= reshuffleTime)) {
+        while (checkTableForSets() && !terminate && turnIsRunning()) {
             sleepUntilWokenOrTimeout();
             updateTimerDisplay(false);
             removeCardsFromTable();
             placeCardsOnTable();
+            checkpoint();
         }
     }
 
@@ -103,47 +432,20 @@ public class Dealer implements Runnable {
     }
 
     /**
-     * Called at the end of dealer thread
+     * Called at the end of dealer thread. Stops the registered threads in reverse order to the order they started,
+     * each one cancelled and interrupted out of any wait, and all of them waited for until one shared deadline.
      */
     private void terminatePlayers() {
-        int size = fairnessTerminatingSequence.size();
-        synchronized (fairnessTerminatingSequence) {
-            Stack<Thread> s = new Stack<>();
-            for (int i = 0; i < size; i++) {
-                s.push(fairnessTerminatingSequence.remove());
-            }
-            for (int i = 0; i < size; i++) {
-                fairnessTerminatingSequence.add(s.pop());
-            }
-        }
-        for(int i = 0; i < size; i++) {
-            //So that the player threads will be eliminated in reverse order to the order they were created by
-            Thread curr = fairnessTerminatingSequence.remove();
-            if (curr != null) {
-                String currName = curr.getName();
-                String[] afterSplit = currName.split("-");
-                char delimiter = afterSplit[0].charAt(0);
-                int id = Integer.parseInt(afterSplit[1]);
-                if (delimiter == Player.aiThreadName.charAt(0)) {
-                    players[id].terminateAI();
-                    try {
-                        players[id].aiThread.join();
-                    } catch (InterruptedException ignored) {}
-                }
-                else if (delimiter == Player.playerThreadName.charAt(0)) {
-                    players[id].terminate();
-                    while (players[id].playerThread.isAlive()) {
-                        synchronized (this) {
-                            notifyAll();
-                        }
-                        synchronized (table) {
-                            table.notifyAll();
-                        }
-                        synchronized (bothQueues) {
-                            bothQueues.notifyAll();
-                        }
-                    }
-                }
+        long deadline = System.nanoTime() + shutdownTimeoutMS * 1_000_000;
+        ShutdownHandle handle;
+        while ((handle = fairnessTerminatingSequence.pollLast()) != null) {
+            handle.cancel();
+            try {
+                if (!handle.awaitTermination(deadline))
+                    env.logger.log(Level.WARNING, "Thread " + handle.thread().getName() + " did not stop in time.");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // stop waiting, but still cancel the rest
+                deadline = System.nanoTime();
             }
         }
     }
@@ -162,12 +464,56 @@ public class Dealer implements Runnable {
      * @return true if there is no set in deck
      */
     private boolean checkDeckAndTable() {
-        List<Integer> tempDeck = new LinkedList<>(deck);
+        return noSetIn(deckAndTableCards());
+    }
+
+    /**
+     * Runs checkDeckAndTable without blocking the dealer thread when the search is expensive (see Util.cheapAnySet),
+     * and terminates the game once it turns out that no set is left. The result can't go stale: cards only leave the
+     * deck and table from here on, so once there is no set there never will be one again.
+     */
+    private void checkDeckAndTableInBackground() {
+        int size = deckAndTableCards();
+        if (env.config.deterministic || env.util.cheapAnySet(size)) {
+            if (noSetIn(size)) terminate();
+            return;
+        }
+        List<Integer> cards = gameCardList(size);
+        CompletableFuture.supplyAsync(() -> env.util.findSetsParallel(cards, 1).isEmpty())
+                .thenAccept(noSetsLeft -> { if (noSetsLeft) terminate(); });
+    }
+
+    /**
+     * Looks the sets up in the set catalog when there is one (see Util.cheapAnySet), and otherwise searches the
+     * combinations of the cards on all the cores.
+     * @param size the number of cards in gameCards to search.
+     * @return true if there is no set among them.
+     */
+    private boolean noSetIn(int size) {
+        if (env.util.cheapAnySet(size)) return !env.util.anySet(gameCards, size);
+        return env.util.findSetsParallel(gameCardList(size), 1).isEmpty();
+    }
+
+    /**
+     * @param size the number of cards in gameCards.
+     * @return a copy of the first size cards of gameCards.
+     */
+    private List<Integer> gameCardList(int size) {
+        List<Integer> cards = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) cards.add(gameCards[i]);
+        return cards;
+    }
+
+    /**
+     * Collects all the cards that are still in the game (in the deck or on the table) into gameCards.
+     * @return the number of cards collected.
+     */
+    private int deckAndTableCards() {
+        int size = deck.copyTo(gameCards, 0);
         for (int i = 0; i < env.config.tableSize; i++)
             if (table.slotToCard[i] != null)
-                tempDeck.add(table.slotToCard[i]);
-
-        return env.util.findSets(tempDeck, 1).size() == 0;
+                gameCards[size++] = table.slotToCard[i];
+        return size;
     }
 
     /**
@@ -175,11 +521,17 @@ public class Dealer implements Runnable {
      */
     private void removeCardsFromTable() {
 
-        while(!terminate && !foundSet && ((System.currentTimeMillis() < reshuffleTime && !reverseTimer) || reverseTimer && System.currentTimeMillis() >= reshuffleTime)){
+        while(!terminate && !foundSet && turnIsRunning()){
             checkNextSet();
             updateTimerDisplay(false);
         }
+        collectFoundSet();
+    }
 
+    /**
+     * Removes the set that was found (if any) from the table and deals new cards instead.
+     */
+    private void collectFoundSet() {
         if(foundSet){
             placedCards = false;
             for (Player p : players) {
@@ -189,58 +541,26 @@ public class Dealer implements Runnable {
 
             }
             table.removeCardsAndTokensInSlots(currCardSlots);
-            Iterator<int[]> fairnessQueuesIterator = fairnessQueueCardsSlots.iterator();
-            boolean[] keepOrNot = new boolean[fairnessQueueCardsSlots.size()];
-            for (boolean b : keepOrNot)
-                b = false;
-            int currPlaceInQueue = 0;
-            while (fairnessQueuesIterator.hasNext()) {
-                int[] currCardSlotSet = fairnessQueuesIterator.next();
-                for (int currCardSlot : currCardSlots) {
-                    for (int k : currCardSlotSet) {
-                        if (currCardSlot == k) {
-                            keepOrNot[currPlaceInQueue] = false;
-                            break;
-                        }
-                    }
-                }
-                currPlaceInQueue++;
-            }
-            filterQueues(keepOrNot);
+            discardClaimsOnSlots(currCardSlots);
             foundSet = false;
             placeCardsOnTable();
             updateTimerDisplay(true);
-            if (checkDeckAndTable())
-                terminate = true;
+            checkDeckAndTableInBackground();
         }
     }
 
     /**
-     * filters all players which have tokens on current set
-     * @param keepOrNot an array that tells if player stays in the queue or not
+     * Drops the claims waiting in the queue that use the given slots (their cards are about to change).
+     * @param slots the slots that are being cleared.
      */
-    private void filterQueues(boolean[] keepOrNot) {
-        synchronized (bothQueues) {
-            LinkedBlockingQueue<int[]> queue1 = new LinkedBlockingQueue<>();
-            LinkedBlockingQueue<Player> queue2 = new LinkedBlockingQueue<>();
-            int size = fairnessQueueCardsSlots.size();
-            for (int i = 0; i < size; i++) {
-                try {
-                    if (keepOrNot[i]) {
-                        queue1.add(fairnessQueueCardsSlots.remove());
-                        queue2.add(fairnessQueuePlayers.remove());
-                    } else {
-                        fairnessQueueCardsSlots.remove();
-                        fairnessQueuePlayers.remove();
-                    }
-                } catch (ArrayIndexOutOfBoundsException ignored) {}
-            }
-            size = queue1.size();
-            for (int i = 0; i < size; i++) {
-                fairnessQueueCardsSlots.add(queue1.remove());
-                fairnessQueuePlayers.add(queue2.remove());
+    private void discardClaimsOnSlots(int[] slots) {
+        for (Claim claim : claims) {
+            for (int slot : slots) {
+                if (claim.uses(slot)) {
+                    if (claims.remove(claim)) discard(claim);
+                    break;
+                }
             }
-            bothQueues.notifyAll();
         }
     }
 
@@ -250,21 +570,124 @@ public class Dealer implements Runnable {
      */
     private void placeCardsOnTable() {
         if (terminate) return;
-        int min = 0;
+        if (reverseTimer) placeCardsGuaranteeingSet();
         for (int i = 0; i < env.config.tableSize; i++) {
-            if (table.slotToCard[i] == null) {
-                int max = deck.size() - 1;
-                int random_num = (int)Math.floor(Math.random()*(max-min+1)+min);
-                Integer card = null;
-                try {
-                    card = deck.remove(random_num);
-                } catch (IndexOutOfBoundsException ignored) {}
-                if (card != null)
-                    table.placeCard(card, i);
+            if (table.slotToCard[i] == null && !deck.isEmpty()) {
+                int card = deck.drawRandom();
+                table.placeCard(card, i);
+                GameEvents.cardDealt(card, i, deck.size());
             }
         }
         placedCards = true;
     }
+
+    /**
+     * Used when there is no countdown (bonus 3): before the empty slots are filled randomly, deals the deck cards that
+     * complete a legal set on the table. Table cards are swapped back into the deck only if there are not enough empty
+     * slots, so the whole table is reshuffled only when no set is left in the table and deck together.
+     */
+    private void placeCardsGuaranteeingSet() {
+        int size = 0;
+        List<Integer> emptySlots = new ArrayList<>();
+        for (int i = 0; i < env.config.tableSize; i++) {
+            Integer card = table.slotToCard[i];
+            if (card == null) emptySlots.add(i);
+            else tableCards[size++] = card;
+        }
+        if (env.util.anySet(tableCards, size)) return;
+
+        int[] set = findSetToDeal(size);
+        if (set == null) return; // no legal set left at all, the game is about to end
+
+        List<Integer> toDeal = new ArrayList<>();
+        for (int card : set)
+            if (deck.contains(card)) toDeal.add(card);
+
+        if (toDeal.size() > emptySlots.size()) {
+            // not enough room - swap out table cards that are not part of the set
+            int[] swapped = new int[toDeal.size() - emptySlots.size()];
+            int swappedCount = 0;
+            for (int i = 0; i < env.config.tableSize && swappedCount < swapped.length; i++) {
+                Integer card = table.slotToCard[i];
+                if (card != null && Arrays.stream(set).noneMatch(c -> c == card))
+                    swapped[swappedCount++] = i;
+            }
+            placedCards = false;
+            for (Player p : players) {
+                p.removeCardSlotsFromIncomingActionsQueue(swapped);
+                p.removeMyTokens(swapped);
+            }
+            for (int slot : swapped) {
+                deck.add(table.slotToCard[slot]);
+                table.removeCard(slot);
+                emptySlots.add(slot);
+            }
+            discardClaimsOnSlots(swapped);
+            updateTimerDisplay(true);
+        }
+
+        for (int i = 0; i < toDeal.size(); i++) {
+            int card = toDeal.get(i);
+            deck.remove(card);
+            table.placeCard(card, emptySlots.get(i));
+            GameEvents.cardDealt(card, emptySlots.get(i), deck.size());
+        }
+    }
+
+    /**
+     * Looks for a legal set in the table and deck together that needs as few deck cards as possible.
+     * First tries to complete claimSize - 1 table cards with a single deck card (using the deck index), and only
+     * then searches all of the remaining cards.
+     * @param size the number of cards on the table (in tableCards), none of which form a set.
+     * @return the cards of the set found, or null if there is none.
+     */
+    private int[] findSetToDeal(int size) {
+        int r = env.config.claimSize;
+        if (r >= 2 && size >= r - 1) {
+            int[] combination = new int[r - 1];
+            int[] partial = new int[r - 1];
+            for (int i = 0; i < r - 1; i++) combination[i] = i;
+            while (true) {
+                for (int i = 0; i < r - 1; i++) partial[i] = tableCards[combination[i]];
+                int completion = env.util.completeSet(partial, r - 1);
+                if (completion >= 0 && deck.contains(completion)) {
+                    int[] set = Arrays.copyOf(partial, r);
+                    set[r - 1] = completion;
+                    return set;
+                }
+                int t = r - 2;
+                while (t >= 0 && combination[t] == size - r + 1 + t) --t;
+                if (t < 0) break;
+                combination[t]++;
+                for (int i = t + 1; i < r - 1; i++) combination[i] = combination[i - 1] + 1;
+            }
+        }
+
+        int[] cards = Arrays.copyOf(tableCards, size + deck.size());
+        deck.copyTo(cards, size);
+        int[][] best = new int[1][];
+        int[] bestFromDeck = {Integer.MAX_VALUE};
+        env.util.forEachSet(cards, cards.length, set -> {
+            int fromDeck = 0;
+            for (int card : set)
+                if (deck.contains(card)) fromDeck++;
+            if (fromDeck < bestFromDeck[0]) {
+                bestFromDeck[0] = fromDeck;
+                best[0] = set.clone();
+            }
+            return fromDeck > 1;
+        });
+        return best[0];
+    }
+
+    /**
+     * @return the time the dealer waits between checks when nothing wakes it up (the table delay in effect now).
+     */
+    private long tableDelayMillis() {
+        long delay = env.config.timing().tableDelayMillis;
+        return delay > 0 ? delay : practicallyZeroMS;
+    }
+
     /**
      * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
      */
@@ -273,7 +696,7 @@ public class Dealer implements Runnable {
         synchronized (bothQueues){
             try {
                 if (!terminate)
-                    bothQueues.wait(env.config.tableDelayMillis > 0 ? env.config.tableDelayMillis : practicallyZeroMS);
+                    bothQueues.wait(tableDelayMillis());
                 bothQueues.notifyAll();
             } catch (InterruptedException ignored) {}
         }
@@ -284,19 +707,26 @@ public class Dealer implements Runnable {
      */
     private void updateTimerDisplay(boolean reset) {
         if (terminate) return;
+        if (reset && resumedTurnMillis != noResumedTurn) {
+            // the first turn of a resumed game continues the countdown of the checkpoint
+            reshuffleTime = reverseTimer ? currentTimeMillis() - resumedTurnMillis : currentTimeMillis() + resumedTurnMillis;
+            resumedTurnMillis = noResumedTurn;
+            reset = false;
+        }
         if (!reverseTimer) {
             if (reset) {
-                env.ui.setCountdown(env.config.turnTimeoutMillis, false);
-                reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
+                long turnTimeout = env.config.timing().turnTimeoutMillis; // a reloaded timeout applies from a new turn
+                env.ui.setCountdown(turnTimeout, false);
+                reshuffleTime = currentTimeMillis() + turnTimeout;
             } else
-                env.ui.setCountdown((reshuffleTime - System.currentTimeMillis() > practicallyZeroMS) ? reshuffleTime - System.currentTimeMillis() : actualZero, reshuffleTime - System.currentTimeMillis() < env.config.turnTimeoutWarningMillis);
+                env.ui.setCountdown((reshuffleTime - currentTimeMillis() > practicallyZeroMS) ? reshuffleTime - currentTimeMillis() : actualZero, reshuffleTime - currentTimeMillis() < env.config.turnTimeoutWarningMillis);
         }
         else {
             if (reset) {
-                reshuffleTime = System.currentTimeMillis();
+                reshuffleTime = currentTimeMillis();
             }
             if (env.config.turnTimeoutMillis == 0)
-                env.ui.setElapsed(System.currentTimeMillis() - reshuffleTime);
+                env.ui.setElapsed(currentTimeMillis() - reshuffleTime);
         }
     }
 
@@ -306,67 +736,168 @@ public class Dealer implements Runnable {
      */
     private void removeAllCardsFromTable() {
         placedCards = false;
+        int returned = 0;
         for(int i = 0; i < env.config.tableSize; i++) {
             Integer cardValue = table.slotToCard[i];
-            if (cardValue != null)
+            if (cardValue != null) {
                 deck.add(cardValue);
+                returned++;
+            }
             for(Player p : players){
                 if (p.getTokenOnSlot()[i])
                     p.removeMyTokens(new int[]{i});
             }
             table.removeCard(i);
         }
-        fairnessQueueCardsSlots.clear();
-        fairnessQueuePlayers.clear();
+        Claim claim;
+        while ((claim = claims.poll()) != null)
+            discard(claim);
+        GameEvents.reshuffle(returned, deck.size());
     }
 
     /**
-     * receives a set from player
+     * Releases the player of a claim that will not be judged (its cards left the table).
+     * @param claim the claim, already removed from the queue.
+     */
+    private void discard(Claim claim) {
+        reportVerdict(claim.player().id, GameEvents.DISCARDED, claimStamp() - claim.stampNanos(), false);
+        claim.judged();
+    }
+
+    /**
+     * Reports the verdict of a claim: as an event (see GameEvents.claimJudged) and as a line of the log, which
+     * LogAnalytics counts the claims and penalties by (a penalty is not always a freeze, see PenaltyFreezeSeconds).
+     * @param player         the player id.
+     * @param verdict        one of the verdicts of GameEvents.
+     * @param queueWaitNanos the time from the claim's stamp until it was judged.
+     * @param confirmed      true iff the claim was confirmed by the table version, without checking the cards.
+     */
+    void reportVerdict(int player, String verdict, long queueWaitNanos, boolean confirmed) {
+        GameEvents.claimJudged(player, verdict, queueWaitNanos, confirmed);
+        env.logger.severe("player " + (player + 1) + " claim judged: " + verdict);
+    }
+
+    /**
+     * The time to stamp a claim with: System.nanoTime(), or the simulated clock when stepping deterministically.
+     * @return the current time in nanoseconds.
+     */
+    public long claimStamp() {
+        return env.config.deterministic ? simulatedTimeMillis * 1_000_000 : System.nanoTime();
+    }
+
+    /**
+     * Receives a set from a player, and waits until the dealer judged it. Submitting takes no lock the other players
+     * wait for: the claim goes into a concurrent queue ordered by stamp, and the player then waits on its own claim.
      * @param p player
      * @param cardSlots slots of the set
+     * @param stampNanos the time the player placed its last token (see claimStamp).
+     * @param version the version of the table the player found the set legal at, or Table.noVersion if it could not
+     *                check it.
      */
-    public void iGotASet(Player p, int[] cardSlots) {
+    public void iGotASet(Player p, int[] cardSlots, long stampNanos, long version) {
+        Claim claim = new Claim(p, cardSlots, stampNanos, claimsReceived.getAndIncrement(), version);
+        GameEvents.claimSubmitted(p.id, cardSlots, stampNanos, version);
+        claims.add(claim);
+        if (env.config.deterministic) return; // judged by the dealer later in this turn
         synchronized (bothQueues) {
-            fairnessQueueCardsSlots.add(cardSlots);
-            fairnessQueuePlayers.add(p);
-            try {
-                if (!fairnessQueuePlayers.isEmpty()) {
-                    bothQueues.wait();
-                }
-            } catch (InterruptedException ignored) {}
             bothQueues.notifyAll();
         }
+        claim.awaitJudgement();
     }
 
     /**
-     * checks the next set in queue
+     * Judges the claim with the earliest stamp. A claim is only judged once the arbitration window passed since its
+     * stamp, so that a claim stamped earlier whose player was delayed between placing the token and submitting (e.g.
+     * descheduled under load) still comes first. Waits for the next claim (up to the table delay) if there is none.
      */
     private void checkNextSet() {
-        try {
-            int[] cardSlots;
-            Player p;
-            synchronized (bothQueues){
-                cardSlots = fairnessQueueCardsSlots.remove();
-                p = fairnessQueuePlayers.remove();
-                bothQueues.notifyAll();
-            }
-            currCardSlots = cardSlots;
-            int[] cardsAsArray = new int[cardSlots.length];
-            for (int i = 0; i < cardSlots.length; i++) {
-                Integer temp = table.slotToCard[cardSlots[i]];
-                if (temp != null)
-                    cardsAsArray[i] = temp;
-            }
-            if (env.util.testSet(cardsAsArray))
-            {
-                p.sendMessage(Player.Message.POINT);
-                foundSet = true;
-                p.removeMyTokens(cardSlots);
-            } else {
-                p.sendMessage(Player.Message.PENALTY);
-                foundSet = false;
+        Claim claim = claims.peek();
+        if (!env.config.deterministic) {
+            long wait = claim == null ? TimeUnit.MILLISECONDS.toNanos(tableDelayMillis())
+                    : claim.stampNanos() + TimeUnit.MILLISECONDS.toNanos(env.config.claimWindowMillis) - System.nanoTime();
+            if (wait > 0) {
+                synchronized (bothQueues) {
+                    try {
+                        if (!terminate)
+                            TimeUnit.NANOSECONDS.timedWait(bothQueues, wait);
+                    } catch (InterruptedException ignored) {}
+                }
+                return;
             }
-        } catch (NoSuchElementException ignored) {}
+        }
+        claim = claims.poll();
+        if (claim == null) return;
+
+        long delay = claimStamp() - claim.stampNanos();
+        totalArbitrationDelayNanos += delay;
+        maxArbitrationDelayNanos = Math.max(maxArbitrationDelayNanos, delay);
+        claimsJudged++;
+
+        int[] cardSlots = claim.slots();
+        Player p = claim.player();
+        currCardSlots = cardSlots;
+        long confirmed = claimsConfirmed;
+        if (isLegal(claim))
+        {
+            p.sendMessage(Player.Message.POINT);
+            foundSet = true;
+            p.removeMyTokens(cardSlots);
+        } else {
+            p.sendMessage(Player.Message.PENALTY);
+            foundSet = false;
+        }
+        reportVerdict(p.id, foundSet ? GameEvents.SET : GameEvents.NOT_A_SET, delay, claimsConfirmed != confirmed);
+        claim.judged();
+    }
+
+    /**
+     * A claim the player already found legal is confirmed as long as the table did not change since; otherwise the
+     * cards are read and checked again.
+     * @param claim the claim to judge.
+     * @return true iff the claimed cards form a legal set.
+     */
+    private boolean isLegal(Claim claim) {
+        if (claim.version() != Table.noVersion && claim.version() == table.version()) {
+            claimsConfirmed++;
+            return true;
+        }
+        int[] cardSlots = claim.slots();
+        int[] cardsAsArray = new int[cardSlots.length];
+        for (int i = 0; i < cardSlots.length; i++) {
+            Integer temp = table.slotToCard[cardSlots[i]];
+            if (temp != null)
+                cardsAsArray[i] = temp;
+        }
+        return env.util.testSet(cardsAsArray);
+    }
+
+    /**
+     * @return the number of claims judged so far.
+     */
+    public long claimsJudged() {
+        return claimsJudged;
+    }
+
+    /**
+     * @return the number of claims judged only by checking that the table did not change since the player checked them.
+     */
+    public long claimsConfirmed() {
+        return claimsConfirmed;
+    }
+
+    /**
+     * @return the mean time from the stamp of a claim until the dealer judged it, in nanoseconds (0 if none was).
+     */
+    public long meanArbitrationDelayNanos() {
+        long judged = claimsJudged;
+        return judged == 0 ? 0 : totalArbitrationDelayNanos / judged;
+    }
+
+    /**
+     * @return the longest time from the stamp of a claim until the dealer judged it, in nanoseconds.
+     */
+    public long maxArbitrationDelayNanos() {
+        return maxArbitrationDelayNanos;
     }
 
     /**
@@ -374,21 +905,14 @@ public class Dealer implements Runnable {
      * @return true if there are sets on table
      */
     private boolean checkIfSetExists() {
-        List<Integer> currentTable = new LinkedList<>();
-        Collections.addAll(currentTable, table.slotToCard);
-        for(int i = 0; i < env.config.tableSize; i++){
-            if(table.slotToCard[i] == null){
-                return true;
-            }
-        }
-        List<int[]> sets = env.util.findSets(currentTable,1);
-        return !sets.isEmpty();
+        return checkTableForSets();
     }
 
     /**
      * Check who is/are the winner/s and displays them.
+     * @return the ids of the winners.
      */
-    private void announceWinners() {
+    private int[] announceWinners() {
         // collect winning players
         List<Integer> potentialWinners = new Vector<>();
         int maxScore = -1;
@@ -409,29 +933,42 @@ public class Dealer implements Runnable {
         }
         terminate();
         env.ui.announceWinner(winners);
+        return winners;
     }
 
     /**
      * Helper method used by player and ai threads to tell the dealer they have started their run, used for
-     * bonus 2.
+     * bonus 2. The thread is only interrupted when the game ends.
      * @pre int size = fairnessTerminatingSequence.size()
      * @post fairnessTerminatingSequence.size() == size + 1
      */
     public void iStarted() {
-        fairnessTerminatingSequence.add(Thread.currentThread());
+        iStarted(() -> {});
     }
 
+    /**
+     * Helper method used by player and ai threads to tell the dealer they have started their run, used for
+     * bonus 2.
+     * @param cancel tells the calling thread's loop to stop (run by the dealer when the game ends).
+     * @pre int size = fairnessTerminatingSequence.size()
+     * @post fairnessTerminatingSequence.size() == size + 1
+     */
+    public void iStarted(Runnable cancel) {
+        fairnessTerminatingSequence.add(new ShutdownHandle(Thread.currentThread(), cancel));
+    }
+
+    /**
+     * checks if there is a set on the table, an empty slot counts as a possible set.
+     * Runs in the dealer's main loop, so it reuses tableCards instead of allocating.
+     * @return true if there are sets on table
+     */
     private boolean checkTableForSets() {
-        List<Integer> temp = new LinkedList<>(Arrays.asList(table.slotToCard));
-        boolean nullPresent = false;
-        for (Integer i : temp)
-            if (i == null) {
-                nullPresent = true;
-                break;
-            }
-        if (nullPresent) return true;
-        List<int[]> output = env.util.findSets(temp, 1);
-        return output.size() > 0;
+        int size = 0;
+        for (Integer card : table.slotToCard) {
+            if (card == null) return true;
+            tableCards[size++] = card;
+        }
+        return env.util.anySet(tableCards, size);
     }
 
     /**
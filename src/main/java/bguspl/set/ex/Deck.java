@@ -0,0 +1,174 @@
+package bguspl.set.ex;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * This class holds the cards that are left in the dealer's deck.
+ * Drawing (a random card or a specific one), returning a card and checking whether a card is in the deck all take
+ * O(1), no matter how large the deck is.
+ *
+ * @inv 0 <= size() <= capacity
+ * @inv contains(c) iff cards[indexOf[c]] == c and indexOf[c] < size()
+ */
+public class Deck {
+
+    /**
+     * Marks a card that is not in the deck (in indexOf).
+     */
+    private static final int NOT_IN_DECK = -1;
+
+    /**
+     * The card ids in the deck, only the first size entries are used.
+     */
+    private final int[] cards;
+
+    /**
+     * Mapping between a card and its index in cards (NOT_IN_DECK if none).
+     */
+    private final int[] indexOf;
+
+    /**
+     * Marks the cards that are currently in the deck.
+     */
+    private final BitSet present;
+
+    /**
+     * The number of cards in the deck.
+     */
+    private int size;
+
+    /**
+     * The random number generator used for drawing cards (one per game).
+     */
+    private final SplitMix64 random;
+
+    /**
+     * Creates a full deck.
+     *
+     * @param deckSize - the number of cards in a full deck (card ids are 0 to deckSize - 1).
+     * @param random   - the random number generator used for drawing cards.
+     */
+    public Deck(int deckSize, SplitMix64 random) {
+        this.random = random;
+        cards = new int[deckSize];
+        indexOf = new int[deckSize];
+        present = new BitSet(deckSize);
+        for (int card = 0; card < deckSize; ++card) {
+            cards[card] = card;
+            indexOf[card] = card;
+        }
+        present.set(0, deckSize);
+        size = deckSize;
+    }
+
+    /**
+     * Creates a deck with the given cards (e.g. restored from a checkpoint).
+     *
+     * @param deckSize - the number of cards in a full deck (card ids are 0 to deckSize - 1).
+     * @param random   - the random number generator used for drawing cards.
+     * @param cards    - the cards in the deck, in the deck's order.
+     */
+    public Deck(int deckSize, SplitMix64 random, int[] cards) {
+        this.random = random;
+        this.cards = new int[deckSize];
+        indexOf = new int[deckSize];
+        Arrays.fill(indexOf, NOT_IN_DECK);
+        present = new BitSet(deckSize);
+        for (int card : cards)
+            add(card);
+    }
+
+    /**
+     * @return - the random number generator used for drawing cards (its state is saved in checkpoints).
+     */
+    public SplitMix64 random() {
+        return random;
+    }
+
+    /**
+     * @return - the number of cards in the deck.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return - true iff there are no cards in the deck.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param card - a card id.
+     * @return - true iff the card is in the deck.
+     */
+    public boolean contains(int card) {
+        return present.get(card);
+    }
+
+    /**
+     * @param index - an index between 0 and size() - 1.
+     * @return - the card in the given index (the order of the cards changes as cards are drawn).
+     */
+    public int get(int index) {
+        return cards[index];
+    }
+
+    /**
+     * Copies all the cards in the deck to the given array.
+     *
+     * @param dest   - the array to copy to.
+     * @param offset - the index in dest of the first card.
+     * @return - the index in dest after the last card copied.
+     */
+    public int copyTo(int[] dest, int offset) {
+        System.arraycopy(cards, 0, dest, offset, size);
+        return offset + size;
+    }
+
+    /**
+     * Removes a random card from the deck.
+     *
+     * @return - the card drawn, or -1 if the deck is empty.
+     * @post - the card is not in the deck.
+     */
+    public int drawRandom() {
+        if (size == 0) return NOT_IN_DECK;
+        int card = cards[random.nextInt(size)];
+        remove(card);
+        return card;
+    }
+
+    /**
+     * Removes a specific card from the deck, by moving the last card into its place.
+     *
+     * @param card - the card to remove.
+     * @return - true iff the card was in the deck.
+     * @post - the card is not in the deck.
+     */
+    public boolean remove(int card) {
+        if (!present.get(card)) return false;
+        int index = indexOf[card];
+        int last = cards[--size];
+        cards[index] = last;
+        indexOf[last] = index;
+        indexOf[card] = NOT_IN_DECK;
+        present.clear(card);
+        return true;
+    }
+
+    /**
+     * Returns a card to the deck.
+     *
+     * @param card - the card to return.
+     * @post - the card is in the deck.
+     */
+    public void add(int card) {
+        if (present.get(card)) return;
+        cards[size] = card;
+        indexOf[card] = size++;
+        present.set(card);
+    }
+}
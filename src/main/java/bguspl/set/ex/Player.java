@@ -1,10 +1,11 @@
 package bguspl.set.ex;
 
-import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Level;
 
 import bguspl.set.Env;
+import bguspl.set.GameEvents;
+import bguspl.set.TimerWheel;
 
 /**
  * This class manages the players' threads and data
@@ -66,6 +67,20 @@ public class Player implements Runnable {
      */
     private int score;
 
+    /**
+     * The number of the player's claims judged and penalized, and the total time from their stamps until the player got
+     * the verdict (recorded in the player statistics at the end of the game). Written only by the player thread.
+     */
+    private volatile int claimsJudged;
+    private volatile int penalties;
+    private volatile long claimLatencyNanos;
+
+    /**
+     * The stamp of the claim waiting for a verdict (noStamp if none).
+     */
+    private static final long noStamp = Long.MIN_VALUE;
+    private long claimStampNanos = noStamp;
+
     /**
      * Used for dealer messages to the player.
      */
@@ -86,6 +101,7 @@ public class Player implements Runnable {
 
     /**
      * An array used to keep track of current tokens per slots.
+     * Changed under the table's monitor (see setToken), so the dealer can copy it whole (see copyTokens).
      */
     private final boolean[] tokenOnSlot;
 
@@ -94,12 +110,33 @@ public class Player implements Runnable {
      */
     private int tokensPlaced;
 
+    /**
+     * The random number generator of this player (used by the AI).
+     */
+    private final SplitMix64 random;
+
+    /**
+     * The time until which the player is frozen (0 if not frozen). Cleared by the unfreeze timer.
+     */
+    private volatile long frozenUntil;
+
+    /**
+     * The timers counting down the player's freeze (shared with the other players).
+     */
+    private final TimerWheel timers;
+
+    /**
+     * The next timer of the current freeze (either a countdown tick or the unfreeze).
+     */
+    private volatile TimerWheel.Timeout freezeTimer;
+
     /**
      * Magic number (and strings) removers.
      */
     private final int SECOND = 1000;
     private final int noFreeze = 0;
     private final int noTokens = 0;
+    private final int maxQueuedActions = 3;
     public static final String playerThreadName = "Player";
     public static final String aiThreadName = "Computer";
 
@@ -122,6 +159,10 @@ public class Player implements Runnable {
         messages = new ConcurrentLinkedQueue<>();
         tokenOnSlot = new boolean[env.config.tableSize];
         tokensPlaced = noTokens;
+        SplitMix64 dealerRandom = dealer != null ? dealer.playerRandom(id) : null;
+        random = dealerRandom != null ? dealerRandom : SplitMix64.unseeded();
+        TimerWheel dealerTimers = dealer != null ? dealer.timers() : null;
+        timers = dealerTimers != null ? dealerTimers : TimerWheel.shared();
     }
 
     /**
@@ -131,6 +172,23 @@ public class Player implements Runnable {
     public boolean[] getTokenOnSlot(){
         return tokenOnSlot;
     }
+
+    /**
+     * Copies the player's tokens under the table's monitor (like Table.snapshot), so a token placed or removed by the
+     * player's thread meanwhile can't leave the copy half changed.
+     * @return a copy of tokenOnSlot.
+     */
+    boolean[] copyTokens() {
+        synchronized (table) {
+            return tokenOnSlot.clone();
+        }
+    }
+
+    private void setToken(int slot, boolean token) {
+        synchronized (table) {
+            tokenOnSlot[slot] = token;
+        }
+    }
     /**
      * The main player thread of each player starts here (main loop for the player thread).
      */
@@ -138,49 +196,150 @@ public class Player implements Runnable {
     public void run() {
         synchronized (dealer) {
             env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + "starting.");
-            dealer.iStarted();
+            dealer.iStarted(this::terminate);
             dealer.notifyAll();
         }
         playerThread = Thread.currentThread();
         if (!human) createArtificialIntelligence();
         while (!terminate) {
+            step();
+            awaitWork();
+        }
+        env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
+    }
+
+    /**
+     * Blocks the player thread until there is something for it to do: a message from the dealer, or a key press
+     * while not frozen. Returns at once if the thread is interrupted (i.e. the game is over).
+     */
+    private void awaitWork() {
+        synchronized (incomingActions) {
             try {
-                if (!messages.isEmpty())
-                    checkMessage();
-                int nextAction;
-                synchronized (incomingActions){
-                    nextAction = incomingActions.remove();
-                    incomingActions.notifyAll();
-                }
+                while (!terminate && messages.isEmpty() && (incomingActions.isEmpty() || isFrozen()))
+                    incomingActions.wait();
+            } catch (InterruptedException ignored) {}
+        }
+    }
 
-                if (tokenOnSlot[nextAction]) {
-                    table.removeToken(id, nextAction);
-                    tokenOnSlot[nextAction] = false;
-                    if (tokensPlaced > noTokens)
-                        tokensPlaced--;
-                } else {
-                    if (tokensPlaced < env.config.featureSize & dealer.placedCards) {
-                        table.placeToken(id, nextAction);
-                        tokenOnSlot[nextAction] = true;
-                        if (++tokensPlaced == env.config.featureSize) {
-                            int[] currSetCardSlots = new int[env.config.featureSize];
-                            int cSCSInd = 0;
-                            for (int i = 0; i < tokenOnSlot.length; i++) {
-                                if (tokenOnSlot[i]) {
-                                    if (cSCSInd == env.config.featureSize)
-                                        break;
-                                    currSetCardSlots[cSCSInd] = i;
-                                    cSCSInd++;
-                                }
-                            }
-                            dealer.iGotASet(this, currSetCardSlots);
+    /**
+     * Handles the next message from the dealer and then the next key press, if there are any.
+     * Called in a loop by the player thread, or once per turn by the dealer when the game is stepped deterministically.
+     */
+    public void step() {
+        if (!messages.isEmpty())
+            checkMessage();
+        if (isFrozen())
+            return;
+        Integer nextAction;
+        synchronized (incomingActions){
+            nextAction = incomingActions.poll();
+            incomingActions.notifyAll();
+        }
+        if (nextAction == null)
+            return;
+
+        if (tokenOnSlot[nextAction]) {
+            table.removeToken(id, nextAction);
+            setToken(nextAction, false);
+            if (tokensPlaced > noTokens)
+                tokensPlaced--;
+        } else {
+            if (tokensPlaced < env.config.claimSize & dealer.placedCards) {
+                table.placeToken(id, nextAction);
+                setToken(nextAction, true);
+                if (++tokensPlaced == env.config.claimSize) {
+                    long stamp = dealer.claimStamp();
+                    int[] currSetCardSlots = new int[env.config.claimSize];
+                    int cSCSInd = 0;
+                    for (int i = 0; i < tokenOnSlot.length; i++) {
+                        if (tokenOnSlot[i]) {
+                            if (cSCSInd == env.config.claimSize)
+                                break;
+                            currSetCardSlots[cSCSInd] = i;
+                            cSCSInd++;
                         }
                     }
+                    // check the set here, in parallel with the other players, and only bother the dealer with
+                    // sets that are legal (or could not be checked because a card is missing)
+                    int[] cards = new int[currSetCardSlots.length];
+                    long version = table.snapshot(currSetCardSlots, cards);
+                    claimStampNanos = stamp;
+                    if (version != Table.noVersion && !env.util.testSet(cards)) {
+                        dealer.reportVerdict(id, GameEvents.REJECTED_BY_PLAYER, dealer.claimStamp() - stamp, false);
+                        claimJudged(false);
+                        penalty();
+                    }
+                    else
+                        dealer.iGotASet(this, currSetCardSlots, stamp, version);
                 }
+            }
+        }
+    }
 
-            } catch (NoSuchElementException ignored) {}
+    /**
+     * @return true iff the player is frozen (its key presses wait until the freeze is over).
+     */
+    private boolean isFrozen() {
+        return frozenUntil != noFreeze;
+    }
+
+    /**
+     * Freezes the player. The player thread is not held up: the countdown shown and the unfreeze are driven by the
+     * timer wheel, and meanwhile the player only skips its key presses.
+     * @param millis the freeze time in milliseconds.
+     * @post - the player is frozen iff millis > 0.
+     */
+    private void freezeFor(long millis) {
+        TimerWheel.Timeout previous = freezeTimer;
+        if (previous != null)
+            previous.cancel();
+        if (millis <= noFreeze) {
+            frozenUntil = noFreeze;
+            env.ui.setFreeze(id, noFreeze);
+            return;
+        }
+        long until = now() + millis;
+        frozenUntil = until;
+        env.ui.setFreeze(id, millis);
+        scheduleFreezeTick(until, millis);
+    }
+
+    /**
+     * Schedules the next change of the freeze shown (every whole second left), or the unfreeze.
+     * @param until     the end of the freeze.
+     * @param remaining the freeze time shown now.
+     */
+    private void scheduleFreezeTick(long until, long remaining) {
+        long next = (remaining - 1) / SECOND * SECOND;
+        freezeTimer = timers.schedule(until - next, () -> freezeTick(until, next));
+    }
+
+    /**
+     * Called by the timer wheel: shows the freeze time left, or unfreezes the player when it is over.
+     * @param until     the end of the freeze the timer belongs to.
+     * @param remaining the freeze time left.
+     */
+    private void freezeTick(long until, long remaining) {
+        if (frozenUntil != until)
+            return; // the player was frozen again since
+        if (remaining > noFreeze) {
+            env.ui.setFreeze(id, remaining);
+            scheduleFreezeTick(until, remaining);
+            return;
+        }
+        frozenUntil = noFreeze;
+        env.ui.setFreeze(id, noFreeze);
+        GameEvents.freezeEnd(id);
+        synchronized (incomingActions) {
+            incomingActions.notifyAll();
         }
-        env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
+    }
+
+    /**
+     * @return the game's current time (the simulated one when the game is stepped deterministically).
+     */
+    private long now() {
+        return env.config.deterministic ? dealer.currentTimeMillis() : System.currentTimeMillis();
     }
 
     /**
@@ -192,12 +351,18 @@ public class Player implements Runnable {
         aiThread = new Thread(() -> {
             synchronized (dealer) {
                 env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " starting.");
-                dealer.iStarted();
+                dealer.iStarted(this::terminateAI);
                 dealer.notifyAll();
             }
-            while (!terminateAI) {
-                keyPressSimulator();
-            }
+            try {
+                while (!terminateAI) {
+                    synchronized (incomingActions) {
+                        while (incomingActions.size() >= maxQueuedActions && !terminateAI)
+                            incomingActions.wait();
+                    }
+                    keyPressSimulator();
+                }
+            } catch (InterruptedException ignored) {}
             env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
         }, aiThreadName + "-" + id);
         aiThread.start();
@@ -207,7 +372,15 @@ public class Player implements Runnable {
      * Helper method called from aiThread's run() to generate proper slots.
      */
     private void keyPressSimulator() {
-        keyPressed(((int)Math.floor(Math.random() * env.config.tableSize)));
+        keyPressed(random.nextInt(env.config.tableSize));
+    }
+
+    /**
+     * Generates a single key press if this is a computer player (used instead of the AI thread when the game is
+     * stepped deterministically).
+     */
+    public void simulateKeyPress() {
+        if (!human) keyPressSimulator();
     }
     /**
      * Called when the player thread should be terminated at the end of the game, whether by an external event,
@@ -248,7 +421,7 @@ public class Player implements Runnable {
     public void keyPressed(int slot) {
 
         if (slotIsNull(slot)) return;
-        if (incomingActions.size() < 3) {
+        if (incomingActions.size() < maxQueuedActions) {
             synchronized (incomingActions){
                 if(dealer.placedCards){
                     incomingActions.add(slot);
@@ -276,15 +449,10 @@ public class Player implements Runnable {
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
 
         env.ui.setScore(id, ++score);
-        env.ui.setFreeze(id,env.config.pointFreezeMillis);
-        synchronized (this){
-            try {
-                wait((env.config.pointFreezeMillis > noFreeze) ? env.config.pointFreezeMillis : 1);
-            } catch (InterruptedException ignored1) {}
-        }
-        env.ui.setFreeze(id,noFreeze);
-
-
+        long freeze = env.config.timing().pointFreezeMillis;
+        if (freeze > noFreeze)
+            GameEvents.freezeStart(id, freeze, false);
+        freezeFor(freeze);
     }
 
     /**
@@ -306,9 +474,11 @@ public class Player implements Runnable {
     private void checkMessage() {
         Message m = messages.remove();
         if (m == Message.PENALTY) {
+            claimJudged(false);
             penalty();
         }
         else if (m == Message.POINT) {
+            claimJudged(true);
             point();
         }
         else {
@@ -321,15 +491,14 @@ public class Player implements Runnable {
      *  @post - score() == currScore
      */
     public void penalty() {
-        incomingActions.clear();
-        for (long counter = env.config.penaltyFreezeMillis; counter >= noFreeze; counter -= SECOND)
-            try {
-                env.ui.setFreeze(id,counter);
-                if (counter > noFreeze)
-                    synchronized (this) {
-                        wait(counter > SECOND ? SECOND : env.config.penaltyFreezeMillis % SECOND);
-                    }
-            } catch (InterruptedException ignored1) {}
+        synchronized (incomingActions) {
+            incomingActions.clear();
+            incomingActions.notifyAll();
+        }
+        long freeze = env.config.timing().penaltyFreezeMillis;
+        if (freeze > noFreeze)
+            GameEvents.freezeStart(id, freeze, true);
+        freezeFor(freeze);
     }
 
     /**
@@ -342,7 +511,7 @@ public class Player implements Runnable {
                 if (tokenOnSlot[slotId]) {
                     table.removeToken(id, slotId);
                     tokensPlaced = (tokensPlaced >= noTokens) ? tokensPlaced - 1 : tokensPlaced; //Only reduce tokensPlaced if it's above or at 0
-                    tokenOnSlot[slotId] = false;
+                    setToken(slotId, false);
                 }
             }
             incomingActions.notifyAll();
@@ -350,6 +519,28 @@ public class Player implements Runnable {
 
     }
 
+    /**
+     * Counts the verdict on the player's claim.
+     * @param legal true iff the claim was a legal set.
+     */
+    private void claimJudged(boolean legal) {
+        claimsJudged++;
+        if (!legal) penalties++;
+        if (claimStampNanos != noStamp) {
+            claimLatencyNanos += dealer.claimStamp() - claimStampNanos;
+            claimStampNanos = noStamp;
+        }
+    }
+
+    /**
+     * @param name the player's name.
+     * @param won  true iff the player won the game.
+     * @return the player's statistics of this game.
+     */
+    PlayerStats stats(String name, boolean won) {
+        return new PlayerStats(name, 1, won ? 1 : 0, score, penalties, claimsJudged, claimLatencyNanos);
+    }
+
     /**
      * Getter for the score variable.
      * @return the 'score' variable.
@@ -357,4 +548,44 @@ public class Player implements Runnable {
     public int score() {
         return score;
     }
+
+    /**
+     * @return the freeze time the player has left (0 if it is not frozen).
+     */
+    long freezeRemainingMillis() {
+        long until = frozenUntil;
+        return until == noFreeze ? noFreeze : Math.max(noFreeze, until - now());
+    }
+
+    /**
+     * @return the random number generator of this player (its state is saved in checkpoints).
+     */
+    SplitMix64 random() {
+        return random;
+    }
+
+    /**
+     * Restores the player's state from a checkpoint. Called by the dealer after the cards were placed back on the
+     * table, and before the player thread starts. A claim that was waiting for the dealer is not part of the
+     * checkpoint, so its tokens are not placed back (the player would not be able to claim them again).
+     * @param score        - the score.
+     * @param tokens       - the slots the player had tokens on.
+     * @param freezeMillis - the freeze time the player had left.
+     * @post - the tokens of an unfinished claim are back on the table, and the player is frozen iff freezeMillis > 0.
+     */
+    void restore(int score, boolean[] tokens, long freezeMillis) {
+        this.score = score;
+        env.ui.setScore(id, score);
+        int count = 0;
+        for (boolean token : tokens)
+            if (token) count++;
+        for (int slot = 0; count < env.config.claimSize && slot < tokens.length && slot < tokenOnSlot.length; slot++)
+            if (tokens[slot] && !tokenOnSlot[slot] && table.slotToCard[slot] != null) {
+                table.placeToken(id, slot);
+                setToken(slot, true);
+                tokensPlaced++;
+            }
+        if (freezeMillis > noFreeze)
+            freezeFor(freezeMillis);
+    }
 }
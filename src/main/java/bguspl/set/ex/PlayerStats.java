@@ -0,0 +1,77 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The lifetime statistics of a player (or the statistics of one game, when recorded). Immutable.
+ */
+public final class PlayerStats {
+
+    /**
+     * The player's name (see Config.playerNames), which identifies the player across games.
+     */
+    public final String name;
+
+    public final long games;
+    public final long wins;
+    public final long points;
+    public final long penalties;
+
+    /**
+     * The number of claims judged, and the total time from their stamps until the player got the verdict.
+     */
+    public final long claims;
+    public final long claimLatencyNanos;
+
+    /**
+     * The class constructor.
+     *
+     * @param name              - the player's name.
+     * @param games             - the number of games played.
+     * @param wins              - the number of games won (a shared first place is a win).
+     * @param points            - the number of legal sets claimed.
+     * @param penalties         - the number of penalties.
+     * @param claims            - the number of claims judged.
+     * @param claimLatencyNanos - the total time from the stamps of the claims until they were judged.
+     */
+    public PlayerStats(String name, long games, long wins, long points, long penalties, long claims,
+                       long claimLatencyNanos) {
+        this.name = name;
+        this.games = games;
+        this.wins = wins;
+        this.points = points;
+        this.penalties = penalties;
+        this.claims = claims;
+        this.claimLatencyNanos = claimLatencyNanos;
+    }
+
+    /**
+     * @param other - more statistics of the same player.
+     * @return - the statistics of both.
+     */
+    public PlayerStats plus(PlayerStats other) {
+        return new PlayerStats(name, games + other.games, wins + other.wins, points + other.points,
+                penalties + other.penalties, claims + other.claims, claimLatencyNanos + other.claimLatencyNanos);
+    }
+
+    /**
+     * @return - the part of the games the player won.
+     */
+    public double winRate() {
+        return games == 0 ? 0 : (double) wins / games;
+    }
+
+    /**
+     * @return - the mean time from the stamp of a claim until it was judged.
+     */
+    public long meanClaimLatencyNanos() {
+        return claims == 0 ? 0 : claimLatencyNanos / claims;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + games + " games, " + Math.round(100 * winRate()) + "% won, " + points + " points, "
+                + penalties + " penalties, mean claim latency "
+                + TimeUnit.NANOSECONDS.toMicros(meanClaimLatencyNanos()) + " us";
+    }
+}
@@ -0,0 +1,278 @@
+package bguspl.set.ex;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A local store of the players' lifetime statistics, kept in an append-only file.
+ * Every update appends the new totals of the players of a game in one write (the latest record of a player is the live
+ * one), and an in-memory index from player name to its live record is rebuilt from the file when it is opened. A
+ * record cut short by a crash is detected by its checksum and dropped. Once the file holds more dead records than live
+ * ones it is compacted: the live records are written to a new file which replaces the old one in one step.
+ * Safe for use by several dealers at once (e.g. the games of a tournament).
+ */
+public final class PlayerStatsStore implements Closeable {
+
+    /**
+     * "SETS", and the version of the format.
+     */
+    private static final int MAGIC = 0x53455453;
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = Integer.BYTES + 1;
+
+    /**
+     * The size of the length and the checksum before every record.
+     */
+    private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+
+    /**
+     * The file is not compacted before it reaches this size.
+     */
+    private static final long MIN_COMPACT_BYTES = 64 * 1024;
+
+    /**
+     * The live record of a player: its place in the file and the statistics it holds.
+     */
+    private static final class Entry {
+        final long offset;
+        final int size;
+        final PlayerStats stats;
+
+        Entry(long offset, int size, PlayerStats stats) {
+            this.offset = offset;
+            this.size = size;
+            this.stats = stats;
+        }
+    }
+
+    private final Path file;
+    private final Map<String, Entry> index = new HashMap<>();
+    private FileChannel channel;
+
+    /**
+     * The size of the file, and the size of the live records in it.
+     */
+    private long fileBytes;
+    private long liveBytes;
+
+    private PlayerStatsStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the store, creating the file if it does not exist, and rebuilds the index from it.
+     *
+     * @param file - the store's file.
+     * @return - the store.
+     * @throws IOException if the file can't be read or written, or is not a statistics store.
+     */
+    public static PlayerStatsStore open(Path file) throws IOException {
+        PlayerStatsStore store = new PlayerStatsStore(file.toAbsolutePath());
+        store.load();
+        return store;
+    }
+
+    private void load() throws IOException {
+        Path parent = file.getParent();
+        if (parent != null) Files.createDirectories(parent);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).put((byte) FORMAT);
+            header.flip();
+            channel.write(header, 0);
+            fileBytes = HEADER_BYTES;
+            return;
+        }
+
+        long offset = HEADER_BYTES;
+        // the stream is not closed, that would close the channel
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0))));
+        if (in.readInt() != MAGIC) throw new IOException(file + " is not a player statistics store");
+        int format = in.readUnsignedByte();
+        if (format != FORMAT) throw new IOException("unknown player statistics format " + format);
+        try {
+            while (true) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || offset + RECORD_HEADER_BYTES + length > channel.size()) break;
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                if (checksum(payload) != checksum) break;
+                PlayerStats stats = decode(payload);
+                index(stats, offset, RECORD_HEADER_BYTES + length);
+                offset += RECORD_HEADER_BYTES + length;
+            }
+        } catch (EOFException ignored) {}
+        // drop a record cut short, so that the next one is appended after the last whole one
+        if (offset < channel.size()) channel.truncate(offset);
+        fileBytes = offset;
+    }
+
+    /**
+     * Makes a record the live one of its player.
+     */
+    private void index(PlayerStats stats, long offset, int size) {
+        Entry previous = index.put(stats.name, new Entry(offset, size, stats));
+        if (previous != null) liveBytes -= previous.size;
+        liveBytes += size;
+    }
+
+    /**
+     * @param name - a player's name.
+     * @return - the player's lifetime statistics, or null if the player did not play yet.
+     */
+    public synchronized PlayerStats get(String name) {
+        Entry entry = index.get(name);
+        return entry == null ? null : entry.stats;
+    }
+
+    /**
+     * @return - the lifetime statistics of all the players.
+     */
+    public synchronized List<PlayerStats> all() {
+        List<PlayerStats> all = new ArrayList<>(index.size());
+        for (Entry entry : index.values()) all.add(entry.stats);
+        return all;
+    }
+
+    /**
+     * Adds the statistics of a game to the players' totals, in one write to the file, and compacts the file if it is
+     * time to.
+     *
+     * @param game - the statistics of every player in the game.
+     * @return - the new totals of the players, in the same order.
+     * @throws IOException if the file can't be written (the totals are not changed then).
+     */
+    public synchronized PlayerStats[] record(PlayerStats... game) throws IOException {
+        PlayerStats[] totals = new PlayerStats[game.length];
+        Map<String, PlayerStats> merged = new HashMap<>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * game.length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        int[] sizes = new int[game.length];
+        for (int i = 0; i < game.length; i++) {
+            PlayerStats previous = merged.containsKey(game[i].name) ? merged.get(game[i].name) : get(game[i].name);
+            totals[i] = previous == null ? game[i] : previous.plus(game[i]);
+            merged.put(game[i].name, totals[i]);
+            byte[] payload = encode(totals[i]);
+            out.writeInt(payload.length);
+            out.writeInt(checksum(payload));
+            out.write(payload);
+            sizes[i] = RECORD_HEADER_BYTES + payload.length;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        long offset = fileBytes;
+        while (buffer.hasRemaining())
+            offset += channel.write(buffer, offset);
+        channel.force(false);
+
+        offset = fileBytes;
+        for (int i = 0; i < game.length; i++) {
+            index(totals[i], offset, sizes[i]);
+            offset += sizes[i];
+        }
+        fileBytes = offset;
+        if (fileBytes >= MIN_COMPACT_BYTES && fileBytes - HEADER_BYTES > 2 * liveBytes)
+            compact();
+        return totals;
+    }
+
+    /**
+     * Rewrites the file with only the live records.
+     *
+     * @throws IOException if the new file can't be written (the old one is kept then).
+     */
+    public synchronized void compact() throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        List<Entry> entries = new ArrayList<>(index.values());
+        List<Entry> moved = new ArrayList<>(entries.size());
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).put((byte) FORMAT);
+            header.flip();
+            out.write(header);
+            long offset = HEADER_BYTES;
+            for (Entry entry : entries) {
+                ByteBuffer record = ByteBuffer.allocate(entry.size);
+                while (record.hasRemaining())
+                    if (channel.read(record, entry.offset + record.position()) < 0) throw new EOFException();
+                record.flip();
+                while (record.hasRemaining()) out.write(record);
+                moved.add(new Entry(offset, entry.size, entry.stats));
+                offset += entry.size;
+            }
+            out.force(false);
+        }
+        channel.close();
+        try {
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        index.clear();
+        liveBytes = 0;
+        for (Entry entry : moved) index(entry.stats, entry.offset, entry.size);
+        fileBytes = channel.size();
+    }
+
+    /**
+     * @return - the size of the store's file.
+     */
+    public synchronized long fileBytes() {
+        return fileBytes;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(PlayerStats stats) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(stats.name);
+        out.writeLong(stats.games);
+        out.writeLong(stats.wins);
+        out.writeLong(stats.points);
+        out.writeLong(stats.penalties);
+        out.writeLong(stats.claims);
+        out.writeLong(stats.claimLatencyNanos);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static PlayerStats decode(byte[] payload) throws IOException {
+        try (InputStream bytes = new ByteArrayInputStream(payload)) {
+            DataInputStream in = new DataInputStream(bytes);
+            return new PlayerStats(in.readUTF(), in.readLong(), in.readLong(), in.readLong(), in.readLong(),
+                    in.readLong(), in.readLong());
+        }
+    }
+}
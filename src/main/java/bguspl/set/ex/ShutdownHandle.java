@@ -0,0 +1,58 @@
+package bguspl.set.ex;
+
+/**
+ * The handle a thread taking part in the game (a player thread or an AI thread) registers with the dealer, so that
+ * the dealer can stop it at the end of the game.
+ */
+public final class ShutdownHandle {
+
+    /**
+     * The registered thread.
+     */
+    private final Thread thread;
+
+    /**
+     * Tells the thread's loop to stop (e.g. sets its terminate flag).
+     */
+    private final Runnable cancel;
+
+    /**
+     * The class constructor.
+     *
+     * @param thread - the registered thread.
+     * @param cancel - tells the thread's loop to stop.
+     */
+    public ShutdownHandle(Thread thread, Runnable cancel) {
+        this.thread = thread;
+        this.cancel = cancel;
+    }
+
+    /**
+     * @return the registered thread.
+     */
+    public Thread thread() {
+        return thread;
+    }
+
+    /**
+     * Asks the thread to stop: runs the cancel action, then interrupts the thread out of any wait it is blocked in.
+     */
+    public void cancel() {
+        cancel.run();
+        thread.interrupt();
+    }
+
+    /**
+     * Waits for the thread to stop, but not past the deadline.
+     *
+     * @param deadlineNanos - the System.nanoTime() after which to stop waiting.
+     * @return true iff the thread stopped.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean awaitTermination(long deadlineNanos) throws InterruptedException {
+        long remaining = deadlineNanos - System.nanoTime();
+        if (remaining > 0)
+            thread.join(Math.max(remaining / 1_000_000, 1));
+        return !thread.isAlive();
+    }
+}
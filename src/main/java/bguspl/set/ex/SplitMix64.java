@@ -0,0 +1,129 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The random number generator of the game: the same algorithm as java.util.SplittableRandom (so a seeded game deals
+ * exactly the same cards as before), but with its state exposed, so that it can be saved in a checkpoint and restored.
+ * Like SplittableRandom, an instance is meant to be used by one thread; its state may be read from another.
+ */
+public final class SplitMix64 {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /**
+     * The seeds of the unseeded generators (see unseeded()).
+     */
+    private static final AtomicLong defaultGen = new AtomicLong(mix64(System.currentTimeMillis()) ^ mix64(System.nanoTime()));
+
+    /**
+     * The state: advanced by gamma on every number drawn.
+     */
+    private volatile long seed;
+
+    /**
+     * The (odd) step of the state, fixed per generator.
+     */
+    private final long gamma;
+
+    /**
+     * Creates a generator with the given state (see seed() and gamma()).
+     *
+     * @param seed  - the state.
+     * @param gamma - the step of the state.
+     */
+    public SplitMix64(long seed, long gamma) {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * Creates a generator that draws the same numbers as new SplittableRandom(seed).
+     *
+     * @param seed - the initial seed.
+     */
+    public SplitMix64(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    /**
+     * @return - a generator with a different seed every time (for games that are not seeded).
+     */
+    public static SplitMix64 unseeded() {
+        long s = defaultGen.getAndAdd(2 * GOLDEN_GAMMA);
+        return new SplitMix64(mix64(s), mixGamma(s + GOLDEN_GAMMA));
+    }
+
+    /**
+     * @return - the current state.
+     */
+    public long seed() {
+        return seed;
+    }
+
+    /**
+     * @return - the step of the state.
+     */
+    public long gamma() {
+        return gamma;
+    }
+
+    /**
+     * @return - a new generator, independent of this one (like SplittableRandom.split()).
+     */
+    public SplitMix64 split() {
+        return new SplitMix64(nextLong(), mixGamma(nextSeed()));
+    }
+
+    /**
+     * @return - a random long.
+     */
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    /**
+     * @return - a random int.
+     */
+    public int nextInt() {
+        return mix32(nextSeed());
+    }
+
+    /**
+     * @param bound - the upper bound (exclusive), must be positive.
+     * @return - a random int between 0 and bound - 1.
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) throw new IllegalArgumentException("bound must be positive");
+        int r = nextInt();
+        int m = bound - 1;
+        if ((bound & m) == 0)
+            r &= m;
+        else
+            for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = nextInt() >>> 1) {}
+        return r;
+    }
+
+    private long nextSeed() {
+        return seed += gamma;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
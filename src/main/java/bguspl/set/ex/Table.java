@@ -29,6 +29,17 @@ public class Table {
      */
     protected final Integer[] cardToSlot; // slot per card (if any)
 
+    /**
+     * The version of the cards on the table, increased whenever a card is placed or removed (by the dealer).
+     * A set checked against the cards of some version is still valid as long as the version did not change.
+     */
+    private volatile long version;
+
+    /**
+     * The version returned by snapshot when the cards could not be read (an empty slot).
+     */
+    public static final long noVersion = -1;
+
     /**
      * Constructor for testing.
      *
@@ -58,12 +69,13 @@ public class Table {
      */
     public void hints() {
         List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
-            StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
+        StringBuilder sb = new StringBuilder();
+        env.util.findSetsParallel(deck, Integer.MAX_VALUE).forEach(set -> {
             List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
             int[][] features = env.util.cardsToFeatures(set);
-            System.out.println(sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));
+            sb.append("Hint: Set found: slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)).append(System.lineSeparator());
         });
+        System.out.print(sb);
     }
 
     /**
@@ -87,11 +99,17 @@ public class Table {
      * @post - the card placed is on the table, in the assigned slot.
      */
     public void placeCard(int card, int slot) {
-        try {
-            Thread.sleep(env.config.tableDelayMillis > 0 ? env.config.tableDelayMillis : Dealer.practicallyZeroMS);
-        } catch (InterruptedException ignored) {}
-        cardToSlot[card] = slot;
-        slotToCard[slot] = card;
+        if (!env.config.deterministic) {
+            long delay = env.config.timing().tableDelayMillis;
+            try {
+                Thread.sleep(delay > 0 ? delay : Dealer.practicallyZeroMS);
+            } catch (InterruptedException ignored) {}
+        }
+        synchronized (this) {
+            cardToSlot[card] = slot;
+            slotToCard[slot] = card;
+            version++;
+        }
         env.ui.placeCard(card, slot);
     }
 
@@ -101,14 +119,20 @@ public class Table {
      * @post - the slot is empty
      */
     public void removeCard(int slot) {
-        Integer id = slotToCard[slot];
-        if (id != null)
-            cardToSlot[id] = null;
-        slotToCard[slot] = null;
         synchronized (this) {
-            try {
-                wait(env.config.tableDelayMillis > 0 ? env.config.tableDelayMillis : Dealer.practicallyZeroMS);
-            } catch (InterruptedException ignored) {
+            Integer id = slotToCard[slot];
+            if (id != null)
+                cardToSlot[id] = null;
+            slotToCard[slot] = null;
+            version++;
+        }
+        if (!env.config.deterministic) {
+            long delay = env.config.timing().tableDelayMillis;
+            synchronized (this) {
+                try {
+                    wait(delay > 0 ? delay : Dealer.practicallyZeroMS);
+                } catch (InterruptedException ignored) {
+                }
             }
         }
         env.ui.removeCard(slot);
@@ -125,6 +149,29 @@ public class Table {
         }
     }
 
+    /**
+     * @return the current version of the cards on the table.
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Reads the cards in the given slots, all at the same version of the table (cards are not placed or removed
+     * meanwhile), so that a player can check its set without the dealer.
+     * @param slots - the slots to read.
+     * @param cards - the array to read the cards into.
+     * @return - the version the cards were read at, or noVersion if one of the slots is empty.
+     */
+    public synchronized long snapshot(int[] slots, int[] cards) {
+        for (int i = 0; i < slots.length; i++) {
+            Integer card = slotToCard[slots[i]];
+            if (card == null) return noVersion;
+            cards[i] = card;
+        }
+        return version;
+    }
+
     /**
      * Places a player token on a grid slot.
      * @param player - the player the token belongs to.
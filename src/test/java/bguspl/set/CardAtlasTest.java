@@ -0,0 +1,54 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardAtlasTest {
+
+    @Test
+    void load_ContainsEveryCardOfTheDefaultDeck() throws IOException {
+        Config config = TestConfigs.config();
+        CardAtlas atlas = CardAtlas.load();
+
+        for (int card = 0; card < config.deckSize; card++) {
+            String name = UserInterfaceSwing.intInBaseToPaddedString(card, config.featureCount, config.featureSize);
+            BufferedImage image = atlas.image(name);
+            assertNotNull(image, name);
+            assertEquals(config.cellWidth, image.getWidth());
+            assertEquals(config.cellHeight, image.getHeight());
+        }
+        assertNotNull(atlas.image("empty_card"));
+        assertNull(atlas.image("no_such_card"));
+        assertEquals(-1, atlas.cell("no_such_card"));
+    }
+
+    @Test
+    void draw_BlitsTheCellOfTheCard() {
+        BufferedImage red = filled(0xFFFF0000);
+        BufferedImage blue = filled(0xFF0000FF);
+        CardAtlas atlas = CardAtlas.pack(new String[]{"red", "blue"}, new BufferedImage[]{red, blue});
+
+        BufferedImage target = new BufferedImage(8, 3, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = target.createGraphics();
+        atlas.draw(g, atlas.cell("blue"), 4, 0, null);
+        g.dispose();
+
+        assertEquals(0, target.getRGB(3, 1));
+        assertEquals(0xFF0000FF, target.getRGB(4, 0));
+        assertEquals(0xFF0000FF, target.getRGB(7, 2));
+        assertEquals(0xFFFF0000, atlas.image("red").getRGB(3, 2));
+    }
+
+    private static BufferedImage filled(int argb) {
+        BufferedImage image = new BufferedImage(4, 3, BufferedImage.TYPE_INT_ARGB);
+        for (int x = 0; x < 4; x++)
+            for (int y = 0; y < 3; y++)
+                image.setRGB(x, y, argb);
+        return image;
+    }
+}
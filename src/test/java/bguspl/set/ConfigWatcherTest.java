@@ -0,0 +1,87 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConfigWatcherTest {
+
+    private static void write(Path file, String penaltyFreeze) throws IOException {
+        String text = "TurnTimeoutSeconds=60\nPenaltyFreezeSeconds=" + penaltyFreeze + "\nTableDelaySeconds=0.1\n";
+        Files.write(file, text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    void reload_KeepsTheKindOfTurnTimer() {
+        Logger logger = TestConfigs.silentLogger();
+        Config config = new Config(logger, new Properties());
+        Properties properties = new Properties();
+        properties.setProperty("TurnTimeoutSeconds", "0");
+        properties.setProperty("PointFreezeSeconds", "2");
+        assertTrue(config.reload(properties, logger));
+        assertEquals(60_000, config.timing().turnTimeoutMillis);
+        assertEquals(2_000, config.timing().pointFreezeMillis);
+        assertEquals(1_000, config.pointFreezeMillis); // the setting at startup
+        assertFalse(config.reload(properties, logger));
+
+        properties.setProperty("PenaltyFreezeSeconds", "soon");
+        assertThrows(NumberFormatException.class, () -> config.reload(properties, logger));
+        assertEquals(3_000, config.timing().penaltyFreezeMillis);
+    }
+
+    /**
+     * Waits for the watcher to log a message with the given text (the messages before it are skipped).
+     */
+    private static String awaitMessage(BlockingQueue<String> messages, String text) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        for (String message; (message = messages.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS))
+                != null; )
+            if (message.contains(text)) return message;
+        return fail("the watcher did not log \"" + text + "\"");
+    }
+
+    @Test
+    void watcher_PublishesTheSettingsOfTheSavedFile(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("config.properties");
+        write(file, "3");
+        Logger logger = TestConfigs.silentLogger();
+        Config config = new Config(logger, file.toString());
+        assertEquals(3_000, config.timing().penaltyFreezeMillis);
+        BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        logger.addHandler(new Handler() {
+            @Override public void publish(LogRecord record) { messages.add(record.getMessage()); }
+            @Override public void flush() {}
+            @Override public void close() {}
+        });
+
+        Thread thread;
+        try (ConfigWatcher watcher = new ConfigWatcher(logger, config, file)) {
+            thread = new Thread(watcher, "config-watcher");
+            thread.start();
+            write(file, "0.5");
+            awaitMessage(messages, "reloaded timing settings");
+            assertEquals(500, config.timing().penaltyFreezeMillis);
+            assertEquals(100, config.timing().tableDelayMillis);
+
+            Timing reloaded = config.timing();
+            write(file, "x"); // not a number: ignored
+            awaitMessage(messages, "invalid timing");
+            assertSame(reloaded, config.timing());
+        }
+        thread.join(5_000);
+        assertFalse(thread.isAlive());
+    }
+}
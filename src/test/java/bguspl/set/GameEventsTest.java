@@ -0,0 +1,57 @@
+package bguspl.set;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@EnabledIf("bguspl.set.GameEvents#available")
+class GameEventsTest {
+
+    @Test
+    void events_AreRecordedOnlyWhileEnabled(@TempDir Path directory) throws IOException {
+        GameEvents.cardDealt(1, 1, 80); // no recording, nothing happens
+        assertEquals(0, GameEvents.setSearchStart());
+
+        Path file = directory.resolve("game.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("bguspl.set.ClaimJudged");
+            recording.enable("bguspl.set.SetSearch");
+            recording.disable("bguspl.set.CardDealt");
+            recording.start();
+            GameEvents.claimJudged(2, GameEvents.NOT_A_SET, 1_500_000, false);
+            GameEvents.cardDealt(5, 7, 60); // not enabled
+            long start = GameEvents.setSearchStart();
+            assertNotEquals(0, start);
+            GameEvents.setSearch("countSets", 12, 3, start);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().startsWith("bguspl.set."))
+                .filter(event -> event.getThread().getJavaThreadId() == Thread.currentThread().getId())
+                .collect(Collectors.toList());
+        assertEquals(2, events.size());
+        RecordedEvent judged = events.stream()
+                .filter(event -> event.getEventType().getName().equals("bguspl.set.ClaimJudged")).findFirst().get();
+        assertEquals(2, judged.getInt("player"));
+        assertEquals(GameEvents.NOT_A_SET, judged.getString("verdict"));
+        assertEquals(Duration.ofNanos(1_500_000), judged.getDuration("queueWait"));
+        RecordedEvent search = events.stream()
+                .filter(event -> event.getEventType().getName().equals("bguspl.set.SetSearch")).findFirst().get();
+        assertEquals("countSets", search.getString("operation"));
+        assertEquals(12, search.getInt("cards"));
+        assertEquals(3, search.getInt("found"));
+    }
+}
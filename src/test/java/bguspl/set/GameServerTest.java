@@ -0,0 +1,174 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GameServerTest {
+
+    GameServer server;
+    Thread serverThread;
+    @Mock
+    private Player player1;
+    @Mock
+    private Player player2;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Logger logger = TestConfigs.silentLogger();
+        Config config = new Config(logger, TestConfigs.properties("HumanPlayers", "1", "ComputerPlayers", "1"));
+
+        server = new GameServer(logger, config, new Player[]{player1, player2}, 0);
+        serverThread = new Thread(server, "server");
+        serverThread.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        server.dispose();
+        serverThread.join();
+    }
+
+    /**
+     * Receives events until one of the given type arrives.
+     */
+    private void receiveUntil(GameClient client, byte type) {
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            while (client.receive() != type) ;
+        });
+    }
+
+    @Test
+    void connect_GetsSeatAndCurrentState() throws IOException {
+        server.placeCard(7, 2);
+        server.setScore(1, 4);
+
+        MockUserInterface ui = new MockUserInterface();
+        try (GameClient client = new GameClient("localhost", server.port(), ui)) {
+            assertEquals(0, client.seat());
+            assertEquals(12, client.tableSize());
+            assertEquals(2, client.players());
+
+            receiveUntil(client, GameServer.SCORE);
+            assertEquals(7, ui.slotToCard[2]);
+            receiveUntil(client, GameServer.SCORE);
+            assertEquals(4, ui.scores[1]);
+        }
+    }
+
+    @Test
+    void press_DispatchedToSeatedPlayer() throws IOException {
+        try (GameClient client = new GameClient("localhost", server.port(), new MockUserInterface())) {
+            client.press(3);
+            verify(player1, timeout(5000)).keyPressed(3);
+        }
+    }
+
+    @Test
+    void secondClient_OnlyWatches() throws IOException {
+        try (GameClient first = new GameClient("localhost", server.port(), new MockUserInterface());
+             GameClient second = new GameClient("localhost", server.port(), new MockUserInterface())) {
+            assertEquals(0, first.seat());
+            assertEquals(GameServer.NO_SEAT, second.seat());
+
+            second.press(5);
+            first.press(6);
+            verify(player1, timeout(5000)).keyPressed(6);
+            verify(player1, never()).keyPressed(5);
+            verifyNoInteractions(player2);
+        }
+    }
+
+    @Test
+    void events_SentToAllClients() throws IOException {
+        MockUserInterface ui1 = new MockUserInterface();
+        MockUserInterface ui2 = new MockUserInterface();
+        try (GameClient first = new GameClient("localhost", server.port(), ui1);
+             GameClient second = new GameClient("localhost", server.port(), ui2)) {
+            server.placeToken(1, 4);
+            server.announceWinner(new int[]{1});
+
+            receiveUntil(first, GameServer.WINNERS);
+            receiveUntil(second, GameServer.WINNERS);
+            assertTrue(ui1.tokens[1][4]);
+            assertTrue(ui2.tokens[1][4]);
+            assertArrayEquals(new int[]{1}, ui1.winners);
+        }
+    }
+
+    @Test
+    void overflow_ResyncClearsTokensRemovedMeanwhile() throws Exception {
+        MockUserInterface ui = new MockUserInterface();
+        try (GameClient client = new GameClient("localhost", server.port(), ui)) {
+            server.placeToken(1, 4);
+            receiveUntil(client, GameServer.TOKEN_PLACED);
+            assertTrue(ui.tokens[1][4]);
+
+            // hold the network thread in a key press while the events overflow, so none of them are sent
+            CountDownLatch entered = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            doAnswer(invocation -> {
+                entered.countDown();
+                release.await();
+                return null;
+            }).when(player1).keyPressed(0);
+            client.press(0);
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            server.removeToken(1, 4);
+            for (int i = 0; i < 10_000; i++) server.setCountdown(i, false);
+            release.countDown();
+
+            receiveUntil(client, GameServer.COUNTDOWN);
+            assertFalse(ui.tokens[1][4]);
+            assertEquals(9_999, ui.countdown);
+        }
+    }
+
+    static class MockUserInterface implements UserInterface {
+        final int[] slotToCard = new int[12];
+        final boolean[][] tokens = new boolean[2][12];
+        final int[] scores = new int[2];
+        long countdown = -1;
+        int[] winners;
+
+        @Override
+        public void dispose() {}
+        @Override
+        public void placeCard(int card, int slot) { slotToCard[slot] = card; }
+        @Override
+        public void removeCard(int slot) { slotToCard[slot] = -1; }
+        @Override
+        public void setCountdown(long millies, boolean warn) { countdown = millies; }
+        @Override
+        public void setElapsed(long millies) {}
+        @Override
+        public void setScore(int player, int score) { scores[player] = score; }
+        @Override
+        public void setFreeze(int player, long millies) {}
+        @Override
+        public void placeToken(int player, int slot) { tokens[player][slot] = true; }
+        @Override
+        public void removeTokens() { for (boolean[] playerTokens : tokens) Arrays.fill(playerTokens, false); }
+        @Override
+        public void removeTokens(int slot) { for (boolean[] playerTokens : tokens) playerTokens[slot] = false; }
+        @Override
+        public void removeToken(int player, int slot) { tokens[player][slot] = false; }
+        @Override
+        public void announceWinner(int[] players) { winners = players; }
+    }
+}
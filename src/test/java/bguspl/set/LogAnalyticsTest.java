@@ -0,0 +1,141 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogAnalyticsTest {
+
+    private static Path log(Path directory, String name, String... lines) throws IOException {
+        return Files.write(directory.resolve(name), Arrays.asList(lines));
+    }
+
+    @Test
+    void analyze_AggregatesClaimsPenaltiesAndReshufflesAcrossFiles(@TempDir Path directory) throws IOException {
+        Path first = log(directory, "1.log",
+                "[23:59:59.900] [INFO   ] Thread dealer starting.",
+                "[23:59:59.950] [SEVERE ] placing card 5 in slot 0",
+                "[23:59:59.990] [SEVERE ] player 1 placing token on slot 0",
+                "[23:59:59.995] [SEVERE ] player 1 placing token on slot 1",
+                "[00:00:00.000] [SEVERE ] player 1 placing token on slot 2",
+                "[00:00:00.020] [SEVERE ] player 1 claim judged: set", // judged 20 ms after the claim
+                "[00:00:00.020] [SEVERE ] setting player 1 score to 1",
+                "[00:00:00.021] [SEVERE ] setting player 1 freeze to 1000",
+                "[00:00:00.022] [SEVERE ] removing all tokens",
+                "[00:00:01.021] [SEVERE ] setting player 1 freeze to 0",
+                "[00:00:01.100] [SEVERE ] player 2 placing token on slot 3",
+                "[00:00:01.110] [SEVERE ] player 2 placing token on slot 4",
+                "[00:00:01.120] [SEVERE ] removing player 2 token from slot 4",
+                "[00:00:01.130] [SEVERE ] player 2 placing token on slot 5",
+                "[00:00:01.140] [SEVERE ] player 2 placing token on slot 6",
+                "[00:00:01.150] [SEVERE ] player 2 claim judged: not a set", // judged 10 ms after the claim
+                "[00:00:01.150] [SEVERE ] setting player 2 freeze to 3000",
+                "[00:00:01.160] [SEVERE ] setting player 2 freeze to 2000",
+                "not a log line");
+        Path second = log(directory, "2.log",
+                "[10:00:00.000] [SEVERE ] placing card 1 in slot 0",
+                "[10:00:01.000] [SEVERE ] removing card from slot 0",
+                "[10:00:01.000] [SEVERE ] removing card from slot 1",
+                "[10:00:01.000] [SEVERE ] removing card from slot 2",
+                "[10:00:01.000] [SEVERE ] removing card from slot 3",
+                "[10:00:01.000] [SEVERE ] removing card from slot 4",
+                "[10:00:01.100] [SEVERE ] placing card 2 in slot 0",
+                "[10:00:02.000] [SEVERE ] removing card from slot 0",
+                "[10:00:02.000] [SEVERE ] removing card from slot 1",
+                "[10:00:02.000] [SEVERE ] removing card from slot 2");
+
+        LogAnalytics.Summary summary = LogAnalytics.analyze(Arrays.asList(first, second), 3);
+
+        assertEquals(2, summary.games());
+        assertEquals(2, summary.players());
+        assertEquals(1, summary.claims(1));
+        assertEquals(1, summary.sets(1));
+        assertEquals(0, summary.penalties(1));
+        assertEquals(20, summary.maxLatencyMillis(1));
+        assertEquals(1, summary.claims(2));
+        assertEquals(0, summary.sets(2));
+        assertEquals(1, summary.penalties(2));
+        assertEquals(10.0, summary.meanLatencyMillis(2));
+        assertEquals(70.0, summary.meanTimeToFirstSetMillis()); // across midnight
+        assertEquals(1, summary.reshuffles()); // removing a set is not a reshuffle
+    }
+
+    private static Path compressedLog(Path directory, String name, String... lines) throws IOException {
+        Path file = directory.resolve(name);
+        try (OutputStream gzip = new GZIPOutputStream(Files.newOutputStream(file));
+             PrintStream out = new PrintStream(gzip, false, "US-ASCII")) {
+            for (String line : lines) out.print(line + "\n");
+        }
+        return file;
+    }
+
+    @Test
+    void analyze_ReadsTheRotatedPartsOfARunAsOneGame(@TempDir Path directory) throws IOException {
+        Path active = log(directory, "run.log",
+                "[10:00:00.300] [SEVERE ] player 1 claim judged: set"); // judges the claim made in part 2
+        Path second = compressedLog(directory, "run.2.log.gz",
+                "[10:00:00.100] [SEVERE ] player 1 placing token on slot 1",
+                "[10:00:00.200] [SEVERE ] player 1 placing token on slot 2");
+        Path first = compressedLog(directory, "run.1.log.gz",
+                "[10:00:00.000] [SEVERE ] placing card 5 in slot 0",
+                "[10:00:00.050] [SEVERE ] player 1 placing token on slot 0");
+        Path secondUncompressed = log(directory, "run.2.log", // still being compressed: the same part
+                "[10:00:00.100] [SEVERE ] player 1 placing token on slot 1",
+                "[10:00:00.200] [SEVERE ] player 1 placing token on slot 2");
+        Path other = log(directory, "other.log",
+                "[11:00:00.000] [SEVERE ] placing card 1 in slot 0");
+
+        assertEquals(Arrays.asList(Arrays.asList(first, secondUncompressed, active), Arrays.asList(other)),
+                LogAnalytics.runs(Arrays.asList(active, second, other, first, secondUncompressed)));
+
+        LogAnalytics.Summary summary = LogAnalytics.analyze(Arrays.asList(active, second, first, other), 3);
+        assertEquals(2, summary.games());
+        assertEquals(1, summary.sets(1));
+        assertEquals(100, summary.maxLatencyMillis(1));
+        assertEquals(300.0, summary.meanTimeToFirstSetMillis());
+    }
+
+    @Test
+    void analyze_CountsPenaltiesWithoutFreezes(@TempDir Path directory) throws IOException {
+        Path run = log(directory, "run.log", // PenaltyFreezeSeconds=0: a penalty freezes no one
+                "[10:00:00.000] [SEVERE ] placing card 5 in slot 0",
+                "[10:00:00.100] [SEVERE ] player 1 placing token on slot 0",
+                "[10:00:00.100] [SEVERE ] player 1 placing token on slot 1",
+                "[10:00:00.100] [SEVERE ] player 1 placing token on slot 2",
+                "[10:00:00.100] [SEVERE ] player 1 claim judged: rejected by player",
+                "[10:00:00.200] [SEVERE ] removing player 1 token from slot 2",
+                "[10:00:00.300] [SEVERE ] player 1 placing token on slot 3",
+                "[10:00:00.340] [SEVERE ] player 1 claim judged: not a set",
+                "[10:00:00.400] [SEVERE ] player 2 placing token on slot 4",
+                "[10:00:00.400] [SEVERE ] player 2 placing token on slot 5",
+                "[10:00:00.400] [SEVERE ] player 2 placing token on slot 6",
+                "[10:00:00.450] [SEVERE ] player 2 claim judged: discarded",
+                "[10:00:00.500] [SEVERE ] player 2 claim judged: a verdict of another version");
+
+        LogAnalytics.Summary summary = LogAnalytics.analyze(Arrays.asList(run), 3);
+        assertEquals(2, summary.claims(1));
+        assertEquals(2, summary.penalties(1));
+        assertEquals(0, summary.sets(1));
+        assertEquals(40, summary.maxLatencyMillis(1));
+        assertEquals(20.0, summary.meanLatencyMillis(1));
+        assertEquals(0, summary.claims(2));
+        assertEquals(1, summary.discarded(2));
+        assertEquals(0.0, summary.meanTimeToFirstSetMillis());
+    }
+
+    @Test
+    void analyze_OfNoFilesIsEmpty() {
+        LogAnalytics.Summary summary = LogAnalytics.analyze(Arrays.asList(), 3);
+        assertEquals(0, summary.games());
+        assertEquals(-1, summary.players());
+    }
+}
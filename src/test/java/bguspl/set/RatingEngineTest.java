@@ -0,0 +1,76 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RatingEngineTest {
+
+    @Test
+    void record_MovesRatingsTowardsTheWinner() {
+        RatingEngine engine = new RatingEngine();
+        engine.record(new String[]{"b", "a"}, new int[]{5, 3}, new int[]{0});
+        RatingEngine.Rating b = engine.get("b");
+        assertEquals(RatingEngine.DEFAULT_INITIAL_RATING + 16, b.rating, 1e-9);
+        assertEquals(1, b.wins);
+        assertEquals(5, b.points);
+        assertEquals(RatingEngine.DEFAULT_INITIAL_RATING - 16, engine.get("a").rating, 1e-9);
+        assertNull(engine.get("c"));
+
+        engine.record(new String[]{"a", "b", "c"}, new int[]{4, 4, 1}, new int[]{0, 1});
+        double sum = 0;
+        for (RatingEngine.Rating rating : engine.top(3)) sum += rating.rating;
+        assertEquals(3 * RatingEngine.DEFAULT_INITIAL_RATING, sum, 1e-9); // the changes of a game add up to zero
+        assertEquals(2, engine.get("b").wins);
+        assertEquals("b", engine.top(1).get(0).name);
+    }
+
+    @Test
+    void record_ChecksTheWinners() {
+        RatingEngine engine = new RatingEngine();
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.record(new String[]{"a", "b"}, new int[]{1, 2}, new int[]{2}));
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.record(new String[]{"a", "b"}, new int[]{1, 2}, new int[]{-1}));
+        assertEquals(0, engine.games());
+
+        engine.record(new String[]{"a", "b"}, new int[]{0, 0}, new int[0]); // nobody won
+        assertEquals(1, engine.games());
+        assertEquals(0, engine.get("a").wins);
+    }
+
+    @Test
+    void recompute_EndsWithTheIncrementalRatings() {
+        RatingEngine engine = new RatingEngine();
+        SplittableRandom random = new SplittableRandom(1);
+        String[] names = new String[50];
+        for (int i = 0; i < names.length; i++) names[i] = "p" + i;
+        for (int game = 0; game < 200_000; game++) {
+            int seats = 2 + random.nextInt(3);
+            String[] players = new String[seats];
+            int[] scores = new int[seats];
+            int first = random.nextInt(names.length);
+            for (int seat = 0; seat < seats; seat++) {
+                players[seat] = names[(first + seat * 7) % names.length];
+                scores[seat] = random.nextInt(10);
+            }
+            engine.record(players, scores, new int[]{random.nextInt(seats)});
+        }
+        List<RatingEngine.Rating> incremental = engine.top(names.length);
+
+        engine.recompute(1000, 16);
+        assertNotEquals(incremental.get(0).rating, engine.get(incremental.get(0).name).rating);
+        engine.recompute(RatingEngine.DEFAULT_INITIAL_RATING, RatingEngine.DEFAULT_K_FACTOR);
+        assertEquals(200_000, engine.games());
+        for (RatingEngine.Rating before : incremental) {
+            RatingEngine.Rating after = engine.get(before.name);
+            assertEquals(before.rating, after.rating, 0.0);
+            assertEquals(before.games, after.games);
+            assertEquals(before.wins, after.wins);
+            assertEquals(before.points, after.points);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollingFileHandlerTest {
+
+    private static Config config(String rotateMegabytes, String maxFiles, String flushSeconds) {
+        return TestConfigs.config("LogRotateMegabytes", rotateMegabytes, "LogMaxFiles", maxFiles,
+                "LogFlushSeconds", flushSeconds);
+    }
+
+    private static RollingFileHandler handler(Path file, Config config) {
+        RollingFileHandler handler = new RollingFileHandler(file);
+        handler.setFormatter(new SimpleFormatter() {
+            @Override
+            public synchronized String format(LogRecord record) {
+                return record.getMessage() + "\n";
+            }
+        });
+        handler.configure(config);
+        return handler;
+    }
+
+    private static List<String> lines(Path file) throws IOException {
+        if (!file.toString().endsWith(".gz")) return Files.readAllLines(file);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.toList());
+        }
+    }
+
+    private static List<Path> files(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> all = Files.newDirectoryStream(directory)) {
+            all.forEach(files::add);
+        }
+        return files;
+    }
+
+    @Test
+    void close_WritesEverythingPublished(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("logs").resolve("run.log");
+        RollingFileHandler handler = handler(file, config("16", "20", "60"));
+        for (int i = 0; i < 1000; i++)
+            handler.publish(new LogRecord(Level.INFO, "record " + i));
+        handler.flush();
+        assertEquals(1000, lines(file).size()); // flush does not wait for the flush interval
+
+        handler.publish(new LogRecord(Level.INFO, "last"));
+        handler.close();
+        handler.publish(new LogRecord(Level.INFO, "after close"));
+        List<String> lines = lines(file);
+        assertEquals(1001, lines.size());
+        assertEquals("last", lines.get(1000));
+    }
+
+    @Test
+    void rotation_CompressesPartsAndKeepsTheNewestFiles(@TempDir Path directory) throws IOException {
+        Path old = Files.write(directory.resolve("older-run.log"), "old\n".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(old, FileTime.fromMillis(0));
+        Path leftover = Files.write(directory.resolve("older-run.1.log.gz.tmp"), new byte[10]); // cut short
+        Path file = directory.resolve("run.log");
+        // parts of about 1 KB, 10 bytes per record
+        RollingFileHandler handler = handler(file, config("0.001", "4", "0"));
+        for (int i = 0; i < 1000; i++)
+            handler.publish(new LogRecord(Level.INFO, String.format("record%03d", i)));
+        handler.close();
+
+        List<Path> files = files(directory);
+        assertEquals(4, files.size(), files.toString());
+        assertFalse(Files.exists(old));
+        assertFalse(Files.exists(leftover));
+        assertTrue(Files.exists(file));
+        List<String> kept = new ArrayList<>();
+        for (Path part : files) {
+            if (part.equals(file)) continue;
+            assertTrue(part.getFileName().toString().matches("run\\.\\d+\\.log\\.gz"), part.toString());
+            kept.addAll(lines(part));
+            assertTrue(Files.size(part) < 1024);
+        }
+        kept.sort(null);
+        kept.addAll(lines(file));
+        // the newest parts are whole and in order, up to the last record
+        assertEquals("record999", kept.get(kept.size() - 1));
+        for (int i = 1; i < kept.size(); i++)
+            assertEquals(Integer.parseInt(kept.get(i - 1).substring(6)) + 1, Integer.parseInt(kept.get(i).substring(6)));
+    }
+}
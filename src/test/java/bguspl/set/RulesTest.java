@@ -0,0 +1,154 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RulesTest {
+
+    private static Config config(String rules, int featureSize, int featureCount) {
+        return TestConfigs.config("Rules", rules, "FeatureSize", Integer.toString(featureSize),
+                "FeatureCount", Integer.toString(featureCount));
+    }
+
+    @Test
+    void classic_CountsTheSetsOfTheDefaultDeck() {
+        Config config = config(Rules.CLASSIC, 3, 4);
+        UtilImpl util = new UtilImpl(config);
+        int[] deck = new int[config.deckSize];
+        for (int card = 0; card < deck.length; card++) deck[card] = card;
+
+        assertEquals(3, config.claimSize);
+        assertEquals(1080, util.countSets(deck, deck.length));
+        assertTrue(util.testSet(new int[]{0, 1, 2}));
+        assertFalse(util.testSet(new int[]{0, 1, 3}));
+        assertEquals(2, util.completeSet(new int[]{0, 1}, 2));
+    }
+
+    @Test
+    void classic_LargeDecksMatchThePairwiseRule() {
+        for (int[] shape : new int[][]{{3, 10}, {4, 8}, {5, 6}}) {
+            Config config = config(Rules.CLASSIC, shape[0], shape[1]);
+            Rules rules = Rules.create(config);
+            UtilImpl util = new UtilImpl(config);
+            SplittableRandom random = new SplittableRandom(shape[0]);
+            int r = config.claimSize;
+            int count = 2000;
+            int[] candidates = new int[count * r];
+            for (int c = 0; c < count; c++) {
+                // half of the candidates are legal sets, the rest are random
+                int[] cards = c % 2 == 0 ? randomSet(config, random)
+                        : random.ints(0, config.deckSize).distinct().limit(r).toArray();
+                System.arraycopy(cards, 0, candidates, c * r, r);
+            }
+
+            boolean[] legal = new boolean[count];
+            int found = rules.testSets(candidates, count, legal);
+            int expected = 0;
+            for (int c = 0; c < count; c++) {
+                int[] cards = Arrays.copyOfRange(candidates, c * r, c * r + r);
+                boolean pairwise = pairwiseIsSet(util.cardsToFeatures(cards));
+                assertEquals(pairwise, rules.isSet(cards));
+                assertEquals(pairwise, legal[c]);
+                if (pairwise) expected++;
+            }
+            assertEquals(expected, found);
+            assertTrue(found >= count / 2);
+        }
+    }
+
+    private static int[] randomSet(Config config, SplittableRandom random) {
+        int[] cards = new int[config.featureSize];
+        int[] values = new int[config.featureSize];
+        for (int i = 0; i < config.featureCount; i++) {
+            boolean same = random.nextBoolean();
+            if (same) Arrays.fill(values, random.nextInt(config.featureSize));
+            else for (int j = 0; j < values.length; j++) values[j] = j;
+            for (int j = values.length - 1; j > 0; j--) {
+                int swap = random.nextInt(j + 1), value = values[j];
+                values[j] = values[swap];
+                values[swap] = value;
+            }
+            for (int j = 0; j < cards.length; j++) cards[j] = cards[j] * config.featureSize + values[j];
+        }
+        return cards;
+    }
+
+    private static boolean pairwiseIsSet(int[][] features) {
+        for (int i = 0; i < features[0].length; i++) {
+            boolean same = true, different = true;
+            for (int j = 0; j < features.length; j++)
+                for (int k = j + 1; k < features.length; k++)
+                    if (features[j][i] == features[k][i]) different = false;
+                    else same = false;
+            if (same == different) return false;
+        }
+        return true;
+    }
+
+    @Test
+    void ultra_MatchesTwoPairsWithTheSameCompletion() {
+        Config config = config(Rules.ULTRA, 3, 3);
+        Rules rules = Rules.create(config);
+        Rules classic = Rules.create(config(Rules.CLASSIC, 3, 3));
+        assertEquals(4, config.claimSize);
+
+        int n = config.deckSize;
+        for (int a = 0; a < n; a++)
+            for (int b = a + 1; b < n; b++)
+                for (int c = b + 1; c < n; c++) {
+                    int[] partial = {a, b, c};
+                    int completion = rules.complete(partial, 3);
+                    boolean completable = false;
+                    for (int d = c + 1; d < n; d++) {
+                        int[] cards = {a, b, c, d};
+                        int ab = classic.complete(new int[]{a, b}, 2), cd = classic.complete(new int[]{c, d}, 2);
+                        int ac = classic.complete(new int[]{a, c}, 2), bd = classic.complete(new int[]{b, d}, 2);
+                        int ad = classic.complete(new int[]{a, d}, 2), bc = classic.complete(new int[]{b, c}, 2);
+                        assertEquals(ab == cd || ac == bd || ad == bc, rules.isSet(cards));
+                    }
+                    for (int d = 0; d < n && !completable; d++)
+                        if (d != a && d != b && d != c) completable = rules.isSet(new int[]{a, b, c, d});
+                    if (completable) assertTrue(rules.isSet(new int[]{a, b, c, completion}));
+                    else assertEquals(-1, completion);
+                }
+    }
+
+    @Test
+    void affine_WithThreeValuesIsClassic() {
+        Rules affine = Rules.create(config(Rules.AFFINE, 3, 3));
+        Rules classic = Rules.create(config(Rules.CLASSIC, 3, 3));
+        for (int a = 0; a < 27; a++)
+            for (int b = a + 1; b < 27; b++)
+                for (int c = b + 1; c < 27; c++)
+                    assertEquals(classic.isSet(new int[]{a, b, c}), affine.isSet(new int[]{a, b, c}));
+    }
+
+    @Test
+    void affine_CountsTheLinesOfThePlane() {
+        Config config = config(Rules.AFFINE, 5, 2);
+        UtilImpl util = new UtilImpl(config);
+        int[] deck = new int[config.deckSize];
+        for (int card = 0; card < deck.length; card++) deck[card] = card;
+
+        assertEquals(30, util.countSets(deck, deck.length));
+        util.forEachSet(deck, deck.length, set -> {
+            for (int i = 0; i < set.length; i++) {
+                int[] partial = new int[set.length - 1];
+                for (int j = 0, k = 0; j < set.length; j++)
+                    if (j != i) partial[k++] = set[j];
+                assertEquals(set[i], util.completeSet(partial, partial.length));
+            }
+            return true;
+        });
+    }
+
+    @Test
+    void create_AffineNeedsAPrimeFeatureSize() {
+        assertThrows(IllegalArgumentException.class, () -> Rules.create(config(Rules.AFFINE, 4, 2)));
+        assertThrows(IllegalArgumentException.class, () -> Rules.create(config("no such rules", 3, 4)));
+    }
+}
@@ -0,0 +1,65 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SetCatalogTest {
+
+    @Test
+    void of_CatalogsTheDefaultDeckOnce() {
+        Config config = TestConfigs.config("Rules", Rules.CLASSIC);
+        Rules rules = Rules.create(config);
+        SetCatalog catalog = SetCatalog.of(config, rules);
+
+        assertEquals(1080, catalog.size());
+        for (int card = 0; card < config.deckSize; card++)
+            assertEquals(40, catalog.setsContaining(card));
+        assertSame(catalog, SetCatalog.of(config, Rules.create(config)));
+        assertTrue(catalog.worthIt(config.deckSize));
+    }
+
+    @Test
+    void forEachSet_FindsTheSetsOfEveryCombination() {
+        for (String name : new String[]{Rules.CLASSIC, Rules.ULTRA}) {
+            Config config = TestConfigs.config("Rules", name);
+            Rules rules = Rules.create(config);
+            SetCatalog catalog = SetCatalog.of(config, rules);
+            long[] present = catalog.newBitset();
+            int[] set = new int[rules.claimSize()];
+            SplittableRandom random = new SplittableRandom(7);
+
+            for (int round = 0; round < 20; round++) {
+                int[] cards = random.ints(0, config.deckSize).distinct().limit(12 + round).toArray();
+                int[] found = new int[1];
+                int count = catalog.forEachSet(cards, cards.length, present, set, s -> {
+                    assertTrue(rules.isSet(s));
+                    found[0]++;
+                    return true;
+                }, Integer.MAX_VALUE);
+                assertEquals(bruteForceCount(rules, cards), count, name);
+                assertEquals(count, found[0]);
+                for (long word : present) assertEquals(0, word);
+            }
+        }
+    }
+
+    private static int bruteForceCount(Rules rules, int[] cards) {
+        int r = rules.claimSize();
+        int[] combination = new int[r];
+        int[] candidate = new int[r];
+        for (int i = 0; i < r; i++) combination[i] = i;
+        int count = 0;
+        while (true) {
+            for (int i = 0; i < r; i++) candidate[i] = cards[combination[i]];
+            if (rules.isSet(candidate)) count++;
+            int t = r - 1;
+            while (t >= 0 && combination[t] == cards.length - r + t) --t;
+            if (t < 0) return count;
+            combination[t]++;
+            for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+        }
+    }
+}
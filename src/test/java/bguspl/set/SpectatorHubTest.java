@@ -0,0 +1,80 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpectatorHubTest {
+
+    StateBroadcaster broadcaster;
+    SpectatorHub hub;
+
+    @BeforeEach
+    void setUp() {
+        Config config = TestConfigs.config("HumanPlayers", "2", "ComputerPlayers", "0");
+        broadcaster = new StateBroadcaster(config);
+        hub = new SpectatorHub(config, 2);
+        broadcaster.addObserver(hub);
+        broadcaster.publish();
+    }
+
+    @Test
+    void subscribe_FirstFrameIsCurrentState() {
+        broadcaster.placeCard(8, 3);
+        broadcaster.placeToken(1, 3);
+        broadcaster.publish();
+
+        SpectatorHub.Subscription subscription = hub.subscribe();
+        StateFrame snapshot = subscription.poll();
+        assertTrue(snapshot.snapshot);
+        assertEquals(8, snapshot.cards[3]);
+        assertTrue(snapshot.hasToken(3, 1));
+        assertNull(subscription.poll());
+    }
+
+    @Test
+    void onFrame_DeltasForwardedInOrder() {
+        SpectatorHub.Subscription subscription = hub.subscribe();
+        subscription.poll();
+
+        broadcaster.placeCard(1, 0);
+        broadcaster.publish();
+        broadcaster.setScore(0, 1);
+        broadcaster.publish();
+
+        assertArrayEquals(new int[]{1}, subscription.poll().cards);
+        assertArrayEquals(new int[]{1}, subscription.poll().scores);
+        assertEquals(0, subscription.resyncs());
+    }
+
+    @Test
+    void onFrame_SlowSubscriberGetsSnapshotInsteadOfMissedFrames() {
+        SpectatorHub.Subscription subscription = hub.subscribe();
+        for (int slot = 0; slot < 5; slot++) {
+            broadcaster.placeCard(slot + 10, slot);
+            broadcaster.publish();
+        }
+
+        assertEquals(2, subscription.resyncs());
+        StateFrame snapshot = subscription.poll();
+        assertTrue(snapshot.snapshot);
+        for (int slot = 0; slot < 4; slot++)
+            assertEquals(slot + 10, snapshot.cards[slot]);
+        assertArrayEquals(new int[]{14}, subscription.poll().cards);
+        assertNull(subscription.poll());
+    }
+
+    @Test
+    void unsubscribe_NoMoreFrames() {
+        SpectatorHub.Subscription subscription = hub.subscribe();
+        hub.unsubscribe(subscription);
+        broadcaster.placeCard(1, 0);
+        broadcaster.publish();
+
+        assertTrue(subscription.isClosed());
+        assertTrue(subscription.poll().snapshot);
+        assertNull(subscription.poll());
+        assertEquals(0, hub.subscribers());
+    }
+}
@@ -0,0 +1,110 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateBroadcasterTest {
+
+    StateBroadcaster broadcaster;
+    RecordingObserver observer;
+
+    @BeforeEach
+    void setUp() {
+        broadcaster = new StateBroadcaster(TestConfigs.config("HumanPlayers", "2", "ComputerPlayers", "0"));
+        observer = new RecordingObserver();
+        broadcaster.addObserver(observer);
+        broadcaster.publish();
+    }
+
+    @Test
+    void addObserver_FirstFrameIsSnapshot() {
+        assertEquals(1, observer.frames.size());
+        assertTrue(observer.frames.get(0).snapshot);
+        assertEquals(12, observer.frames.get(0).cardSlots.length);
+    }
+
+    @Test
+    void publish_CollectsChangesIntoOneFrame() {
+        broadcaster.placeCard(5, 1);
+        broadcaster.placeCard(6, 2);
+        broadcaster.placeToken(1, 2);
+        broadcaster.setScore(0, 3);
+        broadcaster.publish();
+
+        assertEquals(2, observer.frames.size());
+        StateFrame frame = observer.frames.get(1);
+        assertFalse(frame.snapshot);
+        assertArrayEquals(new int[]{1, 2}, frame.cardSlots);
+        assertArrayEquals(new int[]{5, 6}, frame.cards);
+        assertArrayEquals(new int[]{2}, frame.tokenSlots);
+        assertTrue(frame.hasToken(0, 1));
+        assertFalse(frame.hasToken(0, 0));
+        assertArrayEquals(new int[]{3}, frame.scores);
+    }
+
+    @Test
+    void publish_NothingChanged_NoFrame() {
+        broadcaster.publish();
+        assertEquals(1, observer.frames.size());
+    }
+
+    @Test
+    void setCountdown_OnlyPublishedWhenDisplayChanges() {
+        broadcaster.setCountdown(59_990, false);
+        broadcaster.publish();
+        broadcaster.setCountdown(59_500, false);
+        broadcaster.publish();
+        broadcaster.setCountdown(58_900, false);
+        broadcaster.publish();
+
+        assertEquals(3, observer.frames.size());
+        assertEquals(59_990, observer.frames.get(1).countdown);
+        assertEquals(58_900, observer.frames.get(2).countdown);
+    }
+
+    @Test
+    void addObserver_LateObserverGetsCurrentState() {
+        broadcaster.placeCard(9, 4);
+        broadcaster.announceWinner(new int[]{1});
+        broadcaster.publish();
+
+        RecordingObserver late = new RecordingObserver();
+        broadcaster.addObserver(late);
+        broadcaster.publish();
+
+        StateFrame snapshot = late.frames.get(0);
+        assertTrue(snapshot.snapshot);
+        assertEquals(9, snapshot.cards[4]);
+        assertArrayEquals(new int[]{1}, snapshot.winners);
+        assertEquals(2, observer.frames.size());
+    }
+
+    @Test
+    void dispose_PublishesLastChangesAndClosesObservers() {
+        broadcaster.setScore(1, 2);
+        broadcaster.dispose();
+
+        assertEquals(2, observer.frames.size());
+        assertTrue(observer.closed);
+    }
+
+    static class RecordingObserver implements FrameObserver {
+        final List<StateFrame> frames = new ArrayList<>();
+        boolean closed;
+
+        @Override
+        public void onFrame(StateFrame frame) {
+            frames.add(frame);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package bguspl.set;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * The configurations the tests run with: the defaults, changed by a few settings, and logged nowhere.
+ */
+public final class TestConfigs {
+
+    private TestConfigs() {}
+
+    /**
+     * @return - a logger that drops its records (they don't go to the console).
+     */
+    public static Logger silentLogger() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        return logger;
+    }
+
+    /**
+     * @param settings - pairs of a setting's name and its value, as in config.properties.
+     * @return - the settings as properties.
+     */
+    public static Properties properties(String... settings) {
+        if (settings.length % 2 != 0) throw new IllegalArgumentException("a setting without a value");
+        Properties properties = new Properties();
+        for (int i = 0; i < settings.length; i += 2)
+            properties.setProperty(settings[i], settings[i + 1]);
+        return properties;
+    }
+
+    /**
+     * @param settings - pairs of a setting's name and its value, as in config.properties (the others are defaults).
+     * @return - the configuration, logging to a silent logger.
+     */
+    public static Config config(String... settings) {
+        return new Config(silentLogger(), properties(settings));
+    }
+}
@@ -0,0 +1,91 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimerWheelTest {
+
+    TimerWheel wheel;
+    List<Integer> fired;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new TimerWheel(10, 8, 0);
+        fired = new ArrayList<>();
+    }
+
+    @Test
+    void advanceTo_RunsDueTasksInDeadlineOrder() {
+        wheel.schedule(50, () -> fired.add(2));
+        wheel.schedule(20, () -> fired.add(1));
+        wheel.schedule(200, () -> fired.add(3));
+
+        wheel.advanceTo(49);
+        assertEquals(Arrays.asList(1), fired);
+        wheel.advanceTo(60);
+        assertEquals(Arrays.asList(1, 2), fired);
+        wheel.advanceTo(199);
+        assertEquals(Arrays.asList(1, 2), fired);
+        wheel.advanceTo(200);
+        assertEquals(Arrays.asList(1, 2, 3), fired);
+    }
+
+    @Test
+    void advanceTo_TimersMoreThanARoundAwayWaitForTheirRound() {
+        wheel.schedule(30, () -> fired.add(1));
+        wheel.schedule(30 + 8 * 10, () -> fired.add(2));
+
+        wheel.advanceTo(30);
+        assertEquals(Arrays.asList(1), fired);
+        wheel.advanceTo(1000);
+        assertEquals(Arrays.asList(1, 2), fired);
+    }
+
+    @Test
+    void advanceTo_ReportsAFailingTaskAndRunsTheRest() {
+        wheel.schedule(20, () -> { throw new IllegalStateException("boom"); });
+        wheel.schedule(30, () -> fired.add(1));
+        List<Throwable> reported = new ArrayList<>();
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+        thread.setUncaughtExceptionHandler((t, e) -> reported.add(e));
+        try {
+            wheel.advanceTo(100);
+        } finally {
+            thread.setUncaughtExceptionHandler(handler);
+        }
+
+        assertEquals(Arrays.asList(1), fired);
+        assertEquals(1, reported.size());
+        assertEquals("boom", reported.get(0).getMessage());
+    }
+
+    @Test
+    void cancel_TaskNeverRuns() {
+        TimerWheel.Timeout timeout = wheel.schedule(20, () -> fired.add(1));
+        wheel.schedule(20, () -> fired.add(2));
+        timeout.cancel();
+
+        wheel.advanceTo(100);
+        assertEquals(Arrays.asList(2), fired);
+    }
+
+    @Test
+    void schedule_FromTask_RunsOnLaterAdvance() {
+        wheel.schedule(10, () -> {
+            fired.add(1);
+            wheel.schedule(0, () -> fired.add(2));
+        });
+
+        wheel.advanceTo(10);
+        assertEquals(Arrays.asList(1), fired);
+        wheel.advanceTo(20);
+        assertEquals(Arrays.asList(1, 2), fired);
+    }
+}
@@ -0,0 +1,103 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TournamentTest {
+
+    private static Properties base() {
+        return TestConfigs.properties("Deterministic", "True", "LogLevel", "OFF");
+    }
+
+    @Test
+    void schedules_CoverEveryEntrant() {
+        List<int[]> round = Tournament.roundRobin(5, 3);
+        assertEquals(10, round.size());
+        assertArrayEquals(new int[]{0, 1, 2}, round.get(0));
+        assertArrayEquals(new int[]{2, 3, 4}, round.get(9));
+
+        List<int[]> groups = Tournament.bracketGroups(new int[]{0, 1, 2, 3, 4}, 2);
+        assertEquals(3, groups.size());
+        assertArrayEquals(new int[]{0, 1}, groups.get(0));
+        assertArrayEquals(new int[]{4}, groups.get(2)); // a bye
+    }
+
+    @Test
+    void result_FirstWinnerIsTheWinnerSeatedFirst() {
+        Tournament.Match match = new Tournament.Match(0, 0, new int[]{4, 2, 7}, 7);
+        assertEquals(2, new Tournament.Result(match, new int[]{3, 5, 5}, new int[]{2, 1}).firstWinner());
+        assertEquals(Tournament.NOBODY, new Tournament.Result(match, new int[]{0, 0, 0}, new int[0]).firstWinner());
+        assertThrows(IllegalArgumentException.class,
+                () -> new Tournament.Result(match, new int[]{0, 0, 0}, new int[]{3}));
+    }
+
+    @Test
+    void roundRobin_IsTheSameOnEveryRunWithTheSameSeed() {
+        String[] entrants = {"a", "b", "c"};
+        List<Tournament.Result> first;
+        List<Tournament.Result> second;
+        try (Tournament tournament = new Tournament(TestConfigs.silentLogger(), base(), entrants, 2, 2, 11, null)) {
+            first = tournament.roundRobin(1);
+        }
+        try (Tournament tournament = new Tournament(TestConfigs.silentLogger(), base(), entrants, 2, 1, 11, null)) {
+            second = tournament.roundRobin(1);
+        }
+        assertEquals(3, first.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertArrayEquals(first.get(i).match.entrants, second.get(i).match.entrants);
+            assertArrayEquals(first.get(i).scores, second.get(i).scores);
+            assertArrayEquals(first.get(i).winners, second.get(i).winners);
+            assertTrue(first.get(i).winners.length >= 1);
+        }
+    }
+
+    @Test
+    void bracket_RatesEveryMatchPlayed() {
+        String[] entrants = {"a", "b", "c"};
+        try (Tournament tournament = new Tournament(TestConfigs.silentLogger(), base(), entrants, 2, 2, 3, null)) {
+            List<Tournament.Result> results = tournament.bracket();
+            assertTrue(results.size() >= 2); // a first match, and a final against the entrant with the bye
+            assertEquals(results.size(), tournament.ratings().games());
+            assertEquals(3, tournament.ratings().players());
+        }
+    }
+
+    @Test
+    void bracket_ForfeitsAMatchThatKeepsFailing() {
+        String[] entrants = {"a", "b", "c", "d"};
+        try (Tournament tournament = new Tournament(TestConfigs.silentLogger(), base(), entrants, 2, 2, 5, null)) {
+            Function<Tournament.Match, Tournament.Result> real = tournament.playMatch;
+            tournament.playMatch = match -> {
+                if (match.entrants[0] == 0) throw new IllegalStateException("failed on purpose");
+                return real.apply(match);
+            };
+            List<Tournament.Result> results = tournament.bracket();
+            assertTrue(tournament.champion() == 2 || tournament.champion() == 3);
+            for (Tournament.Result result : results)
+                assertArrayEquals(new int[]{2, 3}, result.match.entrants); // "a" and "b" forfeited the first round
+        }
+    }
+
+    @Test
+    void bracket_ReplaysAFailedMatch() {
+        String[] entrants = {"a", "b"};
+        try (Tournament tournament = new Tournament(TestConfigs.silentLogger(), base(), entrants, 2, 1, 5, null)) {
+            Function<Tournament.Match, Tournament.Result> real = tournament.playMatch;
+            AtomicInteger attempts = new AtomicInteger();
+            tournament.playMatch = match -> {
+                if (attempts.getAndIncrement() == 0) throw new IllegalStateException("failed on purpose");
+                return real.apply(match);
+            };
+            List<Tournament.Result> results = tournament.bracket();
+            assertFalse(results.isEmpty());
+            assertEquals(results.get(results.size() - 1).firstWinner(), tournament.champion());
+            assertNotEquals(Tournament.NOBODY, tournament.champion());
+        }
+    }
+}
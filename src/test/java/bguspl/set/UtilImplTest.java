@@ -0,0 +1,74 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UtilImplTest {
+
+    /**
+     * A deck of 3^6 cards, too big to catalog, so the searches go over the combinations.
+     */
+    private static Config config() {
+        return TestConfigs.config("FeatureCount", "6");
+    }
+
+    /**
+     * @return - count distinct cards of the deck, in a random order.
+     */
+    private static List<Integer> deck(Config config, int count) {
+        return new SplittableRandom(5).ints(0, config.deckSize).distinct().limit(count).boxed()
+                .collect(Collectors.toList());
+    }
+
+    private static Set<List<Integer>> asSet(List<int[]> sets) {
+        Set<List<Integer>> all = new HashSet<>();
+        for (int[] set : sets) {
+            List<Integer> cards = new ArrayList<>();
+            for (int card : set) cards.add(card);
+            assertTrue(all.add(cards), "found twice: " + cards);
+        }
+        return all;
+    }
+
+    @Test
+    void findSetsParallel_FindsTheSameSetsAsFindSets() {
+        Config config = config();
+        assertEquals(729, config.deckSize);
+        assertNull(SetCatalog.of(config, Rules.create(config)));
+        UtilImpl util = new UtilImpl(config);
+        List<Integer> deck = deck(config, 300); // above the threshold of the parallel search
+
+        Set<List<Integer>> sequential = asSet(util.findSets(deck, Integer.MAX_VALUE));
+        Set<List<Integer>> parallel = asSet(util.findSetsParallel(deck, Integer.MAX_VALUE));
+        assertFalse(sequential.isEmpty());
+        assertEquals(sequential, parallel);
+        int[] cards = deck.stream().mapToInt(Integer::intValue).toArray();
+        assertEquals(sequential.size(), util.countSets(cards, cards.length)); // the batched enumeration
+    }
+
+    @Test
+    void findSetsParallel_StopsAtTheCount() {
+        Config config = config();
+        UtilImpl util = new UtilImpl(config);
+        List<Integer> deck = deck(config, 300);
+
+        List<int[]> one = util.findSetsParallel(deck, 1);
+        assertEquals(1, one.size());
+        assertTrue(util.testSet(one.get(0)));
+        assertEquals(10, util.findSetsParallel(deck, 10).size());
+    }
+
+    @Test
+    void cheapAnySet_OnlyWithACatalog() {
+        assertFalse(new UtilImpl(config()).cheapAnySet(300));
+        assertTrue(new UtilImpl(TestConfigs.config()).cheapAnySet(81));
+    }
+}
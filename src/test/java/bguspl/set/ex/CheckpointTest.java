@@ -0,0 +1,117 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.TestConfigs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointTest {
+
+    private static Config config() {
+        return TestConfigs.config("HumanPlayers", "0", "ComputerPlayers", "2");
+    }
+
+    private static Checkpoint checkpoint(Config config) {
+        SplitMix64 random = new SplitMix64(7);
+        Deck deck = new Deck(config.deckSize, random.split());
+        int[] table = new int[config.tableSize];
+        for (int slot = 0; slot < table.length; slot++)
+            table[slot] = slot == 3 ? Checkpoint.emptySlot : deck.drawRandom();
+        int[] cards = new int[deck.size()];
+        deck.copyTo(cards, 0);
+        boolean[][] tokens = new boolean[config.players][config.tableSize];
+        tokens[0][1] = tokens[0][10] = tokens[1][11] = true;
+        return new Checkpoint(config.deckSize, config.tableSize, cards, deck.random().seed(), deck.random().gamma(),
+                table, 41_500, 0, new int[]{3, 129}, new long[]{0, 2_000}, tokens,
+                new long[]{random.nextLong(), -1}, new long[]{random.nextLong() | 1, Long.MIN_VALUE + 1});
+    }
+
+    private static void assertSameCheckpoint(Checkpoint expected, Checkpoint actual) {
+        assertEquals(expected.deckSize, actual.deckSize);
+        assertEquals(expected.tableSize, actual.tableSize);
+        assertArrayEquals(expected.deck, actual.deck);
+        assertEquals(expected.deckSeed, actual.deckSeed);
+        assertEquals(expected.deckGamma, actual.deckGamma);
+        assertArrayEquals(expected.table, actual.table);
+        assertEquals(expected.turnMillis, actual.turnMillis);
+        assertEquals(expected.simulatedTimeMillis, actual.simulatedTimeMillis);
+        assertArrayEquals(expected.scores, actual.scores);
+        assertArrayEquals(expected.freezeMillis, actual.freezeMillis);
+        assertArrayEquals(expected.tokens, actual.tokens);
+        assertArrayEquals(expected.playerSeeds, actual.playerSeeds);
+        assertArrayEquals(expected.playerGammas, actual.playerGammas);
+    }
+
+    private static Checkpoint decode(byte[] bytes, Config config) throws IOException {
+        return Checkpoint.decode(new DataInputStream(new ByteArrayInputStream(bytes)), config);
+    }
+
+    @Test
+    void encode_RoundTripsCompactly() throws IOException {
+        Config config = config();
+        Checkpoint checkpoint = checkpoint(config);
+        byte[] bytes = checkpoint.encode();
+
+        assertSameCheckpoint(checkpoint, decode(bytes, config));
+        assertTrue(bytes.length < 200, "a checkpoint of the default game takes " + bytes.length + " bytes");
+    }
+
+    @Test
+    void read_ReturnsTheCheckpointWrittenAndChecksTheShape(@TempDir Path directory) throws IOException {
+        Config config = config();
+        Checkpoint checkpoint = checkpoint(config);
+        Path file = directory.resolve("checkpoint.bin");
+        checkpoint.write(file);
+        checkpoint.write(file); // replaces the previous one
+
+        assertSameCheckpoint(checkpoint, Checkpoint.read(file, config));
+        assertThrows(IOException.class, () -> Checkpoint.read(file, TestConfigs.config("HumanPlayers", "3")));
+        Files.write(file, new byte[]{1, 2, 3});
+        assertThrows(IOException.class, () -> Checkpoint.read(file, config));
+    }
+
+    @Test
+    void decode_RejectsCorruptDecksAndTables() throws IOException {
+        Config config = config();
+        Checkpoint checkpoint = checkpoint(config);
+        int[] longDeck = new int[config.deckSize + 1];
+        int[] badCard = checkpoint.deck.clone();
+        badCard[0] = config.deckSize;
+        int[] dealtTwice = checkpoint.deck.clone();
+        dealtTwice[0] = checkpoint.table[0];
+
+        for (int[] deck : new int[][]{longDeck, badCard, dealtTwice}) {
+            byte[] bytes = new Checkpoint(config.deckSize, config.tableSize, deck, 1, 3, checkpoint.table, 0, 0,
+                    checkpoint.scores, checkpoint.freezeMillis, checkpoint.tokens, checkpoint.playerSeeds,
+                    checkpoint.playerGammas).encode();
+            assertThrows(IOException.class, () -> decode(bytes, config));
+        }
+    }
+
+    @Test
+    void splitMix64_DrawsLikeSplittableRandomAndResumesFromItsState() {
+        SplitMix64 random = new SplitMix64(42);
+        SplittableRandom expected = new SplittableRandom(42);
+        for (int i = 0; i < 1000; i++)
+            assertEquals(expected.nextInt(81 - i % 81), random.nextInt(81 - i % 81));
+
+        SplitMix64 split = random.split();
+        SplittableRandom expectedSplit = expected.split();
+        SplitMix64 restored = new SplitMix64(split.seed(), split.gamma());
+        for (int i = 0; i < 1000; i++) {
+            int bound = 1 + i % 12;
+            int next = split.nextInt(bound);
+            assertEquals(expectedSplit.nextInt(bound), next);
+            assertEquals(next, restored.nextInt(bound));
+        }
+    }
+}
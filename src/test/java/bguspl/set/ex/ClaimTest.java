@@ -0,0 +1,40 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.PriorityBlockingQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClaimTest {
+
+    @Test
+    void compareTo_OrdersByStampThenBySequence() {
+        Claim late = new Claim(null, new int[]{0, 1, 2}, 200, 0, Table.noVersion);
+        Claim early = new Claim(null, new int[]{3, 4, 5}, 100, 2, Table.noVersion);
+        Claim tied = new Claim(null, new int[]{6, 7, 8}, 100, 1, Table.noVersion);
+        PriorityBlockingQueue<Claim> claims = new PriorityBlockingQueue<>();
+        claims.add(late);
+        claims.add(early);
+        claims.add(tied);
+
+        assertSame(tied, claims.poll());
+        assertSame(early, claims.poll());
+        assertSame(late, claims.poll());
+    }
+
+    @Test
+    void awaitJudgement_ReturnsOnceJudged() throws InterruptedException {
+        Claim claim = new Claim(null, new int[]{0, 1, 2}, 0, 0, Table.noVersion);
+        Thread waiter = new Thread(claim::awaitJudgement);
+        waiter.start();
+        waiter.join(50);
+        assertTrue(waiter.isAlive());
+
+        claim.judged();
+        waiter.join(1000);
+        assertFalse(waiter.isAlive());
+        assertTrue(claim.uses(1));
+        assertFalse(claim.uses(3));
+    }
+}
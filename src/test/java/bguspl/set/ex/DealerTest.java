@@ -2,8 +2,10 @@ package bguspl.set.ex;
 
 import bguspl.set.Config;
 import bguspl.set.Env;
+import bguspl.set.TestConfigs;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
+import bguspl.set.UtilImpl;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,6 +13,9 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -53,7 +58,7 @@ import static org.junit.jupiter.api.Assertions.*;
             dealer.iStarted();
             assertEquals(1,dealer.fairnessTerminatingSequence.size());
 
-            Thread t = dealer.fairnessTerminatingSequence.remove();
+            Thread t = dealer.fairnessTerminatingSequence.remove().thread();
 
             assertEquals(0,dealer.fairnessTerminatingSequence.size());
 
@@ -67,5 +72,90 @@ import static org.junit.jupiter.api.Assertions.*;
             assertEquals(!expectedValue,dealer.terminate);
         }
 
+        /**
+         * A game without a countdown (so the dealer guarantees a set on the table), with a real table and set finder.
+         */
+        private Env guaranteeingEnv() {
+            Config config = TestConfigs.config("TurnTimeoutSeconds", "0", "TableDelaySeconds", "0");
+            return new Env(TestConfigs.silentLogger(), config, ui, new UtilImpl(config));
+        }
+
+        /**
+         * @return the first count cards (by id) that hold no set among them.
+         */
+        private static int[] noSet(Env env, int count) {
+            List<Integer> cards = new ArrayList<>();
+            for (int card = 0; card < env.config.deckSize && cards.size() < count; card++) {
+                cards.add(card);
+                int[] chosen = cards.stream().mapToInt(Integer::intValue).toArray();
+                if (env.util.anySet(chosen, chosen.length)) cards.remove(cards.size() - 1);
+            }
+            return cards.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /**
+         * Creates a dealer whose deck holds exactly the given cards, and places the given cards on the table.
+         */
+        private Dealer dealer(Env env, Table table, int[] onTable, int... inDeck) {
+            Player[] mocked = new Player[env.config.players];
+            Arrays.fill(mocked, player1);
+            Deck deck = new Deck(env.config.deckSize, new SplitMix64(1), inDeck);
+            Dealer guaranteeing = new Dealer(env, table, mocked, deck);
+            for (int slot = 0; slot < onTable.length; slot++) table.placeCard(onTable[slot], slot);
+            return guaranteeing;
+        }
+
+        private static int[] cardsOn(Table table) {
+            return Arrays.stream(table.slotToCard).filter(card -> card != null).mapToInt(Integer::intValue).toArray();
+        }
+
+        @Test
+        void setCardsOnTable_DealsTheDeckCardThatCompletesASet() {
+            Env env = guaranteeingEnv();
+            Table real = new Table(env);
+            int[] cap = noSet(env, env.config.tableSize + 2);
+            int completion = env.util.completeSet(new int[]{cap[3], cap[5]}, 2);
+            // one empty slot, and a deck where only one card completes a set
+            Dealer guaranteeing = dealer(env, real, Arrays.copyOf(cap, env.config.tableSize - 1),
+                    cap[env.config.tableSize], completion, cap[env.config.tableSize + 1]);
+
+            guaranteeing.setCardsOnTable();
+
+            int[] dealt = cardsOn(real);
+            assertEquals(env.config.tableSize, dealt.length);
+            assertTrue(env.util.anySet(dealt, dealt.length));
+            assertTrue(Arrays.stream(dealt).anyMatch(card -> card == completion));
+        }
+
+        @Test
+        void setCardsOnTable_SwapsOneCardOfAFullTableWithoutASet() {
+            Env env = guaranteeingEnv();
+            Table real = new Table(env);
+            int[] cap = noSet(env, env.config.tableSize + 1);
+            int[] onTable = Arrays.copyOf(cap, env.config.tableSize);
+            int completion = env.util.completeSet(new int[]{cap[0], cap[1]}, 2);
+            Dealer guaranteeing = dealer(env, real, onTable, cap[env.config.tableSize], completion);
+
+            guaranteeing.setCardsOnTable();
+
+            int[] dealt = cardsOn(real);
+            assertTrue(env.util.anySet(dealt, dealt.length));
+            long kept = Arrays.stream(onTable).filter(card -> Arrays.stream(dealt).anyMatch(c -> c == card)).count();
+            assertEquals(env.config.tableSize - 1, kept); // not a full reshuffle: only one card made room for the set
+        }
+
+        @Test
+        void setCardsOnTable_LeavesTheTableWhenNoSetIsLeft() {
+            Env env = guaranteeingEnv();
+            Table real = new Table(env);
+            int[] cap = noSet(env, env.config.tableSize + 2);
+            int[] onTable = Arrays.copyOf(cap, env.config.tableSize);
+            Dealer guaranteeing = dealer(env, real, onTable, cap[env.config.tableSize], cap[env.config.tableSize + 1]);
+
+            guaranteeing.setCardsOnTable();
+
+            assertArrayEquals(onTable, cardsOn(real)); // no set in the table and deck together: nothing to deal
+        }
+
     }
 
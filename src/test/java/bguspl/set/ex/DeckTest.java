@@ -0,0 +1,82 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeckTest {
+
+    private static final int deckSize = 81;
+
+    Deck deck;
+
+    void assertInvariants() {
+        assertTrue(deck.size() >= 0 && deck.size() <= deckSize);
+        for (int i = 0; i < deck.size(); i++)
+            assertTrue(deck.contains(deck.get(i)));
+    }
+
+    @BeforeEach
+    void setUp() {
+        deck = new Deck(deckSize, new SplitMix64(42));
+        assertInvariants();
+    }
+
+    @Test
+    void newDeck_ContainsAllCards() {
+        assertEquals(deckSize, deck.size());
+        for (int card = 0; card < deckSize; card++)
+            assertTrue(deck.contains(card));
+    }
+
+    @Test
+    void drawRandom_RemovesTheCardDrawn() {
+        int card = deck.drawRandom();
+        assertFalse(deck.contains(card));
+        assertEquals(deckSize - 1, deck.size());
+        assertInvariants();
+    }
+
+    @Test
+    void drawRandom_EmptyDeck() {
+        for (int i = 0; i < deckSize; i++)
+            assertNotEquals(-1, deck.drawRandom());
+        assertTrue(deck.isEmpty());
+        assertEquals(-1, deck.drawRandom());
+    }
+
+    @Test
+    void remove_ThenAdd_RestoresCard() {
+        assertTrue(deck.remove(5));
+        assertFalse(deck.remove(5));
+        assertFalse(deck.contains(5));
+        assertInvariants();
+
+        deck.add(5);
+        deck.add(5);
+        assertTrue(deck.contains(5));
+        assertEquals(deckSize, deck.size());
+        assertInvariants();
+    }
+
+    @Test
+    void restoredDeck_DrawsLikeTheOriginal() {
+        for (int i = 0; i < 10; i++) deck.drawRandom();
+        int[] cards = new int[deck.size()];
+        deck.copyTo(cards, 0);
+        Deck restored = new Deck(deckSize, new SplitMix64(deck.random().seed(), deck.random().gamma()), cards);
+
+        assertEquals(deck.size(), restored.size());
+        while (!deck.isEmpty())
+            assertEquals(deck.drawRandom(), restored.drawRandom());
+        assertTrue(restored.isEmpty());
+    }
+
+    @Test
+    void drawRandom_SameSeedSameOrder() {
+        Deck other = new Deck(deckSize, new SplitMix64(42));
+        for (int i = 0; i < deckSize; i++)
+            assertEquals(other.drawRandom(), deck.drawRandom());
+    }
+}
@@ -0,0 +1,82 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlayerStatsStoreTest {
+
+    private static PlayerStats game(String name, boolean won, long points) {
+        return new PlayerStats(name, 1, won ? 1 : 0, points, 1, points + 1, 1_000 * (points + 1));
+    }
+
+    @Test
+    void record_TotalsSurviveReopening(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("stats.bin");
+        try (PlayerStatsStore store = PlayerStatsStore.open(file)) {
+            assertNull(store.get("alice"));
+            store.record(game("alice", true, 3), game("bob", false, 1));
+            PlayerStats[] totals = store.record(game("alice", false, 2), game("bob", true, 4));
+            assertEquals(5, totals[0].points);
+            assertEquals(5, totals[1].points);
+        }
+        try (PlayerStatsStore store = PlayerStatsStore.open(file)) {
+            assertEquals(2, store.all().size());
+            PlayerStats alice = store.get("alice");
+            assertEquals(2, alice.games);
+            assertEquals(1, alice.wins);
+            assertEquals(0.5, alice.winRate());
+            assertEquals(2, alice.penalties);
+            assertEquals(7, alice.claims);
+            assertEquals(1_000, alice.meanClaimLatencyNanos());
+        }
+    }
+
+    @Test
+    void open_DropsARecordCutShort(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("stats.bin");
+        long whole;
+        try (PlayerStatsStore store = PlayerStatsStore.open(file)) {
+            store.record(game("alice", true, 3));
+            whole = store.fileBytes();
+            store.record(game("alice", true, 3));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(whole + 10); // a crash in the middle of the second write
+        }
+        try (PlayerStatsStore store = PlayerStatsStore.open(file)) {
+            assertEquals(whole, Files.size(file));
+            assertEquals(1, store.get("alice").games);
+            assertEquals(2, store.record(game("alice", false, 0))[0].games);
+        }
+        try (PlayerStatsStore store = PlayerStatsStore.open(file)) {
+            assertEquals(2, store.get("alice").games);
+        }
+    }
+
+    @Test
+    void compact_KeepsOnlyTheLiveRecords(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("stats.bin");
+        try (PlayerStatsStore store = PlayerStatsStore.open(file)) {
+            for (int i = 0; i < 3000; i++)
+                store.record(game("alice", i % 2 == 0, 1), game("bob", false, 0));
+            assertTrue(store.fileBytes() < 64 * 1024 * 3, "the store was not compacted");
+            long before = store.fileBytes();
+            store.compact();
+            assertTrue(store.fileBytes() < before);
+            assertEquals(store.fileBytes(), Files.size(file));
+            assertEquals(3000, store.get("alice").games);
+        }
+        try (PlayerStatsStore store = PlayerStatsStore.open(file)) {
+            assertEquals(1500, store.get("alice").wins);
+            assertEquals(3000, store.get("bob").games);
+        }
+    }
+}
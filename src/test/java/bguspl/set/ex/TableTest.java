@@ -12,6 +12,7 @@ import java.util.Properties;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 
 class TableTest {
 
@@ -115,6 +116,21 @@ class TableTest {
         assertEquals(11,slotToCard[3]);
     }
 
+    @Test
+    void snapshot_VersionChangesWithTheCards() {
+        table.placeCard(8, 2);
+        table.placeCard(5, 4);
+        int[] cards = new int[2];
+        long version = table.snapshot(new int[]{2, 4}, cards);
+        assertEquals(table.version(), version);
+        assertEquals(8, cards[0]);
+        assertEquals(5, cards[1]);
+
+        assertEquals(Table.noVersion, table.snapshot(new int[]{2, 3}, cards));
+        table.removeCard(4);
+        assertNotEquals(version, table.version());
+    }
+
     static class MockUserInterface implements UserInterface {
         @Override
         public void dispose() {}